@@ -0,0 +1 @@
+class Input {}
\ No newline at end of file
@@ -0,0 +1 @@
+class Input { int i; }
\ No newline at end of file
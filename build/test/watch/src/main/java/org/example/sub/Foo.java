@@ -0,0 +1 @@
+class Foo {}
\ No newline at end of file
@@ -0,0 +1 @@
+class FooTest {}
\ No newline at end of file
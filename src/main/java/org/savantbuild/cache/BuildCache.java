@@ -0,0 +1,476 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.savantbuild.dep.domain.Artifact;
+import org.savantbuild.domain.Project;
+import org.savantbuild.domain.Target;
+import org.savantbuild.output.Output;
+
+/**
+ * A content-addressed cache of the outputs of targets. This allows the outputs of a target to be restored rather than
+ * rebuilt after the project is cleaned or when switching between branches. The cache is never pruned, so projects must
+ * opt into it using the {@code buildCache} method of the project definition.
+ * <p>
+ * The cache directory contains two directories. The {@code objects} directory contains the contents of every output
+ * file, named by the SHA-256 hash of the contents. This means that identical files are only stored once. The
+ * {@code entries} directory contains a properties file for each cache key that lists the output files of the target
+ * and the hashes of their contents.
+ * <p>
+ * The cache key of a target is calculated from the name of the target, the fingerprint of its inputs, the build file
+ * and the plugins the build file loaded. Only targets that declare both inputs and outputs inside of the project
+ * directory are cached. Failures reading or writing the cache are never fatal, they just cause the target to run.
+ * <p>
+ * If the cache has a {@link RemoteBuildCache}, entries that aren't in the local cache are fetched from the remote cache.
+ * If pushing is enabled, new entries are uploaded to the remote cache in the background so that the build never waits
+ * on the network to store an entry. {@link #waitForUploads()} must be called at the end of the build.
+ *
+ * @author Brian Pontarelli
+ */
+public class BuildCache {
+  public static final Path DEFAULT_DIRECTORY = Paths.get(System.getProperty("user.home"), ".savant/build-cache");
+
+  public static final String ENTRY_FILE = "entry.properties";
+
+  public final Path directory;
+
+  public final boolean push;
+
+  public final RemoteBuildCache remote;
+
+  private final Output output;
+
+  private ExecutorService uploads;
+
+  public BuildCache(Output output, Path directory) {
+    this(output, directory, null, false);
+  }
+
+  /**
+   * Constructs a build cache that is backed by a remote cache.
+   *
+   * @param output    The output.
+   * @param directory The local cache directory.
+   * @param remote    (Optional) The remote cache.
+   * @param push      True if new entries should be uploaded to the remote cache.
+   */
+  public BuildCache(Output output, Path directory, RemoteBuildCache remote, boolean push) {
+    this.output = output;
+    this.directory = directory;
+    this.remote = remote;
+    this.push = push;
+  }
+
+  /**
+   * Calculates the cache key of the target.
+   *
+   * @param project           The project.
+   * @param target            The target.
+   * @param inputsFingerprint The fingerprint of the target's inputs (this must be relative to the project directory).
+   * @return The key or null if the key could not be calculated.
+   */
+  public String key(Project project, Target target, String inputsFingerprint) {
+    StringBuilder build = new StringBuilder();
+    build.append("target:").append(target.name).append("\n");
+    build.append("inputs:").append(inputsFingerprint).append("\n");
+    try {
+      if (project.buildFile != null) {
+        build.append("buildFile:").append(Hashes.sha256(Files.readAllBytes(project.buildFile))).append("\n");
+      }
+    } catch (IOException e) {
+      output.debug("Unable to read the build file [%s] for the build cache key", project.buildFile);
+      output.debug(e);
+      return null;
+    }
+
+    new TreeSet<>(project.plugins.keySet().stream().map(Artifact::toString).collect(Collectors.toList()))
+        .forEach((plugin) -> build.append("plugin:").append(plugin).append("\n"));
+    target.outputs.forEach((path) -> build.append("output:").append(project.directory.relativize(path)).append("\n"));
+    return Hashes.sha256(build.toString());
+  }
+
+  /**
+   * Restores the outputs of a target from the cache. The outputs are deleted and then replaced with the files from the
+   * cache entry. Entries can come from a remote cache, so an entry that contains files outside of the given outputs or
+   * an invalid hash is never restored.
+   *
+   * @param key              The cache key.
+   * @param projectDirectory The project directory.
+   * @param outputs          The outputs of the target.
+   * @return True if the outputs were restored, false if the cache doesn't contain the key.
+   */
+  public boolean load(String key, Path projectDirectory, List<Path> outputs) {
+    Path entry = entry(key);
+    if (!Files.isRegularFile(entry) && (remote == null || !fetch(key))) {
+      return false;
+    }
+
+    try {
+      Properties properties = new Properties();
+      try (InputStream is = Files.newInputStream(entry)) {
+        properties.load(is);
+      }
+
+      List<Path> files = new ArrayList<>();
+      List<Path> objects = new ArrayList<>();
+      for (int i = 0; properties.containsKey("file." + i + ".path"); i++) {
+        String hash = properties.getProperty("file." + i + ".hash");
+        Path file = resolve(projectDirectory, outputs, properties.getProperty("file." + i + ".path"));
+        if (hash == null || !hash.matches("[0-9a-f]{64}") || file == null) {
+          output.warning("The build cache entry [%s] is invalid because the file [%s] is outside of the outputs of the target or has an invalid hash", key, properties.getProperty("file." + i + ".path"));
+          return false;
+        }
+
+        Path object = object(hash);
+        if (!Files.isRegularFile(object)) {
+          output.debug("Build cache entry [%s] is missing the object [%s]", key, object);
+          return false;
+        }
+
+        files.add(file);
+        objects.add(object);
+      }
+
+      List<Path> directories = new ArrayList<>();
+      for (int i = 0; properties.containsKey("output." + i + ".path"); i++) {
+        Path path = resolve(projectDirectory, outputs, properties.getProperty("output." + i + ".path"));
+        if (path == null) {
+          output.warning("The build cache entry [%s] is invalid because the output [%s] isn't an output of the target", key, properties.getProperty("output." + i + ".path"));
+          return false;
+        }
+
+        if (Boolean.parseBoolean(properties.getProperty("output." + i + ".directory"))) {
+          directories.add(path);
+        }
+      }
+
+      for (Path path : outputs) {
+        delete(path);
+      }
+
+      for (Path path : directories) {
+        Files.createDirectories(path);
+      }
+
+      for (int i = 0; i < files.size(); i++) {
+        Path file = files.get(i);
+        Files.createDirectories(file.getParent());
+        Files.copy(objects.get(i), file, StandardCopyOption.REPLACE_EXISTING);
+      }
+
+      return true;
+    } catch (IOException e) {
+      output.debug("Unable to restore the build cache entry [%s]", key);
+      output.debug(e);
+      return false;
+    }
+  }
+
+  /**
+   * Stores the outputs of a target in the cache. If any of the outputs are missing or outside of the project directory,
+   * nothing is stored. If pushing is enabled, the entry is uploaded to the remote cache in the background.
+   *
+   * @param key              The cache key.
+   * @param projectDirectory The project directory.
+   * @param outputs          The outputs of the target.
+   */
+  public void store(String key, Path projectDirectory, List<Path> outputs) {
+    Properties properties = new Properties();
+    try {
+      int fileIndex = 0;
+      for (int i = 0; i < outputs.size(); i++) {
+        Path path = outputs.get(i);
+        if (!path.startsWith(projectDirectory) || !Files.exists(path)) {
+          output.debug("Unable to cache the output [%s] because it doesn't exist or is outside of the project", path);
+          return;
+        }
+
+        boolean isDirectory = Files.isDirectory(path);
+        properties.setProperty("output." + i + ".path", projectDirectory.relativize(path).toString());
+        properties.setProperty("output." + i + ".directory", Boolean.toString(isDirectory));
+
+        List<Path> files;
+        if (isDirectory) {
+          try (Stream<Path> stream = Files.walk(path)) {
+            files = stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+          }
+        } else {
+          files = new ArrayList<>();
+          files.add(path);
+        }
+
+        for (Path file : files) {
+          properties.setProperty("file." + fileIndex + ".path", projectDirectory.relativize(file).toString());
+          try (InputStream is = Files.newInputStream(file)) {
+            properties.setProperty("file." + fileIndex + ".hash", storeObject(is));
+          }
+          fileIndex++;
+        }
+      }
+
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      properties.store(baos, "Savant build cache entry");
+      storeEntry(key, baos.toByteArray());
+    } catch (IOException e) {
+      output.debug("Unable to store the build cache entry [%s]", key);
+      output.debug(e);
+      return;
+    }
+
+    if (remote != null && push) {
+      upload(key);
+    }
+  }
+
+  /**
+   * Waits for all of the uploads to the remote cache to finish. This is called at the end of the build so that the JVM
+   * doesn't exit before the entries are uploaded.
+   */
+  public synchronized void waitForUploads() {
+    if (uploads == null) {
+      return;
+    }
+
+    uploads.shutdown();
+    try {
+      uploads.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    uploads = null;
+  }
+
+  private Path entry(String key) {
+    return directory.resolve("entries/" + key + ".properties");
+  }
+
+  private boolean fetch(String key) {
+    Path temp = null;
+    try {
+      Files.createDirectories(directory);
+      temp = Files.createTempFile(directory, "fetch", ".zip");
+      if (!remote.fetch(key, temp)) {
+        return false;
+      }
+
+      byte[] entry = null;
+      try (ZipInputStream zis = new ZipInputStream(Files.newInputStream(temp))) {
+        ZipEntry zipEntry;
+        while ((zipEntry = zis.getNextEntry()) != null) {
+          if (zipEntry.getName().equals(ENTRY_FILE)) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            copy(zis, baos);
+            entry = baos.toByteArray();
+          } else if (zipEntry.getName().startsWith("objects/")) {
+            String hash = storeObject(zis);
+            if (!zipEntry.getName().equals("objects/" + hash)) {
+              throw new IOException("The object [" + zipEntry.getName() + "] is corrupt");
+            }
+          }
+        }
+      }
+
+      if (entry == null) {
+        throw new IOException("The entry is missing the [" + ENTRY_FILE + "] file");
+      }
+
+      storeEntry(key, entry);
+      return true;
+    } catch (IOException e) {
+      output.warning("Unable to fetch the build cache entry [%s] from the remote build cache [%s]. The error was [%s]", key, remote, e.getMessage());
+      output.debug(e);
+      return false;
+    } finally {
+      deleteQuietly(temp);
+    }
+  }
+
+  private void copy(InputStream is, OutputStream os) throws IOException {
+    byte[] buffer = new byte[8192];
+    int read;
+    while ((read = is.read(buffer)) != -1) {
+      os.write(buffer, 0, read);
+    }
+  }
+
+  private void delete(Path path) throws IOException {
+    if (!Files.exists(path)) {
+      return;
+    }
+
+    try (Stream<Path> paths = Files.walk(path)) {
+      for (Path child : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(child);
+      }
+    }
+  }
+
+  private void deleteQuietly(Path file) {
+    if (file == null) {
+      return;
+    }
+
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      // Ignore
+    }
+  }
+
+  private Path object(String hash) {
+    return directory.resolve("objects/" + hash.substring(0, 2) + "/" + hash);
+  }
+
+  /**
+   * Resolves a path from a cache entry against the project directory. The path must be one of the outputs or inside of
+   * one of them.
+   *
+   * @return The path or null if it isn't inside of the outputs.
+   */
+  private Path resolve(Path projectDirectory, List<Path> outputs, String value) {
+    Path root = projectDirectory.toAbsolutePath().normalize();
+    Path path;
+    try {
+      path = root.resolve(value).normalize();
+    } catch (InvalidPathException e) {
+      return null;
+    }
+
+    if (!path.startsWith(root)) {
+      return null;
+    }
+
+    for (Path outputPath : outputs) {
+      if (path.startsWith(outputPath.toAbsolutePath().normalize())) {
+        return path;
+      }
+    }
+
+    return null;
+  }
+
+  private void storeEntry(String key, byte[] entry) throws IOException {
+    Path entries = directory.resolve("entries");
+    Files.createDirectories(entries);
+    Path temp = Files.createTempFile(entries, "entry", ".properties");
+    try {
+      Files.write(temp, entry);
+      Files.move(temp, entry(key), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  private String storeObject(InputStream stream) throws IOException {
+    Path objects = directory.resolve("objects");
+    Files.createDirectories(objects);
+    Path temp = Files.createTempFile(objects, "object", ".tmp");
+    try {
+      MessageDigest digest = Hashes.digest("SHA-256");
+      try (OutputStream os = Files.newOutputStream(temp)) {
+        copy(new DigestInputStream(stream, digest), os);
+      }
+
+      String hash = Hashes.hex(digest.digest());
+      Path object = object(hash);
+      if (!Files.isRegularFile(object)) {
+        Files.createDirectories(object.getParent());
+        try {
+          Files.move(temp, object, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+          // Another build stored the same contents at the same time
+        }
+      }
+
+      return hash;
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  private synchronized void upload(String key) {
+    if (uploads == null) {
+      uploads = Executors.newSingleThreadExecutor((runnable) -> {
+        Thread thread = new Thread(runnable, "Savant build cache upload");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+
+    uploads.submit(() -> {
+      Path temp = null;
+      try {
+        Properties properties = new Properties();
+        try (InputStream is = Files.newInputStream(entry(key))) {
+          properties.load(is);
+        }
+
+        temp = Files.createTempFile(directory, "upload", ".zip");
+        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(temp))) {
+          zos.putNextEntry(new ZipEntry(ENTRY_FILE));
+          Files.copy(entry(key), zos);
+          zos.closeEntry();
+
+          Set<String> hashes = new TreeSet<>();
+          for (int i = 0; properties.containsKey("file." + i + ".hash"); i++) {
+            hashes.add(properties.getProperty("file." + i + ".hash"));
+          }
+
+          for (String hash : hashes) {
+            zos.putNextEntry(new ZipEntry("objects/" + hash));
+            Files.copy(object(hash), zos);
+            zos.closeEntry();
+          }
+        }
+
+        remote.store(key, temp);
+      } catch (IOException e) {
+        output.warning("Unable to upload the build cache entry [%s] to the remote build cache [%s]. The error was [%s]", key, remote, e.getMessage());
+        output.debug(e);
+      } finally {
+        deleteQuietly(temp);
+      }
+    });
+  }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A simple HTTP server that stores build cache entries in a directory. This implements the protocol used by the
+ * {@link HTTPRemoteBuildCache} and can be used as a stand-in for a real shared cache in tests or for small teams. It can
+ * be run from the command line like this:
+ * <p>
+ * <pre>
+ *   SAVANT_CACHE_USERNAME=ci SAVANT_CACHE_PASSWORD=secret java -cp ... org.savantbuild.cache.BuildCacheServer 7100 /var/savant/build-cache 0.0.0.0
+ * </pre>
+ * <p>
+ * The server only listens on the loopback interface unless an address is given. Anyone that can reach the server can
+ * fetch entries, but storing entries requires basic authentication using the username and password of the server. A
+ * server without a username is read-only.
+ *
+ * @author Brian Pontarelli
+ */
+public class BuildCacheServer {
+  private final String authorization;
+
+  private final Path directory;
+
+  private final HttpServer server;
+
+  public BuildCacheServer(Path directory, int port, String username, String password) throws IOException {
+    this(directory, InetAddress.getLoopbackAddress(), port, username, password);
+  }
+
+  public BuildCacheServer(Path directory, InetAddress address, int port, String username, String password)
+      throws IOException {
+    this.directory = directory;
+    this.authorization = username != null ?
+        "Basic " + Base64.getEncoder().encodeToString((username + ":" + (password != null ? password : "")).getBytes(StandardCharsets.UTF_8)) :
+        null;
+    this.server = HttpServer.create(new InetSocketAddress(address, port), 0);
+    this.server.createContext("/", this::handle);
+  }
+
+  /**
+   * Runs the server. The username and password that are required to store entries are read from the
+   * {@code SAVANT_CACHE_USERNAME} and {@code SAVANT_CACHE_PASSWORD} environment variables so that they don't show up
+   * in the process list.
+   *
+   * @param args The port, the directory and optionally the address to listen on.
+   * @throws IOException If the server could not be started.
+   */
+  public static void main(String... args) throws IOException {
+    if (args.length != 2 && args.length != 3) {
+      System.err.println("Usage: BuildCacheServer <port> <directory> [address]");
+      System.exit(1);
+    }
+
+    InetAddress address = args.length == 3 ? InetAddress.getByName(args[2]) : InetAddress.getLoopbackAddress();
+    new BuildCacheServer(Paths.get(args[1]), address, Integer.parseInt(args[0]), System.getenv("SAVANT_CACHE_USERNAME"),
+        System.getenv("SAVANT_CACHE_PASSWORD")).start();
+  }
+
+  /**
+   * @return The port the server is listening on.
+   */
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  public void start() throws IOException {
+    Files.createDirectories(directory);
+    server.start();
+  }
+
+  public void stop() {
+    server.stop(0);
+  }
+
+  private boolean authorized(HttpExchange exchange) {
+    String header = exchange.getRequestHeaders().getFirst("Authorization");
+    return authorization != null && header != null &&
+        MessageDigest.isEqual(authorization.getBytes(StandardCharsets.UTF_8), header.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try {
+      String path = exchange.getRequestURI().getPath();
+      String key = path.substring(path.lastIndexOf('/') + 1);
+      if (!key.matches("[A-Za-z0-9._-]+") || key.startsWith(".")) {
+        exchange.sendResponseHeaders(400, -1);
+        return;
+      }
+
+      Path file = directory.resolve(key);
+      String method = exchange.getRequestMethod();
+      if (method.equals("GET")) {
+        if (!Files.isRegularFile(file)) {
+          exchange.sendResponseHeaders(404, -1);
+          return;
+        }
+
+        exchange.sendResponseHeaders(200, Files.size(file));
+        try (OutputStream os = exchange.getResponseBody()) {
+          Files.copy(file, os);
+        }
+      } else if (method.equals("PUT")) {
+        if (!authorized(exchange)) {
+          exchange.getResponseHeaders().set("WWW-Authenticate", "Basic realm=\"Savant build cache\"");
+          exchange.sendResponseHeaders(401, -1);
+          return;
+        }
+
+        Path temp = Files.createTempFile(directory, "upload", ".tmp");
+        try (InputStream is = exchange.getRequestBody()) {
+          Files.copy(is, temp, StandardCopyOption.REPLACE_EXISTING);
+          Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+          Files.deleteIfExists(temp);
+        }
+
+        exchange.sendResponseHeaders(201, -1);
+      } else {
+        exchange.sendResponseHeaders(405, -1);
+      }
+    } finally {
+      exchange.close();
+    }
+  }
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collectors;
+
+import org.savantbuild.output.Output;
+
+/**
+ * Takes snapshots of files and directories. A snapshot maps each file to the SHA-256 hash of its contents. Directories
+ * are walked in parallel using a fork-join pool and the files are read into a direct buffer that each thread reuses.
+ * <p>
+ * The hashes are kept in a stat cache that is keyed by the path of the file and validated using the size, last modified
+ * time and file key (the inode on Unix) of the file. This means that unchanged files are never read again. The stat
+ * cache is kept in memory and it is written to disk by {@link #save()} so that the next build can use it as well. The
+ * entries of files that no longer exist are removed when the directory that contained them is snapshotted again.
+ * <p>
+ * Files that were modified within the last couple of seconds are hashed but not cached, because another modification
+ * within the resolution of the file system's timestamps wouldn't change the size or the last modified time.
+ * <p>
+ * Symbolic links to directories are not followed, just like {@link Files#walk(Path, java.nio.file.FileVisitOption...)}.
+ *
+ * @author Brian Pontarelli
+ */
+public class FileSnapshots {
+  public static final String CACHE_FILE = "build/.savant/file-hashes.properties";
+
+  private static final int HASH_BATCH_SIZE = 16;
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private static final long RACY_MILLIS = 2000;
+
+  private static final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+  private static final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+  private final Path cacheFile;
+
+  private final Output output;
+
+  private Map<String, Entry> entries;
+
+  private volatile boolean modified;
+
+  /**
+   * Constructs the file snapshots.
+   *
+   * @param output    The output.
+   * @param cacheFile (Optional) The file that the stat cache is loaded from and saved to. If this is null, the stat
+   *                  cache is only kept in memory.
+   */
+  public FileSnapshots(Output output, Path cacheFile) {
+    this.output = output;
+    this.cacheFile = cacheFile;
+  }
+
+  /**
+   * Returns the SHA-256 hash of the contents of the given file. The hash comes from the stat cache if the file hasn't
+   * changed.
+   *
+   * @param file The file.
+   * @return The hash as a hex String.
+   * @throws IOException If the file could not be read.
+   */
+  public String hash(Path file) throws IOException {
+    Path absolute = file.toAbsolutePath();
+    BasicFileAttributes attributes = Files.readAttributes(absolute, BasicFileAttributes.class);
+    String key = absolute.toString();
+    Map<String, Entry> entries = entries();
+    Entry entry = entries.get(key);
+    long lastModified = attributes.lastModifiedTime().toMillis();
+    String fileKey = attributes.fileKey() != null ? attributes.fileKey().toString() : "";
+    if (entry != null && entry.size == attributes.size() && entry.lastModified == lastModified && entry.fileKey.equals(fileKey)) {
+      return entry.hash;
+    }
+
+    String hash = read(absolute);
+    if (System.currentTimeMillis() - lastModified > RACY_MILLIS) {
+      entries.put(key, new Entry(attributes.size(), lastModified, fileKey, hash));
+      modified = true;
+    } else if (entry != null) {
+      entries.remove(key);
+      modified = true;
+    }
+
+    return hash;
+  }
+
+  /**
+   * Writes the stat cache to disk if it changed. Failures are not fatal since the cache only makes the next build
+   * faster.
+   */
+  public synchronized void save() {
+    if (cacheFile == null || !modified) {
+      return;
+    }
+
+    Properties properties = new Properties();
+    entries().forEach((path, entry) -> properties.setProperty(path, entry.size + "," + entry.lastModified + "," + entry.hash + "," + entry.fileKey));
+    try {
+      Files.createDirectories(cacheFile.getParent());
+      Path temp = Files.createTempFile(cacheFile.getParent(), "file-hashes", ".properties");
+      try (OutputStream os = Files.newOutputStream(temp)) {
+        properties.store(os, "Savant file hashes");
+      }
+
+      Files.move(temp, cacheFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      modified = false;
+    } catch (IOException e) {
+      output.debug("Unable to write the file hash cache [%s]", cacheFile);
+      output.debug(e);
+    }
+  }
+
+  /**
+   * Takes a snapshot of all of the regular files in the given directory and its sub-directories. The sub-directories
+   * are walked and the files are hashed in parallel.
+   *
+   * @param directory The directory.
+   * @return The snapshot, which maps each file to its hash. The files are sorted.
+   * @throws IOException If the directory or any of the files could not be read.
+   */
+  public SortedMap<Path, String> snapshot(Path directory) throws IOException {
+    SortedMap<Path, String> snapshot;
+    try {
+      snapshot = pool.invoke(new SnapshotTask(directory));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+
+    // Remove the files that were deleted from the directory
+    String prefix = directory.toAbsolutePath().toString() + directory.getFileSystem().getSeparator();
+    Set<String> files = snapshot.keySet().stream().map((file) -> file.toAbsolutePath().toString()).collect(Collectors.toSet());
+    if (entries().keySet().removeIf((path) -> path.startsWith(prefix) && !files.contains(path))) {
+      modified = true;
+    }
+
+    return snapshot;
+  }
+
+  private synchronized Map<String, Entry> entries() {
+    if (entries != null) {
+      return entries;
+    }
+
+    entries = new ConcurrentHashMap<>();
+    if (cacheFile == null || !Files.isRegularFile(cacheFile)) {
+      return entries;
+    }
+
+    Properties properties = new Properties();
+    try (InputStream is = Files.newInputStream(cacheFile)) {
+      properties.load(is);
+    } catch (IOException e) {
+      output.debug("Unable to read the file hash cache [%s]", cacheFile);
+      output.debug(e);
+      return entries;
+    }
+
+    for (String path : properties.stringPropertyNames()) {
+      String[] parts = properties.getProperty(path).split(",", 4);
+      if (parts.length == 4) {
+        try {
+          entries.put(path, new Entry(Long.parseLong(parts[0]), Long.parseLong(parts[1]), parts[3], parts[2]));
+        } catch (NumberFormatException e) {
+          // Skip the bad entry
+        }
+      }
+    }
+
+    return entries;
+  }
+
+  private String read(Path file) throws IOException {
+    MessageDigest digest = Hashes.digest("SHA-256");
+
+    ByteBuffer buffer = buffers.get();
+    buffer.clear();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      while (channel.read(buffer) != -1) {
+        buffer.flip();
+        digest.update(buffer);
+        buffer.clear();
+      }
+    }
+
+    return Hashes.hex(digest.digest());
+  }
+
+  private static class Entry {
+    public final String fileKey;
+
+    public final String hash;
+
+    public final long lastModified;
+
+    public final long size;
+
+    public Entry(long size, long lastModified, String fileKey, String hash) {
+      this.size = size;
+      this.lastModified = lastModified;
+      this.fileKey = fileKey;
+      this.hash = hash;
+    }
+  }
+
+  private class HashTask extends RecursiveTask<SortedMap<Path, String>> {
+    private final List<Path> files;
+
+    public HashTask(List<Path> files) {
+      this.files = files;
+    }
+
+    @Override
+    protected SortedMap<Path, String> compute() {
+      SortedMap<Path, String> snapshot = new TreeMap<>();
+      if (files.size() > HASH_BATCH_SIZE) {
+        int middle = files.size() / 2;
+        HashTask first = new HashTask(files.subList(0, middle));
+        first.fork();
+        snapshot.putAll(new HashTask(files.subList(middle, files.size())).compute());
+        snapshot.putAll(first.join());
+        return snapshot;
+      }
+
+      try {
+        for (Path file : files) {
+          snapshot.put(file, hash(file));
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+
+      return snapshot;
+    }
+  }
+
+  private class SnapshotTask extends RecursiveTask<SortedMap<Path, String>> {
+    private final Path directory;
+
+    public SnapshotTask(Path directory) {
+      this.directory = directory;
+    }
+
+    @Override
+    protected SortedMap<Path, String> compute() {
+      List<Path> files = new ArrayList<>();
+      List<SnapshotTask> subTasks = new ArrayList<>();
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+        for (Path path : stream) {
+          if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+            SnapshotTask subTask = new SnapshotTask(path);
+            subTask.fork();
+            subTasks.add(subTask);
+          } else if (Files.isRegularFile(path)) {
+            files.add(path);
+          }
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+
+      SortedMap<Path, String> snapshot = new HashTask(files).compute();
+      for (SnapshotTask subTask : subTasks) {
+        snapshot.putAll(subTask.join());
+      }
+
+      return snapshot;
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Base64;
+
+/**
+ * A remote build cache that uses HTTP. Entries are fetched using a GET request and stored using a PUT request to the
+ * URL of the cache plus the cache key (i.e. {@code http://cache.example.com/savant/<key>}). If a username is given,
+ * the requests use basic authentication.
+ *
+ * @author Brian Pontarelli
+ */
+public class HTTPRemoteBuildCache implements RemoteBuildCache {
+  public static final int TIMEOUT = 10000;
+
+  public final String password;
+
+  public final String url;
+
+  public final String username;
+
+  public HTTPRemoteBuildCache(String url, String username, String password) {
+    this.url = url.endsWith("/") ? url : url + "/";
+    this.username = username;
+    this.password = password;
+  }
+
+  @Override
+  public boolean fetch(String key, Path file) throws IOException {
+    HttpURLConnection connection = open(key);
+    try {
+      int status = connection.getResponseCode();
+      if (status == HttpURLConnection.HTTP_NOT_FOUND) {
+        return false;
+      } else if (status != HttpURLConnection.HTTP_OK) {
+        throw new IOException("The remote build cache [" + url + "] returned the status code [" + status + "] for the key [" + key + "]");
+      }
+
+      try (InputStream is = connection.getInputStream()) {
+        Files.copy(is, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+
+      return true;
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  @Override
+  public void store(String key, Path file) throws IOException {
+    HttpURLConnection connection = open(key);
+    try {
+      connection.setRequestMethod("PUT");
+      connection.setDoOutput(true);
+      connection.setFixedLengthStreamingMode(Files.size(file));
+      connection.setRequestProperty("Content-Type", "application/octet-stream");
+      try (OutputStream os = connection.getOutputStream()) {
+        Files.copy(file, os);
+      }
+
+      int status = connection.getResponseCode();
+      if (status < 200 || status > 299) {
+        throw new IOException("The remote build cache [" + url + "] returned the status code [" + status + "] when storing the key [" + key + "]");
+      }
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return url;
+  }
+
+  private HttpURLConnection open(String key) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(url + key).openConnection();
+    connection.setConnectTimeout(TIMEOUT);
+    connection.setReadTimeout(TIMEOUT);
+    connection.setUseCaches(false);
+    if (username != null) {
+      String credentials = username + ":" + (password != null ? password : "");
+      connection.setRequestProperty("Authorization", "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    return connection;
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Hashing helpers that are shared by the caches of Savant (i.e. the compiled build files, the plugin resolutions and
+ * the build cache). All hashes are returned as lower-case hex Strings.
+ *
+ * @author Brian Pontarelli
+ */
+public final class Hashes {
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private Hashes() {
+  }
+
+  /**
+   * Creates a new MessageDigest for the given algorithm. The algorithms used by Savant (MD5 and SHA-256) are required
+   * by every JVM, so a missing algorithm is an IllegalStateException.
+   *
+   * @param algorithm The algorithm.
+   * @return The MessageDigest.
+   */
+  public static MessageDigest digest(String algorithm) {
+    try {
+      return MessageDigest.getInstance(algorithm);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("The JVM is missing the " + algorithm + " algorithm", e);
+    }
+  }
+
+  /**
+   * Converts the given bytes (usually a digest) to a hex String.
+   *
+   * @param bytes The bytes.
+   * @return The hex String.
+   */
+  public static String hex(byte[] bytes) {
+    char[] chars = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+      chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+    }
+
+    return new String(chars);
+  }
+
+  /**
+   * Calculates the MD5 hash of the contents of the given file.
+   *
+   * @param file The file.
+   * @return The hex String.
+   * @throws IOException If the file could not be read.
+   */
+  public static String md5(Path file) throws IOException {
+    MessageDigest digest = digest("MD5");
+    try (InputStream is = Files.newInputStream(file)) {
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = is.read(buffer)) != -1) {
+        digest.update(buffer, 0, read);
+      }
+    }
+
+    return hex(digest.digest());
+  }
+
+  /**
+   * Calculates the SHA-256 hash of the given bytes.
+   *
+   * @param bytes The bytes to hash.
+   * @return The hex String.
+   */
+  public static String sha256(byte[] bytes) {
+    return hex(digest("SHA-256").digest(bytes));
+  }
+
+  /**
+   * Calculates the SHA-256 hash of the UTF-8 bytes of the given String.
+   *
+   * @param value The String to hash.
+   * @return The hex String.
+   */
+  public static String sha256(String value) {
+    return sha256(value.getBytes(StandardCharsets.UTF_8));
+  }
+}
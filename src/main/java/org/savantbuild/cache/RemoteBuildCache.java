@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.cache;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * A build cache that is shared between machines. The {@link BuildCache} uses this to fetch entries that aren't in the
+ * local cache and to store the entries it creates. Each entry is a single archive file that is identified by the cache
+ * key.
+ *
+ * @author Brian Pontarelli
+ */
+public interface RemoteBuildCache {
+  /**
+   * Fetches the entry with the given key and writes it to the given file.
+   *
+   * @param key  The cache key.
+   * @param file The file to write the entry to.
+   * @return True if the entry was fetched, false if the remote cache doesn't contain the key.
+   * @throws IOException If the remote cache could not be contacted.
+   */
+  boolean fetch(String key, Path file) throws IOException;
+
+  /**
+   * Stores the given file as the entry for the given key.
+   *
+   * @param key  The cache key.
+   * @param file The entry file.
+   * @throws IOException If the remote cache could not be contacted or refused the entry.
+   */
+  void store(String key, Path file) throws IOException;
+}
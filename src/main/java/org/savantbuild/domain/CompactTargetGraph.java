@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2001-2010, Inversoft, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.domain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.savantbuild.parser.ParseException;
+
+/**
+ * A compact and immutable form of the target graph for projects with a lot of targets. Each target is given an int ID
+ * and the dependencies of the targets are stored in two int arrays (compressed sparse rows). The dependencies of the
+ * target with the ID {@code i} are the IDs {@code edges[offsets[i]]} to {@code edges[offsets[i + 1] - 1]}.
+ * <p>
+ * The IDs are assigned in topological order, which means that a target's dependencies always have smaller IDs than the
+ * target itself. Running targets in the order of their IDs therefore always runs the dependencies first. As far as
+ * possible, dependencies are ordered the same way they are listed in {@code dependsOn}.
+ * <p>
+ * Cycles are detected when the graph is built.
+ *
+ * @author Brian Pontarelli
+ */
+public class CompactTargetGraph {
+  private static final byte DONE = 2;
+
+  private static final byte VISITING = 1;
+
+  public final int[] edges;
+
+  public final int[] offsets;
+
+  /**
+   * The targets by ID, which is also their topological order.
+   */
+  public final Target[] targets;
+
+  private final Map<String, Integer> ids;
+
+  private final String[] names;
+
+  private CompactTargetGraph(String[] names, Target[] targets, int[] offsets, int[] edges) {
+    this.names = names;
+    this.targets = targets;
+    this.offsets = offsets;
+    this.edges = edges;
+    this.ids = new HashMap<>(names.length * 2);
+    for (int i = 0; i < names.length; i++) {
+      ids.put(names[i], i);
+    }
+  }
+
+  /**
+   * Builds the graph for the targets of the project.
+   *
+   * @param project The project.
+   * @return The graph.
+   * @throws ParseException If a target depends on a target that doesn't exist or if the dependencies have a cycle.
+   */
+  public static CompactTargetGraph build(Project project) {
+    // Sort the targets so that the IDs don't depend on the order of the HashMap
+    List<String> sorted = new ArrayList<>(project.targets.keySet());
+    Collections.sort(sorted);
+    Map<String, Integer> indexes = new HashMap<>(sorted.size() * 2);
+    for (int i = 0; i < sorted.size(); i++) {
+      indexes.put(sorted.get(i), i);
+    }
+
+    int[][] dependencies = new int[sorted.size()][];
+    for (int i = 0; i < sorted.size(); i++) {
+      String name = sorted.get(i);
+      List<String> dependsOn = project.targets.get(name).dependencies;
+      int[] resolved = new int[dependsOn != null ? dependsOn.size() : 0];
+      int count = 0;
+      for (int j = 0; j < resolved.length; j++) {
+        String dependency = dependsOn.get(j);
+        Integer index = indexes.get(dependency);
+        if (index == null && dependency.contains(":") && project.subProjects.isEmpty()) {
+          // A dependency on a target of another project in the workspace, which only applies when building the workspace
+          continue;
+        } else if (index == null) {
+          throw new ParseException("Invalid dependsOn for target [" + name + "]. Target [" + dependency + "] does not exist");
+        }
+
+        resolved[count++] = index;
+      }
+
+      dependencies[i] = count == resolved.length ? resolved : Arrays.copyOf(resolved, count);
+    }
+
+    // Depth-first post-order, which puts the dependencies before the targets that depend on them. Starting from the
+    // targets that nothing depends on keeps the order of their dependsOn. The second pass only finds cycles
+    int size = sorted.size();
+    boolean[] hasDependents = new boolean[size];
+    for (int[] edges : dependencies) {
+      for (int dependency : edges) {
+        hasDependents[dependency] = true;
+      }
+    }
+
+    int[] order = new int[size];
+    int ordered = 0;
+    byte[] state = new byte[size];
+    int[] stack = new int[size];
+    int[] cursors = new int[size];
+    for (int i = 0; i < size * 2; i++) {
+      int root = i % size;
+      if (state[root] != 0 || (i < size && hasDependents[root])) {
+        continue;
+      }
+
+      int top = 0;
+      stack[0] = root;
+      cursors[0] = 0;
+      state[root] = VISITING;
+      while (top >= 0) {
+        int node = stack[top];
+        if (cursors[top] < dependencies[node].length) {
+          int dependency = dependencies[node][cursors[top]++];
+          if (state[dependency] == VISITING) {
+            throw new ParseException("The dependsOn of the targets has a cycle [" + cycle(sorted, stack, top, dependency) + "]");
+          } else if (state[dependency] == 0) {
+            state[dependency] = VISITING;
+            stack[++top] = dependency;
+            cursors[top] = 0;
+          }
+        } else {
+          state[node] = DONE;
+          order[ordered++] = node;
+          top--;
+        }
+      }
+    }
+
+    int[] ids = new int[size];
+    for (int i = 0; i < size; i++) {
+      ids[order[i]] = i;
+    }
+
+    String[] names = new String[size];
+    Target[] targets = new Target[size];
+    int[] offsets = new int[size + 1];
+    int edgeCount = 0;
+    for (int[] edges : dependencies) {
+      edgeCount += edges.length;
+    }
+
+    int[] edges = new int[edgeCount];
+    int edge = 0;
+    for (int id = 0; id < size; id++) {
+      int index = order[id];
+      names[id] = sorted.get(index);
+      targets[id] = project.targets.get(names[id]);
+      offsets[id] = edge;
+      for (int dependency : dependencies[index]) {
+        edges[edge++] = ids[dependency];
+      }
+    }
+
+    offsets[size] = edge;
+    return new CompactTargetGraph(names, targets, offsets, edges);
+  }
+
+  private static String cycle(List<String> sorted, int[] stack, int top, int dependency) {
+    int start = top;
+    while (stack[start] != dependency) {
+      start--;
+    }
+
+    StringBuilder build = new StringBuilder();
+    for (int i = start; i <= top; i++) {
+      build.append(sorted.get(stack[i])).append(" -> ");
+    }
+
+    return build.append(sorted.get(dependency)).toString();
+  }
+
+  /**
+   * Determines the targets that must be run to run the given target, which are the target and all of its transitive
+   * dependencies.
+   *
+   * @param id The ID of the target.
+   * @return The IDs of the targets. Iterating over the set runs the targets in topological order.
+   */
+  public BitSet closure(int id) {
+    BitSet closure = new BitSet(targets.length);
+    int[] stack = new int[targets.length];
+    int top = 0;
+    stack[0] = id;
+    closure.set(id);
+    while (top >= 0) {
+      int node = stack[top--];
+      for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+        if (!closure.get(edges[i])) {
+          closure.set(edges[i]);
+          stack[++top] = edges[i];
+        }
+      }
+    }
+
+    return closure;
+  }
+
+  /**
+   * Returns the ID of the target with the given name.
+   *
+   * @param name The name of the target (the key in {@link Project#targets}).
+   * @return The ID or -1 if the target doesn't exist.
+   */
+  public int id(String name) {
+    Integer id = ids.get(name);
+    return id != null ? id : -1;
+  }
+
+  /**
+   * Returns the name of the target with the given ID. This is the key of the target in {@link Project#targets}.
+   *
+   * @param id The ID.
+   * @return The name.
+   */
+  public String name(int id) {
+    return names[id];
+  }
+
+  /**
+   * @return The number of targets.
+   */
+  public int size() {
+    return targets.length;
+  }
+}
@@ -17,9 +17,13 @@ package org.savantbuild.domain;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import org.savantbuild.cache.BuildCache;
+import org.savantbuild.cache.FileSnapshots;
 import org.savantbuild.dep.DefaultDependencyService;
 import org.savantbuild.dep.domain.Artifact;
 import org.savantbuild.dep.domain.ArtifactID;
@@ -30,9 +34,15 @@ import org.savantbuild.dep.domain.Version;
 import org.savantbuild.dep.graph.ArtifactGraph;
 import org.savantbuild.dep.workflow.PublishWorkflow;
 import org.savantbuild.dep.workflow.Workflow;
+import org.savantbuild.event.BuildEventBus;
 import org.savantbuild.output.Output;
 import org.savantbuild.plugin.Plugin;
+import org.savantbuild.runtime.BuildProfiler;
+import org.savantbuild.runtime.ExecutionPlan;
 import org.savantbuild.util.Graph;
+import org.savantbuild.workflow.DependencyResolver;
+import org.savantbuild.workflow.LockFile;
+import org.savantbuild.workflow.ParallelFetcher;
 
 /**
  * This class defines the project.
@@ -42,10 +52,26 @@ import org.savantbuild.util.Graph;
 public class Project {
   public static final Object GRAPH_EDGE = new Object();
 
+  /**
+   * Resolves the dependencies of the project and remembers the results for the build. Plugins should use this rather
+   * than the {@link #dependencyService} so that the dependencies are only resolved once.
+   */
+  public final DependencyResolver dependencyResolver;
+
   public final DefaultDependencyService dependencyService;
 
   public final Path directory;
 
+  /**
+   * The bus that build events are published to. Build files and plugins can subscribe to it.
+   */
+  public final BuildEventBus events;
+
+  /**
+   * The snapshots (content hashes) of the project's files. Plugins can use this to determine which files changed.
+   */
+  public final FileSnapshots fileSnapshots;
+
   public final Map<License, String> licenses = new HashMap<>();
 
   public final Output output;
@@ -54,30 +80,124 @@ public class Project {
 
   public ArtifactGraph artifactGraph;
 
+  /**
+   * The cache that the outputs of targets are restored from and stored in. If this is null, the build cache is disabled.
+   */
+  public BuildCache buildCache;
+
+  public Path buildFile;
+
+  /**
+   * The compact form of the target graph that the project runners use. This is set by the
+   * {@link org.savantbuild.parser.DefaultTargetGraphBuilder} along with the {@link #targetGraph}.
+   */
+  public CompactTargetGraph compactTargetGraph;
+
   public Dependencies dependencies;
 
   public String group;
 
+  /**
+   * The {@code savant.lock} file of the project that plugins are loaded from. If this is null, the plugins are always
+   * resolved.
+   */
+  public LockFile lockFile;
+
   public String name;
 
+  /**
+   * Downloads the artifacts of dependency graphs in parallel before they are resolved. If this is null, the artifacts
+   * are only fetched by the workflow.
+   */
+  public ParallelFetcher parallelFetcher;
+
   public Path pluginConfigurationDirectory = Paths.get(System.getProperty("user.home") + "/.savant/plugins");
 
   public Map<Artifact, Plugin> plugins = new HashMap<>();
 
   public Publications publications = new Publications();
 
+  /**
+   * The profiler for the build or null if the build isn't being profiled.
+   */
+  public BuildProfiler profiler;
+
   public PublishWorkflow publishWorkflow;
 
+  /**
+   * The projects of a workspace. This is only set for the project that combines the targets of a workspace.
+   */
+  public List<Project> subProjects = new ArrayList<>();
+
   public Graph<Target, Object> targetGraph;
 
   public Version version;
 
   public Workflow workflow;
 
+  private final Map<List<String>, ExecutionPlan> executionPlans = new HashMap<>();
+
   public Project(Path directory, Output output) {
     this.directory = directory;
     this.output = output;
     this.dependencyService = new DefaultDependencyService(output);
+    this.dependencyResolver = new DependencyResolver(this, dependencyService);
+    this.events = new BuildEventBus(output);
+    this.fileSnapshots = new FileSnapshots(output, directory != null ? directory.resolve(FileSnapshots.CACHE_FILE) : null);
+  }
+
+  /**
+   * Returns the compact target graph, building it if the target graph wasn't built by the
+   * {@link org.savantbuild.parser.DefaultTargetGraphBuilder}.
+   *
+   * @return The compact target graph.
+   */
+  public CompactTargetGraph compactTargetGraph() {
+    if (compactTargetGraph == null) {
+      compactTargetGraph = CompactTargetGraph.build(this);
+    }
+
+    return compactTargetGraph;
+  }
+
+  /**
+   * Returns the execution plan for the given targets. The plans are cached for the lifetime of the project, which
+   * means that builds that re-run the same targets (i.e. {@code --watch}) only compute the plan once.
+   *
+   * @param targets The names of the targets in the order they should be run.
+   * @return The plan.
+   * @throws org.savantbuild.runtime.BuildRunException If any of the targets doesn't exist.
+   */
+  public ExecutionPlan executionPlan(Iterable<String> targets) {
+    List<String> key = new ArrayList<>();
+    targets.forEach(key::add);
+
+    CompactTargetGraph graph = compactTargetGraph();
+    ExecutionPlan plan = executionPlans.get(key);
+    if (plan == null || plan.graph != graph) {
+      plan = ExecutionPlan.build(graph, key);
+      executionPlans.put(key, plan);
+    }
+
+    return plan;
+  }
+
+  /**
+   * Starts a profiler span if the build is being profiled. This is meant to be used with try-with-resources, which
+   * allows the resource to be null:
+   * <p>
+   * <pre>
+   *   try (BuildProfiler.Span span = project.profile("target", target.name)) {
+   *     ...
+   *   }
+   * </pre>
+   *
+   * @param category The category of the span.
+   * @param name     The name of the span.
+   * @return The span or null if the build isn't being profiled.
+   */
+  public BuildProfiler.Span profile(String category, String name) {
+    return profiler != null ? profiler.start(category, name) : null;
   }
 
   /**
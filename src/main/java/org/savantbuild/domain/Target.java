@@ -15,6 +15,8 @@
  */
 package org.savantbuild.domain;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 
 import static java.util.Arrays.asList;
@@ -29,10 +31,28 @@ public class Target {
 
   public String description;
 
+  /**
+   * The files and directories that the target reads. These are used with the outputs to determine if the target is
+   * up-to-date.
+   */
+  public List<Path> inputs = new ArrayList<>();
+
   public Runnable invocation;
 
   public String name;
 
+  /**
+   * The files and directories that the target produces. A target is only ever skipped as up-to-date if it declares its
+   * outputs.
+   */
+  public List<Path> outputs = new ArrayList<>();
+
+  /**
+   * The project that defines the target. This is only set for the targets of a workspace, where the project that is
+   * run combines the targets of many projects. If this is null, the target belongs to the project that is run.
+   */
+  public Project project;
+
   public Target() {
   }
 
@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2001-2010, Inversoft, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.event;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.savantbuild.output.Output;
+
+/**
+ * Delivers build events to listeners on a background thread so that publishing an event doesn't add any latency to the
+ * thread that runs the build. Events are stored in a fixed size ring buffer that many threads can publish to without
+ * locking. A single consumer thread calls the listeners in the order the events were published.
+ * <p>
+ * The consumer thread is only started when the first listener subscribes. Until then, the events are held (up to the
+ * capacity of the buffer) and they are delivered to the first listener when it subscribes. This means that build files
+ * receive the events published while the build file was compiled and its plugins were loaded. If the buffer is full,
+ * publishers wait for the listeners to catch up rather than dropping events, unless the consumer thread has died.
+ * <p>
+ * Build files can listen for events using the project like this:
+ * <p>
+ * <pre>
+ *   project.events.subscribe { event ->
+ *     if (event instanceof TargetFinished) {
+ *       ...
+ *     }
+ *   }
+ * </pre>
+ *
+ * @author Brian Pontarelli
+ */
+public class BuildEventBus implements AutoCloseable {
+  public static final int DEFAULT_CAPACITY = 4096;
+
+  private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+  private final AtomicReferenceArray<BuildEvent> buffer;
+
+  private final List<BuildEventListener> listeners = new CopyOnWriteArrayList<>();
+
+  private final int mask;
+
+  private final Output output;
+
+  /**
+   * The events that were published before the first listener subscribed.
+   */
+  private final List<BuildEvent> pending = new ArrayList<>();
+
+  /**
+   * The next sequence that is claimed by a publisher.
+   */
+  private final AtomicLong published = new AtomicLong();
+
+  private volatile boolean closed;
+
+  private volatile Thread consumer;
+
+  /**
+   * The next sequence that the consumer thread delivers. This is only written by the consumer thread.
+   */
+  private volatile long consumed;
+
+  private volatile boolean waiting;
+
+  public BuildEventBus(Output output) {
+    this(output, DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Constructs the bus.
+   *
+   * @param output   The output that listener failures are written to.
+   * @param capacity The number of events that the buffer holds. This is rounded up to a power of two.
+   */
+  public BuildEventBus(Output output, int capacity) {
+    int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+    this.output = output;
+    this.buffer = new AtomicReferenceArray<>(size);
+    this.mask = size - 1;
+  }
+
+  /**
+   * Delivers all of the events that have been published and then stops the consumer thread. Events that are published
+   * after the bus is closed are ignored.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    Thread thread = consumer;
+    if (thread == null || thread == Thread.currentThread()) {
+      return;
+    }
+
+    LockSupport.unpark(thread);
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Waits until the listeners have handled all of the events that were published before this method was called.
+   */
+  public void flush() {
+    long sequence = published.get();
+    Thread thread = consumer;
+    while (consumed < sequence && thread != null && thread.isAlive() && thread != Thread.currentThread()) {
+      LockSupport.unpark(thread);
+      LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(1));
+    }
+  }
+
+  /**
+   * Publishes the event. This never blocks unless the buffer is full.
+   *
+   * @param event The event.
+   */
+  public void publish(BuildEvent event) {
+    if (closed) {
+      return;
+    }
+
+    if (consumer == null) {
+      synchronized (this) {
+        if (consumer == null) {
+          if (pending.size() < buffer.length()) {
+            pending.add(event);
+          }
+
+          return;
+        }
+      }
+    }
+
+    enqueue(event);
+  }
+
+  /**
+   * Adds a listener and starts the consumer thread if it isn't running yet.
+   *
+   * @param listener The listener.
+   */
+  public synchronized void subscribe(BuildEventListener listener) {
+    listeners.add(listener);
+    if (consumer == null) {
+      // The pending events fit in the buffer, so this never waits. Publishers wait on this lock until they are queued
+      pending.forEach(this::enqueue);
+      pending.clear();
+
+      Thread thread = new Thread(this::consume, "Savant build events");
+      thread.setDaemon(true);
+      consumer = thread;
+      thread.start();
+    }
+  }
+
+  /**
+   * Removes the listener.
+   *
+   * @param listener The listener.
+   */
+  public void unsubscribe(BuildEventListener listener) {
+    listeners.remove(listener);
+  }
+
+  private void consume() {
+    long sequence = 0;
+    while (true) {
+      int index = (int) (sequence & mask);
+      BuildEvent event = buffer.get(index);
+      if (event == null) {
+        if (closed && sequence >= published.get()) {
+          return;
+        }
+
+        // Re-check after setting the flag so that an event published in between isn't missed
+        waiting = true;
+        if (buffer.get(index) == null) {
+          LockSupport.parkNanos(this, IDLE_NANOS);
+        }
+        waiting = false;
+        continue;
+      }
+
+      buffer.set(index, null);
+      for (BuildEventListener listener : listeners) {
+        try {
+          listener.handle(event);
+        } catch (Throwable t) {
+          output.warning("The build event listener [%s] failed. The error was [%s]", listener, t.getMessage());
+          output.debug(t);
+        }
+      }
+
+      // Release the slot to the publishers
+      consumed = ++sequence;
+    }
+  }
+
+  private void enqueue(BuildEvent event) {
+    long sequence = published.getAndIncrement();
+    Thread thread = consumer;
+    while (sequence - consumed >= buffer.length()) {
+      // Nothing will ever free up the slot if the consumer thread died, so the event is dropped
+      if (thread != null && !thread.isAlive()) {
+        return;
+      }
+
+      Thread.yield();
+    }
+
+    buffer.set((int) (sequence & mask), event);
+    if (waiting && thread != null) {
+      LockSupport.unpark(thread);
+    }
+  }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2001-2010, Inversoft, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.event;
+
+/**
+ * Listens for build events. Listeners are called on the background thread of the {@link BuildEventBus}, one event at
+ * a time and in the order the events were published.
+ *
+ * @author Brian Pontarelli
+ */
+@FunctionalInterface
+public interface BuildEventListener {
+  /**
+   * Handles the event.
+   *
+   * @param event The event.
+   */
+  void handle(BuildEvent event);
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2001-2010, Inversoft, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.event;
+
+import java.nio.file.Path;
+
+/**
+ * Published when the build file has been compiled (or loaded from the compiled script cache).
+ *
+ * @author Brian Pontarelli
+ */
+public class ScriptCompiled extends BuildEvent {
+  public final Path buildFile;
+
+  public final long durationMillis;
+
+  public ScriptCompiled(Path buildFile, long durationMillis) {
+    this.buildFile = buildFile;
+    this.durationMillis = durationMillis;
+  }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2001-2010, Inversoft, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.event;
+
+/**
+ * Published when a target finishes running, whether it was successful or not. This isn't published for targets that
+ * are skipped (see {@link TargetSkipped}).
+ *
+ * @author Brian Pontarelli
+ */
+public class TargetFinished extends BuildEvent {
+  public final long durationMillis;
+
+  public final boolean successful;
+
+  public final String target;
+
+  public TargetFinished(String target, boolean successful, long durationMillis) {
+    this.target = target;
+    this.successful = successful;
+    this.durationMillis = durationMillis;
+  }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2001-2010, Inversoft, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.event;
+
+/**
+ * Published instead of {@link TargetStarted} and {@link TargetFinished} when a target doesn't need to run.
+ *
+ * @author Brian Pontarelli
+ */
+public class TargetSkipped extends BuildEvent {
+  public final Reason reason;
+
+  public final String target;
+
+  public TargetSkipped(String target, Reason reason) {
+    this.target = target;
+    this.reason = reason;
+  }
+
+  public enum Reason {
+    /**
+     * The inputs and outputs of the target haven't changed since it last ran.
+     */
+    UP_TO_DATE,
+
+    /**
+     * The outputs of the target were restored from the build cache.
+     */
+    FROM_CACHE
+  }
+}
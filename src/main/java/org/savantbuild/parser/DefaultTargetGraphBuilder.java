@@ -15,34 +15,36 @@
  */
 package org.savantbuild.parser;
 
-import org.savantbuild.util.Graph;
-import org.savantbuild.util.HashGraph;
+import org.savantbuild.domain.CompactTargetGraph;
 import org.savantbuild.domain.Project;
 import org.savantbuild.domain.Target;
+import org.savantbuild.util.Graph;
+import org.savantbuild.util.HashGraph;
 
 /**
- * Default target graph builder.
+ * Default target graph builder. This validates the dependencies of the targets and detects cycles by building the
+ * {@link CompactTargetGraph}, which is stored in the project for the project runners. The {@link Graph} is built from the
+ * compact graph.
  *
  * @author Brian Pontarelli
  */
 public class DefaultTargetGraphBuilder implements TargetGraphBuilder {
+  /**
+   * {@inheritDoc}
+   *
+   * @throws ParseException If a target depends on a target that doesn't exist or if the dependencies have a cycle.
+   */
   @Override
   public Graph<Target, Object> build(Project project) {
+    CompactTargetGraph compact = CompactTargetGraph.build(project);
+    project.compactTargetGraph = compact;
+
     Graph<Target, Object> graph = new HashGraph<>();
-    project.targets.forEach((name, target) -> {
-      if (target.dependencies == null) {
-        return;
+    for (int id = 0; id < compact.size(); id++) {
+      for (int i = compact.offsets[id]; i < compact.offsets[id + 1]; i++) {
+        graph.addEdge(compact.targets[id], compact.targets[compact.edges[i]], Project.GRAPH_EDGE);
       }
-
-      target.dependencies.forEach((dependency) -> {
-        Target dependencyTarget = project.targets.get(dependency);
-        if (dependencyTarget == null) {
-          throw new ParseException("Invalid dependsOn for target [" + name + "]. Target [" + dependency + "] does not exist");
-        }
-
-        graph.addEdge(target, dependencyTarget, Project.GRAPH_EDGE);
-      });
-    });
+    }
 
     return graph;
   }
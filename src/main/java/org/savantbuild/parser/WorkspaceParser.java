@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.parser;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.savantbuild.domain.Project;
+import org.savantbuild.domain.Target;
+import org.savantbuild.output.Output;
+import org.savantbuild.runtime.BuildProfiler;
+import org.savantbuild.runtime.RuntimeConfiguration;
+
+/**
+ * Parses a workspace file, which lists the projects of a multi-project build. The workspace file is a text file that
+ * contains the directory of one project per line relative to the workspace directory. Directories can contain glob
+ * patterns and blank lines and lines starting with {@code #} are ignored. For example:
+ * <p>
+ * <pre>
+ *   # The core libraries
+ *   core
+ *   modules/*
+ * </pre>
+ * <p>
+ * The build files of all of the projects are parsed in parallel and their targets are combined into a single project.
+ * Each target is named using the directory of its project, for example {@code modules/web:jar}. Targets can depend on
+ * the targets of other projects using these names:
+ * <p>
+ * <pre>
+ *   target(name: "jar", dependsOn: ["compile", "core:jar"]) {
+ *     ...
+ *   }
+ * </pre>
+ * <p>
+ * When a project is built by itself, the dependencies on the targets of other projects are ignored.
+ * <p>
+ * When a target to run doesn't contain a project (i.e. {@code jar}), that target is run for every project that
+ * defines it in the order the projects are listed in the workspace file.
+ *
+ * @author Brian Pontarelli
+ */
+public class WorkspaceParser implements BuildFileParser {
+  public static final String BUILD_FILE = "build.savant";
+
+  public static final String WORKSPACE_FILE = "savant.workspace";
+
+  private final BuildFileParser buildFileParser;
+
+  private final Output output;
+
+  private final TargetGraphBuilder targetGraphBuilder;
+
+  public WorkspaceParser(Output output, BuildFileParser buildFileParser, TargetGraphBuilder targetGraphBuilder) {
+    this.output = output;
+    this.buildFileParser = buildFileParser;
+    this.targetGraphBuilder = targetGraphBuilder;
+  }
+
+  /**
+   * Parses the workspace file and the build files of all of its projects.
+   *
+   * @param file                 The workspace file.
+   * @param runtimeConfiguration The runtime configuration that is passed to the build scripts. The targets of the
+   *                             runtime configuration are expanded to the targets of the projects.
+   * @return The Project that contains the targets of all of the projects.
+   * @throws ParseException If the workspace file or any build file can't be parsed.
+   */
+  @Override
+  public Project parse(Path file, RuntimeConfiguration runtimeConfiguration) {
+    Path directory = file.toAbsolutePath().getParent();
+    List<Path> projectDirectories = projectDirectories(file, directory);
+    if (projectDirectories.isEmpty()) {
+      throw new ParseException("The workspace file [" + file + "] doesn't list any projects");
+    }
+
+    Project workspace = new Project(directory, output);
+    workspace.buildFile = file.toAbsolutePath();
+    workspace.name = directory.getFileName() != null ? directory.getFileName().toString() : "workspace";
+    workspace.profiler = runtimeConfiguration.profile ? new BuildProfiler() : null;
+
+    // Parse all of the build files in parallel
+    ExecutorService pool = Executors.newFixedThreadPool(Math.min(projectDirectories.size(), Runtime.getRuntime().availableProcessors()));
+    try {
+      List<CompletableFuture<Project>> futures = new ArrayList<>();
+      for (Path projectDirectory : projectDirectories) {
+        futures.add(CompletableFuture.supplyAsync(() -> buildFileParser.parse(projectDirectory.resolve(BUILD_FILE), runtimeConfiguration), pool));
+      }
+
+      for (int i = 0; i < futures.size(); i++) {
+        try {
+          workspace.subProjects.add(futures.get(i).join());
+        } catch (CompletionException e) {
+          output.error("Unable to parse the build file of the project [%s]", name(directory, projectDirectories.get(i)));
+          if (e.getCause() instanceof RuntimeException) {
+            throw (RuntimeException) e.getCause();
+          }
+
+          throw new ParseException("Unable to parse the build file of the project [" + name(directory, projectDirectories.get(i)) + "]", e.getCause());
+        }
+      }
+    } finally {
+      pool.shutdown();
+    }
+
+    for (Project project : workspace.subProjects) {
+      String name = name(directory, project.directory);
+      project.targets.forEach((targetName, target) -> {
+        Target combined = new Target();
+        combined.name = name + ":" + targetName;
+        combined.description = target.description;
+        combined.invocation = target.invocation;
+        combined.inputs = target.inputs;
+        combined.outputs = target.outputs;
+        combined.project = project;
+        if (target.dependencies != null) {
+          combined.dependencies = target.dependencies.stream()
+                                                     .map((dependency) -> dependency.contains(":") ? dependency : name + ":" + dependency)
+                                                     .collect(Collectors.toList());
+        }
+
+        workspace.targets.put(combined.name, combined);
+      });
+    }
+
+    workspace.targetGraph = targetGraphBuilder.build(workspace);
+    runtimeConfiguration.targets = expandTargets(workspace, runtimeConfiguration.targets);
+    return workspace;
+  }
+
+  private List<String> expandTargets(Project workspace, List<String> targets) {
+    List<String> expanded = new ArrayList<>();
+    for (String target : targets) {
+      if (workspace.targets.containsKey(target) || target.contains(":")) {
+        expanded.add(target);
+        continue;
+      }
+
+      int size = expanded.size();
+      for (Project project : workspace.subProjects) {
+        if (project.targets.containsKey(target)) {
+          expanded.add(name(workspace.directory, project.directory) + ":" + target);
+        }
+      }
+
+      // Leave unknown targets so that the runner reports them
+      if (expanded.size() == size) {
+        expanded.add(target);
+      }
+    }
+
+    return expanded;
+  }
+
+  private String name(Path directory, Path projectDirectory) {
+    return directory.relativize(projectDirectory).toString().replace('\\', '/');
+  }
+
+  private List<Path> projectDirectories(Path file, Path directory) {
+    List<String> lines;
+    try {
+      lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new ParseException("Unable to read the workspace file [" + file + "]", e);
+    }
+
+    Set<Path> projectDirectories = new LinkedHashSet<>();
+    for (String line : lines) {
+      String pattern = line.trim();
+      if (pattern.isEmpty() || pattern.startsWith("#")) {
+        continue;
+      }
+
+      if (!pattern.contains("*") && !pattern.contains("?") && !pattern.contains("[") && !pattern.contains("{")) {
+        Path projectDirectory = directory.resolve(pattern).normalize();
+        if (!Files.isRegularFile(projectDirectory.resolve(BUILD_FILE))) {
+          throw new ParseException("The project [" + pattern + "] in the workspace file [" + file + "] doesn't have a build file");
+        }
+
+        projectDirectories.add(projectDirectory);
+        continue;
+      }
+
+      PathMatcher matcher = directory.getFileSystem().getPathMatcher("glob:" + pattern);
+      try (Stream<Path> stream = Files.walk(directory, pattern.split("/").length)) {
+        stream.filter((path) -> matcher.matches(directory.relativize(path)) && Files.isRegularFile(path.resolve(BUILD_FILE)))
+              .sorted()
+              .forEach((path) -> projectDirectories.add(path.normalize()));
+      } catch (IOException e) {
+        throw new ParseException("Unable to find the projects for [" + pattern + "] in the workspace file [" + file + "]", e);
+      }
+    }
+
+    return new ArrayList<>(projectDirectories);
+  }
+}
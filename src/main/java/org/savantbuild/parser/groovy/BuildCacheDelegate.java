@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.parser.groovy;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.savantbuild.cache.BuildCache;
+import org.savantbuild.cache.HTTPRemoteBuildCache;
+import org.savantbuild.cache.RemoteBuildCache;
+import org.savantbuild.output.Output;
+import org.savantbuild.parser.ParseException;
+
+/**
+ * Groovy delegate that captures the build cache configuration from the project build file. The methods on this class
+ * capture the configuration from the DSL.
+ *
+ * @author Brian Pontarelli
+ */
+public class BuildCacheDelegate {
+  public final Output output;
+
+  public final Path projectDirectory;
+
+  public Path directory = BuildCache.DEFAULT_DIRECTORY;
+
+  public boolean enabled = true;
+
+  public boolean push;
+
+  public RemoteBuildCache remote;
+
+  public BuildCacheDelegate(Output output, Path projectDirectory) {
+    this.output = output;
+    this.projectDirectory = projectDirectory;
+  }
+
+  /**
+   * Disables the build cache for the project.
+   */
+  public void disabled() {
+    enabled = false;
+  }
+
+  /**
+   * Configures the local build cache using the given attributes. The only attribute is {@code dir}, which is the
+   * directory of the local cache. Relative directories are resolved against the project directory.
+   *
+   * @param attributes The attributes.
+   */
+  public void local(Map<String, Object> attributes) {
+    if (!GroovyTools.hasAttributes(attributes, "dir")) {
+      throw new ParseException("Invalid local build cache definition. It should look like:\n\n" +
+          "  local(dir: \"/var/savant/build-cache\")");
+    }
+
+    directory = projectDirectory.resolve(GroovyTools.toString(attributes, "dir"));
+  }
+
+  /**
+   * Configures the remote build cache using the given attributes. The {@code url} attribute is required. The optional
+   * attributes are {@code username}, {@code password} and {@code push}. The {@code push} attribute controls if the
+   * entries from this build are uploaded to the remote cache (usually only on CI).
+   *
+   * @param attributes The attributes.
+   */
+  public void remote(Map<String, Object> attributes) {
+    if (!GroovyTools.hasAttributes(attributes, "url")) {
+      throw new ParseException("Invalid remote build cache definition. It should look like:\n\n" +
+          "  remote(url: \"http://cache.example.com/savant\", push: true)");
+    }
+
+    remote = new HTTPRemoteBuildCache(GroovyTools.toString(attributes, "url"), GroovyTools.toString(attributes, "username"),
+        GroovyTools.toString(attributes, "password"));
+    push = Boolean.parseBoolean(GroovyTools.toString(attributes, "push"));
+  }
+
+  /**
+   * @return The BuildCache for the configuration or null if the build cache was disabled.
+   */
+  public BuildCache toBuildCache() {
+    return enabled ? new BuildCache(output, directory, remote, push) : null;
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.parser.groovy;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import org.codehaus.groovy.control.CompilationUnit;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.Phases;
+import org.codehaus.groovy.tools.GroovyClass;
+import org.savantbuild.cache.Hashes;
+import org.savantbuild.output.Output;
+
+import groovy.lang.GroovyClassLoader;
+import groovy.lang.GroovySystem;
+
+/**
+ * Caches the compiled classes of build files on disk. The cache key is a hash of the build file contents, the Savant
+ * version, the Groovy version and the compiler configuration. This means that any change to the build file or upgrade
+ * of Savant causes the build file to be recompiled. The Savant version should identify the exact Savant JAR (see
+ * {@link org.savantbuild.runtime.Main#compiledVersion()}) since integration builds share the same version.
+ * <p>
+ * Each cache entry is a directory that contains the class files for the build file (the script class and all of its
+ * closure classes) plus a file that contains the name of the script class.
+ *
+ * @author Brian Pontarelli
+ */
+public class CompiledScriptCache {
+  public static final Path DEFAULT_DIRECTORY = Paths.get(System.getProperty("user.home"), ".savant/cache/scripts");
+
+  private static final String SCRIPT_CLASS_FILE = "script-class";
+
+  // Script classes that this JVM already loaded. This only matters when the same JVM runs many builds (the daemon)
+  private static final Map<String, Class<?>> loaded = new ConcurrentHashMap<>();
+
+  private final Path directory;
+
+  private final Output output;
+
+  private final String savantVersion;
+
+  public CompiledScriptCache(Output output, Path directory, String savantVersion) {
+    this.output = output;
+    this.directory = directory;
+    this.savantVersion = savantVersion;
+  }
+
+  /**
+   * Forgets the script classes that this JVM already loaded, so that the next build loads them from the cache
+   * directory like a new JVM would. This is used by the benchmarks to measure the cache directory.
+   */
+  public static void clearLoadedClasses() {
+    loaded.clear();
+  }
+
+  /**
+   * Loads the script class for the given build file. If the build file has already been compiled, the class is loaded
+   * from the cache. Otherwise, the build file is compiled and the classes are stored in the cache.
+   *
+   * @param buildFile         The build file.
+   * @param compilerConfig    The compiler configuration used to compile the build file.
+   * @param groovyClassLoader The GroovyClassLoader that is used as the parent of the class loader for the script
+   *                          classes.
+   * @return The script class.
+   * @throws IOException If the build file could not be read or the cache could not be written.
+   */
+  public Class<?> load(Path buildFile, CompilerConfiguration compilerConfig, GroovyClassLoader groovyClassLoader)
+      throws IOException {
+    String key = key(buildFile, compilerConfig);
+    Class<?> scriptClass = loaded.get(key);
+    if (scriptClass != null) {
+      return scriptClass;
+    }
+
+    Path entry = directory.resolve(key);
+    if (Files.isRegularFile(entry.resolve(SCRIPT_CLASS_FILE))) {
+      output.debug("Loading the compiled build file from the cache [%s]", entry);
+    } else {
+      output.debug("Compiling the build file and storing it in the cache [%s]", entry);
+      compile(buildFile, compilerConfig, groovyClassLoader, entry);
+    }
+
+    String scriptClassName = new String(Files.readAllBytes(entry.resolve(SCRIPT_CLASS_FILE)), StandardCharsets.UTF_8);
+    URLClassLoader classLoader = new URLClassLoader(new URL[]{entry.toUri().toURL()}, groovyClassLoader);
+    try {
+      scriptClass = classLoader.loadClass(scriptClassName);
+      loaded.put(key, scriptClass);
+      return scriptClass;
+    } catch (ClassNotFoundException e) {
+      throw new IOException("The build file cache entry [" + entry + "] is corrupt. Delete it and rerun the build.", e);
+    }
+  }
+
+  private void compile(Path buildFile, CompilerConfiguration compilerConfig, GroovyClassLoader groovyClassLoader,
+                       Path entry) throws IOException {
+    CompilationUnit unit = new CompilationUnit(compilerConfig, null, groovyClassLoader);
+    unit.addSource(buildFile.toFile());
+    unit.compile(Phases.CLASS_GENERATION);
+
+    // Write to a temporary directory and then move it so that concurrent builds never see a partial entry
+    Files.createDirectories(directory);
+    Path temp = Files.createTempDirectory(directory, "compile");
+    try {
+      for (Object object : unit.getClasses()) {
+        GroovyClass groovyClass = (GroovyClass) object;
+        Path classFile = temp.resolve(groovyClass.getName().replace('.', '/') + ".class");
+        Files.createDirectories(classFile.getParent());
+        Files.write(classFile, groovyClass.getBytes());
+      }
+
+      Files.write(temp.resolve(SCRIPT_CLASS_FILE), unit.getFirstClassNode().getName().getBytes(StandardCharsets.UTF_8));
+      Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE);
+    } catch (DirectoryNotEmptyException | FileAlreadyExistsException e) {
+      // Another build compiled the same build file at the same time
+      output.debug("The build file cache entry [%s] was created by another build", entry);
+    } finally {
+      if (Files.isDirectory(temp)) {
+        delete(temp);
+      }
+    }
+  }
+
+  private void delete(Path dir) throws IOException {
+    try (Stream<Path> paths = Files.walk(dir)) {
+      for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(path);
+      }
+    }
+  }
+
+  private String key(Path buildFile, CompilerConfiguration compilerConfig) throws IOException {
+    byte[] script = Files.readAllBytes(buildFile);
+    String configuration = savantVersion + "\n" +
+        GroovySystem.getVersion() + "\n" +
+        buildFile.getFileName() + "\n" +
+        compilerConfig.getScriptBaseClass() + "\n" +
+        compilerConfig.getTargetBytecode() + "\n" +
+        compilerConfig.getSourceEncoding() + "\n";
+    byte[] configurationBytes = configuration.getBytes(StandardCharsets.UTF_8);
+    byte[] bytes = new byte[configurationBytes.length + script.length];
+    System.arraycopy(configurationBytes, 0, bytes, 0, configurationBytes.length);
+    System.arraycopy(script, 0, bytes, configurationBytes.length, script.length);
+    return Hashes.sha256(bytes);
+  }
+}
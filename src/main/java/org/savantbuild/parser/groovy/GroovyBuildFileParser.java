@@ -17,6 +17,7 @@ package org.savantbuild.parser.groovy;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Map;
 
 import org.codehaus.groovy.control.CompilerConfiguration;
 import org.savantbuild.dep.LicenseException;
@@ -27,16 +28,20 @@ import org.savantbuild.dep.workflow.ArtifactMetaDataMissingException;
 import org.savantbuild.dep.workflow.ArtifactMissingException;
 import org.savantbuild.dep.workflow.process.ProcessFailureException;
 import org.savantbuild.domain.Project;
+import org.savantbuild.domain.Target;
+import org.savantbuild.event.ScriptCompiled;
 import org.savantbuild.output.Output;
 import org.savantbuild.parser.BuildFileParser;
 import org.savantbuild.parser.ParseException;
 import org.savantbuild.parser.TargetGraphBuilder;
 import org.savantbuild.plugin.PluginLoadException;
 import org.savantbuild.runtime.BuildFailureException;
+import org.savantbuild.runtime.BuildProfiler;
 import org.savantbuild.runtime.BuildRunException;
 import org.savantbuild.runtime.RuntimeConfiguration;
 import org.savantbuild.security.MD5Exception;
 import org.savantbuild.util.CyclicException;
+import org.savantbuild.workflow.LockFile;
 
 import groovy.lang.GroovyClassLoader;
 
@@ -46,17 +51,49 @@ import groovy.lang.GroovyClassLoader;
  * @author Brian Pontarelli
  */
 public class GroovyBuildFileParser implements BuildFileParser {
+  private final CompiledScriptCache compiledScriptCache;
+
   private final Output output;
 
+  private final TargetCache targetCache;
+
   private final TargetGraphBuilder targetGraphBuilder;
 
   public GroovyBuildFileParser(Output output, TargetGraphBuilder targetGraphBuilder) {
+    this(output, targetGraphBuilder, null, null);
+  }
+
+  public GroovyBuildFileParser(Output output, TargetGraphBuilder targetGraphBuilder, CompiledScriptCache compiledScriptCache) {
+    this(output, targetGraphBuilder, compiledScriptCache, null);
+  }
+
+  /**
+   * Constructs the parser so that the compiled build file classes and the targets are stored in and loaded from the
+   * given caches.
+   *
+   * @param output              The output.
+   * @param targetGraphBuilder  The target graph builder.
+   * @param compiledScriptCache (Optional) The cache for the compiled build file classes. If this is null, the build
+   *                            file is compiled every time it is parsed.
+   * @param targetCache         (Optional) The cache for the targets of the build file. If this is null, the build
+   *                            file is run for {@code --help}, {@code --listTargets} and {@code --dry-run}.
+   */
+  public GroovyBuildFileParser(Output output, TargetGraphBuilder targetGraphBuilder, CompiledScriptCache compiledScriptCache,
+                               TargetCache targetCache) {
     this.output = output;
     this.targetGraphBuilder = targetGraphBuilder;
+    this.compiledScriptCache = compiledScriptCache;
+    this.targetCache = targetCache;
   }
 
   /**
-   * Executes the script using a GroovyClassLoader and the ProjectBuildFileMetaClass.
+   * Executes the script using a GroovyClassLoader and the ProjectBuildFileMetaClass. If this parser has a
+   * {@link CompiledScriptCache}, the script class is loaded from the cache rather than being compiled.
+   * <p>
+   * If only the targets are needed ({@code --help}, {@code --listTargets} and {@code --dry-run}) and this parser has a
+   * {@link TargetCache} that contains the build file, the project only contains the cached targets and the script
+   * isn't run at all. The targets are only cached if running the build file didn't check any switches, since the
+   * targets might depend on them.
    *
    * @param buildFile            The file.
    * @param runtimeConfiguration The runtime configuration that is passed to the build script.
@@ -82,25 +119,80 @@ public class GroovyBuildFileParser implements BuildFileParser {
    */
   @Override
   public Project parse(Path buildFile, RuntimeConfiguration runtimeConfiguration) throws ParseException {
-    try {
+    if (targetCache != null && (runtimeConfiguration.help || runtimeConfiguration.listTargets || runtimeConfiguration.dryRun)) {
+      Project project = loadTargets(buildFile);
+      if (project != null) {
+        return project;
+      }
+    }
+
+    BuildProfiler profiler = runtimeConfiguration.profile ? new BuildProfiler() : null;
+    try (BuildProfiler.Span span = profiler != null ? profiler.start("parse", buildFile.getFileName().toString()) : null) {
+      long start = System.currentTimeMillis();
       CompilerConfiguration compilerConfig = new CompilerConfiguration();
       compilerConfig.setScriptBaseClass(ProjectBuildFile.class.getName());
 
       GroovyClassLoader groovyClassLoader = new GroovyClassLoader(ClassLoader.getSystemClassLoader(), compilerConfig);
-      Class<?> buildClass = groovyClassLoader.parseClass(buildFile.toFile());
+      Class<?> buildClass = compiledScriptCache != null ? compiledScriptCache.load(buildFile, compilerConfig, groovyClassLoader) :
+          groovyClassLoader.parseClass(buildFile.toFile());
       ProjectBuildFile script = (ProjectBuildFile) buildClass.newInstance();
       Project project = new Project(buildFile.toAbsolutePath().getParent(), output);
+      project.buildFile = buildFile.toAbsolutePath();
+      project.lockFile = new LockFile(output, project.directory.resolve(LockFile.LOCK_FILE));
+      project.profiler = profiler;
+      project.events.publish(new ScriptCompiled(project.buildFile, System.currentTimeMillis() - start));
       script.project = project;
       script.output = output;
       script.runtimeConfiguration = runtimeConfiguration;
+      script.ENV = runtimeConfiguration.environment;
       script.switches = runtimeConfiguration.switches;
       script.run();
+      script.awaitPlugins();
 
       project.targetGraph = targetGraphBuilder.build(project);
+      storeTargets(buildFile, project, runtimeConfiguration);
 
       return project;
     } catch (IOException | InstantiationException | IllegalAccessException e) {
       throw new ParseException("Unable to parse project build file", e);
     }
   }
+
+  private Project loadTargets(Path buildFile) {
+    try {
+      Map<String, Target> targets = targetCache.load(buildFile);
+      if (targets == null) {
+        return null;
+      }
+
+      Project project = new Project(buildFile.toAbsolutePath().getParent(), output);
+      project.buildFile = buildFile.toAbsolutePath();
+      project.targets.putAll(targets);
+      project.targetGraph = targetGraphBuilder.build(project);
+      return project;
+    } catch (IOException e) {
+      output.debug("Unable to load the targets of the build file from the cache");
+      output.debug(e);
+      return null;
+    }
+  }
+
+  private void storeTargets(Path buildFile, Project project, RuntimeConfiguration runtimeConfiguration) {
+    if (targetCache == null) {
+      return;
+    }
+
+    // The targets might depend on the switches if the build file (or a plugin) checked them while it was run
+    if (!runtimeConfiguration.switches.queried.isEmpty()) {
+      output.debug("Not caching the targets of the build file because it uses the switches %s", runtimeConfiguration.switches.queried);
+      return;
+    }
+
+    try {
+      targetCache.store(buildFile, project.targets.values());
+    } catch (IOException e) {
+      output.debug("Unable to store the targets of the build file in the cache");
+      output.debug(e);
+    }
+  }
 }
@@ -15,6 +15,9 @@
  */
 package org.savantbuild.parser.groovy;
 
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -148,6 +151,29 @@ public class GroovyTools {
     defaults.forEach(map::putIfAbsent);
   }
 
+  /**
+   * Converts the object to a List of Paths. If the object is a List, this converts all non-null items to Paths and
+   * deletes null values. If it isn't a List, it returns a single element List. Relative paths are resolved against the
+   * given directory.
+   *
+   * @param value     The value to convert (Strings, GStrings, Paths or Files).
+   * @param directory The directory that relative paths are resolved against.
+   * @return The List of Paths.
+   */
+  @SuppressWarnings("unchecked")
+  public static List<Path> toListOfPaths(Object value, Path directory) {
+    if (value == null) {
+      return null;
+    }
+
+    List<Object> list = value instanceof List ? (List<Object>) value : asList(value);
+    return list.stream()
+               .filter(Objects::nonNull)
+               .map((item) -> item instanceof Path ? (Path) item : item instanceof File ? ((File) item).toPath() : Paths.get(item.toString()))
+               .map(directory::resolve)
+               .collect(Collectors.toList());
+  }
+
   /**
    * Converts the object to a List of Strings. If the object is a List, this converts all non-null items to Strings and
    * deletes null values. If it isn't a List, it returns a single element List with the value of object.toString().
@@ -18,9 +18,21 @@ package org.savantbuild.parser.groovy;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 import org.savantbuild.dep.domain.Artifact;
 import org.savantbuild.dep.domain.License;
@@ -28,12 +40,16 @@ import org.savantbuild.dep.domain.Version;
 import org.savantbuild.dep.domain.VersionException;
 import org.savantbuild.domain.Project;
 import org.savantbuild.domain.Target;
+import org.savantbuild.event.PluginResolved;
 import org.savantbuild.output.Output;
 import org.savantbuild.parser.ParseException;
 import org.savantbuild.plugin.DefaultPluginLoader;
 import org.savantbuild.plugin.Plugin;
-import org.savantbuild.plugin.PluginLoader;
+import org.savantbuild.plugin.PluginLoadException;
+import org.savantbuild.plugin.ResolvedPlugin;
+import org.savantbuild.plugin.groovy.LazyPlugin;
 import org.savantbuild.runtime.BuildFailureException;
+import org.savantbuild.runtime.BuildProfiler;
 import org.savantbuild.runtime.RuntimeConfiguration;
 import org.savantbuild.runtime.Switches;
 import org.savantbuild.util.MapBuilder;
@@ -49,12 +65,24 @@ import static java.util.Arrays.asList;
  * @author Brian Pontarelli
  */
 public abstract class ProjectBuildFile extends Script {
-  public final Map<String, String> ENV = System.getenv();
+  private static final AtomicInteger pluginLoaderCount = new AtomicInteger();
+
+  private static final ExecutorService pluginLoaders = Executors.newCachedThreadPool((runnable) -> {
+    Thread thread = new Thread(runnable, "Savant plugin loader " + pluginLoaderCount.incrementAndGet());
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  public Map<String, String> ENV = System.getenv();
 
   public final Properties SYS = System.getProperties();
 
   public final GlobalConfiguration global = new GlobalConfiguration();
 
+  private final List<LazyPlugin> loadingPlugins = new ArrayList<>();
+
+  private final List<Future<ResolvedPlugin>> resolvingPlugins = new ArrayList<>();
+
   public Output output;
 
   public Project project;
@@ -82,6 +110,27 @@ public abstract class ProjectBuildFile extends Script {
     throw new BuildFailureException();
   }
 
+  /**
+   * Waits for all of the plugins that the build file loaded and adds them to the project. This is called after the
+   * build file has been run so that a plugin that failed to load fails the build even if the build file never used it.
+   * The failure contains the line of the build file that loaded the plugin.
+   * <p>
+   * When only the targets are needed, the plugins that the build file didn't use were never loaded and are skipped
+   * (unless the lock file is being written, which needs all of them).
+   *
+   * @throws PluginLoadException If a plugin failed to load (or any other RuntimeException thrown while loading the
+   *                             plugin).
+   */
+  public void awaitPlugins() {
+    for (LazyPlugin plugin : loadingPlugins) {
+      if (targetsOnly() && !runtimeConfiguration.writeLock && !plugin.isDone()) {
+        continue;
+      }
+
+      project.plugins.put(plugin.pluginDependency, plugin.get());
+    }
+  }
+
   /**
    * Loads a plugin and returns a new instance of the Plugin class. This method is called with the information used to
    * load the plugin like this:
@@ -89,6 +138,14 @@ public abstract class ProjectBuildFile extends Script {
    * <pre>
    *   java = loadPlugin(id: "org.savantbuild.plugin:java:0.1.0")
    * </pre>
+   * <p>
+   * The plugin is resolved in the background so that all of the plugins of the build file are resolved at the same
+   * time. The returned {@link LazyPlugin} instantiates the plugin the first time it is used and {@link #awaitPlugins()}
+   * instantiates the rest once the build file has been run. Before the first plugin is instantiated, the class loaders
+   * of all of the plugins are created in a fixed order so that the plugins that share the shared class loader don't
+   * depend on the order that the plugins finished resolving in. When only the targets are needed
+   * ({@code --help}, {@code --listTargets} and {@code --dry-run}), the plugin isn't loaded unless the build file uses
+   * it.
    *
    * @param attributes The Attributes used to load the plugin.
    * @return The Plugin instance.
@@ -100,10 +157,36 @@ public abstract class ProjectBuildFile extends Script {
     }
 
     String id = GroovyTools.toString(attributes, "id");
-    PluginLoader loader = new DefaultPluginLoader(project, runtimeConfiguration, output);
     Artifact pluginDependency = new Artifact(id, false);
-    Plugin plugin = loader.load(pluginDependency);
-    project.plugins.put(pluginDependency, plugin);
+
+    DefaultPluginLoader loader = new DefaultPluginLoader(project, runtimeConfiguration, output);
+    Callable<ResolvedPlugin> resolve = () -> {
+      try (BuildProfiler.Span span = project.profile("loadPlugin", id)) {
+        long start = System.currentTimeMillis();
+        ResolvedPlugin resolvedPlugin = loader.resolve(pluginDependency);
+        project.events.publish(new PluginResolved(pluginDependency, System.currentTimeMillis() - start));
+        return resolvedPlugin;
+      }
+    };
+
+    Future<ResolvedPlugin> resolution = targetsOnly() ? new FutureTask<>(resolve) : pluginLoaders.submit(resolve);
+    resolvingPlugins.add(resolution);
+
+    // The failure might come from a loader thread, so the stack of the build file is added to it for the line number
+    StackTraceElement[] callSite = new Throwable().getStackTrace();
+    FutureTask<Plugin> load = new FutureTask<>(() -> {
+      try {
+        ResolvedPlugin resolvedPlugin = resolved(resolution);
+        loader.prepareClassLoaders(targetsOnly() ? Collections.singletonList(resolvedPlugin) : resolvedPlugins());
+        return loader.instantiate(pluginDependency, resolvedPlugin);
+      } catch (RuntimeException | Error e) {
+        e.setStackTrace(Stream.concat(Arrays.stream(e.getStackTrace()), Arrays.stream(callSite)).toArray(StackTraceElement[]::new));
+        throw e;
+      }
+    });
+
+    LazyPlugin plugin = new LazyPlugin(pluginDependency, load);
+    loadingPlugins.add(plugin);
     return plugin;
   }
 
@@ -199,6 +282,19 @@ public abstract class ProjectBuildFile extends Script {
    * <pre>
    *   name: The name of the target
    * </pre>
+   * <p>
+   * The optional attributes are:
+   * <p>
+   * <pre>
+   *   description: The description of the target
+   *   dependsOn: The targets that must be run before this target. In a workspace, the targets of other projects are
+   *              named using the directory of the project, for example {@code core:jar}
+   *   inputs: The files and directories the target reads (relative to the project directory)
+   *   outputs: The files and directories the target produces (relative to the project directory)
+   * </pre>
+   * <p>
+   * If a target declares its outputs, it is skipped as UP-TO-DATE when its inputs and outputs haven't changed since the
+   * last successful run.
    *
    * @param attributes The attributes of the target.
    * @param closure    The closure that contains the executable pieces of the target.
@@ -217,7 +313,61 @@ public abstract class ProjectBuildFile extends Script {
     target.invocation = closure;
     target.dependencies = GroovyTools.toListOfStrings(attributes.get("dependsOn"));
 
+    List<Path> inputs = GroovyTools.toListOfPaths(attributes.get("inputs"), project.directory);
+    if (inputs != null) {
+      target.inputs = inputs;
+    }
+
+    List<Path> outputs = GroovyTools.toListOfPaths(attributes.get("outputs"), project.directory);
+    if (outputs != null) {
+      target.outputs = outputs;
+    }
+
     project.targets.put(target.name, target);
     return target;
   }
+
+  private static ResolvedPlugin resolved(Future<ResolvedPlugin> resolution) {
+    if (resolution instanceof RunnableFuture && !resolution.isDone()) {
+      // This does nothing if a loader thread is already resolving the plugin
+      ((RunnableFuture<ResolvedPlugin>) resolution).run();
+    }
+
+    try {
+      return resolution.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new PluginLoadException("Interrupted while resolving a plugin", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+
+      throw new PluginLoadException("Unable to resolve a plugin", cause);
+    }
+  }
+
+  /**
+   * Waits for all of the plugins that have been resolved so far. The plugins that failed are skipped because their
+   * failures are thrown when they are used (or by {@link #awaitPlugins()}).
+   */
+  private List<ResolvedPlugin> resolvedPlugins() {
+    List<ResolvedPlugin> resolvedPlugins = new ArrayList<>();
+    for (Future<ResolvedPlugin> resolution : resolvingPlugins) {
+      try {
+        resolvedPlugins.add(resolved(resolution));
+      } catch (RuntimeException e) {
+        // Skip it
+      }
+    }
+
+    return resolvedPlugins;
+  }
+
+  private boolean targetsOnly() {
+    return runtimeConfiguration.help || runtimeConfiguration.listTargets || runtimeConfiguration.dryRun;
+  }
 }
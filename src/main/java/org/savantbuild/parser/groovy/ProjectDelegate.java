@@ -15,6 +15,7 @@
  */
 package org.savantbuild.parser.groovy;
 
+import org.savantbuild.cache.BuildCache;
 import org.savantbuild.dep.domain.Dependencies;
 import org.savantbuild.dep.workflow.FetchWorkflow;
 import org.savantbuild.dep.workflow.PublishWorkflow;
@@ -43,6 +44,32 @@ public class ProjectDelegate {
     this.project = project;
   }
 
+  /**
+   * Configures the build cache of the project. This method is called with a closure that contains the build cache
+   * definition. It should look like:
+   * <p>
+   * <pre>
+   *   buildCache {
+   *     local(dir: "/var/savant/build-cache")
+   *     remote(url: "http://cache.example.com/savant", username: "ci", password: "secret", push: true)
+   *   }
+   * </pre>
+   * <p>
+   * The build cache isn't used unless the project configures it. An empty closure uses the local cache in
+   * {@code ~/.savant/build-cache}. The build cache can be turned off by calling {@code disabled()} in the closure.
+   *
+   * @param closure The closure that is called to setup the build cache configuration. This closure uses the delegate
+   *                class {@link BuildCacheDelegate}.
+   * @return The BuildCache or null if it was disabled.
+   */
+  public BuildCache buildCache(Closure closure) {
+    BuildCacheDelegate delegate = new BuildCacheDelegate(output, project.directory);
+    closure.setDelegate(delegate);
+    closure.run();
+    project.buildCache = delegate.toBuildCache();
+    return project.buildCache;
+  }
+
   /**
    * Configures the project dependencies. This method is called with a closure that contains the dependencies
    * definition. It should look like:
@@ -125,6 +152,7 @@ public class ProjectDelegate {
    * <pre>
    *   workflow {
    *     fetch {
+   *       parallel(threads: 8)
    *       cache()
    *       url(url: "http://repository.savantbuild.org")
    *     }
@@ -140,7 +168,7 @@ public class ProjectDelegate {
    */
   public Workflow workflow(Closure closure) {
     project.workflow = new Workflow(new FetchWorkflow(output), new PublishWorkflow());
-    closure.setDelegate(new WorkflowDelegate(output, project.workflow));
+    closure.setDelegate(new WorkflowDelegate(output, project, project.workflow));
     closure.run();
     return project.workflow;
   }
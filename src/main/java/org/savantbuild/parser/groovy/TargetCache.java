@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2001-2010, Inversoft, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.parser.groovy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.savantbuild.cache.Hashes;
+import org.savantbuild.domain.Target;
+import org.savantbuild.output.Output;
+
+import static java.util.Arrays.asList;
+
+/**
+ * Caches the targets of build files on disk so that {@code --help}, {@code --listTargets} and {@code --dry-run} don't
+ * need to run the build file. The cache key is a hash of the location and contents of the build file, which means that
+ * any change to the build file causes the build file to be run again.
+ * <p>
+ * Each cache entry is a properties file that contains the name, description, dependencies, inputs and outputs of each
+ * target. The inputs are needed to find the affected targets for {@code --dry-run --affected-by}. The targets that are
+ * loaded from the cache can't be run because they don't have an invocation.
+ * <p>
+ * The cache holds at most {@link #MAX_ENTRIES} build files. Loading an entry marks it as used and storing an entry
+ * removes the entries that were used least recently.
+ *
+ * @author Brian Pontarelli
+ */
+public class TargetCache {
+  public static final Path DEFAULT_DIRECTORY = Paths.get(System.getProperty("user.home"), ".savant/cache/targets");
+
+  public static final int MAX_ENTRIES = 256;
+
+  private final Path directory;
+
+  private final Output output;
+
+  public TargetCache(Output output, Path directory) {
+    this.output = output;
+    this.directory = directory;
+  }
+
+  /**
+   * Loads the targets of the given build file from the cache.
+   *
+   * @param buildFile The build file.
+   * @return The targets sorted by name or null if the build file isn't in the cache.
+   * @throws IOException If the build file or the cache entry could not be read.
+   */
+  public Map<String, Target> load(Path buildFile) throws IOException {
+    Path entry = directory.resolve(key(buildFile) + ".properties");
+    if (!Files.isRegularFile(entry)) {
+      return null;
+    }
+
+    Properties properties = new Properties();
+    try (InputStream is = Files.newInputStream(entry)) {
+      properties.load(is);
+    }
+
+    // Mark the entry as used so that it isn't pruned
+    try {
+      Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+    } catch (IOException e) {
+      output.debug("Unable to update the last modified time of the target cache entry [%s]", entry);
+    }
+
+    Map<String, Target> targets = new LinkedHashMap<>();
+    for (int i = 0; properties.containsKey("target." + i + ".name"); i++) {
+      Target target = new Target();
+      target.name = properties.getProperty("target." + i + ".name");
+      target.description = properties.getProperty("target." + i + ".description");
+      String dependsOn = properties.getProperty("target." + i + ".dependsOn");
+      if (dependsOn != null) {
+        target.dependencies = dependsOn.isEmpty() ? new ArrayList<>() : new ArrayList<>(asList(dependsOn.split(",")));
+      }
+
+      target.inputs = loadPaths(properties, "target." + i + ".input.");
+      target.outputs = loadPaths(properties, "target." + i + ".output.");
+
+      targets.put(target.name, target);
+    }
+
+    output.debug("Loaded the targets of the build file from the cache [%s]", entry);
+    return targets;
+  }
+
+  /**
+   * Stores the targets of the given build file in the cache unless they are already cached.
+   *
+   * @param buildFile The build file.
+   * @param targets   The targets that the build file defines.
+   * @throws IOException If the build file could not be read or the cache could not be written.
+   */
+  public void store(Path buildFile, Collection<Target> targets) throws IOException {
+    Path entry = directory.resolve(key(buildFile) + ".properties");
+    if (Files.isRegularFile(entry)) {
+      return;
+    }
+
+    List<Target> sorted = new ArrayList<>(targets);
+    sorted.sort(Comparator.comparing((target) -> target.name));
+
+    Properties properties = new Properties();
+    for (int i = 0; i < sorted.size(); i++) {
+      Target target = sorted.get(i);
+      properties.setProperty("target." + i + ".name", target.name);
+      if (target.description != null) {
+        properties.setProperty("target." + i + ".description", target.description);
+      }
+
+      if (target.dependencies != null) {
+        properties.setProperty("target." + i + ".dependsOn", String.join(",", target.dependencies));
+      }
+
+      storePaths(properties, "target." + i + ".input.", target.inputs);
+      storePaths(properties, "target." + i + ".output.", target.outputs);
+    }
+
+    // Write to a temporary file and then move it so that concurrent builds never see a partial entry
+    Files.createDirectories(directory);
+    Path temp = Files.createTempFile(directory, "targets", ".properties");
+    try (OutputStream os = Files.newOutputStream(temp)) {
+      properties.store(os, "Savant targets of " + buildFile.toAbsolutePath());
+    }
+
+    Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    prune();
+  }
+
+  private String key(Path buildFile) throws IOException {
+    byte[] script = Files.readAllBytes(buildFile);
+    // The inputs and outputs are absolute, so the same build file in another directory has different targets
+    byte[] name = (buildFile.toAbsolutePath() + "\n").getBytes(StandardCharsets.UTF_8);
+    byte[] bytes = new byte[name.length + script.length];
+    System.arraycopy(name, 0, bytes, 0, name.length);
+    System.arraycopy(script, 0, bytes, name.length, script.length);
+    return Hashes.sha256(bytes);
+  }
+
+  private List<Path> loadPaths(Properties properties, String prefix) {
+    List<Path> paths = new ArrayList<>();
+    for (int i = 0; properties.containsKey(prefix + i); i++) {
+      paths.add(Paths.get(properties.getProperty(prefix + i)));
+    }
+
+    return paths;
+  }
+
+  /**
+   * Removes the entries that were used least recently once the cache has more than {@link #MAX_ENTRIES} entries.
+   * Failures are ignored because another build might be pruning at the same time.
+   */
+  private void prune() throws IOException {
+    List<Path> entries;
+    try (Stream<Path> stream = Files.list(directory)) {
+      entries = stream.filter((path) -> path.getFileName().toString().endsWith(".properties")).collect(Collectors.toList());
+    }
+
+    if (entries.size() <= MAX_ENTRIES) {
+      return;
+    }
+
+    Map<Path, Long> lastUsed = new HashMap<>();
+    for (Path entry : entries) {
+      try {
+        lastUsed.put(entry, Files.getLastModifiedTime(entry).toMillis());
+      } catch (IOException e) {
+        lastUsed.put(entry, 0L);
+      }
+    }
+
+    entries.sort(Comparator.comparing(lastUsed::get));
+    for (Path entry : entries.subList(0, entries.size() - MAX_ENTRIES)) {
+      try {
+        Files.deleteIfExists(entry);
+      } catch (IOException e) {
+        output.debug("Unable to remove the target cache entry [%s]", entry);
+      }
+    }
+  }
+
+  private void storePaths(Properties properties, String prefix, List<Path> paths) {
+    for (int i = 0; i < paths.size(); i++) {
+      properties.setProperty(prefix + i, paths.get(i).toAbsolutePath().toString());
+    }
+  }
+}
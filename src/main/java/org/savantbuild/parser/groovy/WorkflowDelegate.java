@@ -15,6 +15,7 @@
  */
 package org.savantbuild.parser.groovy;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -25,8 +26,10 @@ import org.savantbuild.dep.workflow.process.CacheProcess;
 import org.savantbuild.dep.workflow.process.Process;
 import org.savantbuild.dep.workflow.process.SVNProcess;
 import org.savantbuild.dep.workflow.process.URLProcess;
+import org.savantbuild.domain.Project;
 import org.savantbuild.output.Output;
 import org.savantbuild.parser.ParseException;
+import org.savantbuild.workflow.ParallelFetcher;
 
 import groovy.lang.Closure;
 
@@ -39,21 +42,29 @@ import groovy.lang.Closure;
 public class WorkflowDelegate {
   public final Output output;
 
+  public final Project project;
+
   public final Workflow workflow;
 
-  public WorkflowDelegate(Output output, Workflow workflow) {
+  public WorkflowDelegate(Output output, Project project, Workflow workflow) {
     this.output = output;
+    this.project = project;
     this.workflow = workflow;
   }
 
   /**
    * Configures the fetch workflow processes.
    *
-   * @param closure The closure. This closure uses the delegate class {@link ProcessDelegate}.
+   * @param closure The closure. This closure uses the delegate class {@link FetchDelegate}.
    */
   public void fetch(Closure closure) {
-    closure.setDelegate(new ProcessDelegate(output, workflow.fetchWorkflow.processes));
+    FetchDelegate delegate = new FetchDelegate(output, project, workflow.fetchWorkflow.processes);
+    closure.setDelegate(delegate);
     closure.run();
+
+    if (project.parallelFetcher != null) {
+      project.parallelFetcher.credentials.putAll(delegate.credentials);
+    }
   }
 
   /**
@@ -85,6 +96,65 @@ public class WorkflowDelegate {
     workflow.publishWorkflow.processes.add(new CacheProcess(output, null));
   }
 
+  /**
+   * Process delegate class for the {@link FetchWorkflow}. In addition to the processes, this can enable the
+   * {@link ParallelFetcher}.
+   *
+   * @author Brian Pontarelli
+   */
+  public static class FetchDelegate extends ProcessDelegate {
+    public final Map<String, ParallelFetcher.Credentials> credentials = new HashMap<>();
+
+    public final Project project;
+
+    public FetchDelegate(Output output, Project project, List<Process> processes) {
+      super(output, processes);
+      this.project = project;
+    }
+
+    /**
+     * Enables the {@link ParallelFetcher}, which downloads the artifacts of the dependency graphs using the given
+     * number of threads (8 by default) before the fetch workflow runs:
+     * <p>
+     * <pre>
+     *   parallel(threads: 8)
+     * </pre>
+     *
+     * @param attributes The attributes.
+     */
+    public void parallel(Map<String, Object> attributes) {
+      Object threads = attributes != null ? attributes.get("threads") : null;
+      if (threads != null && (!(threads instanceof Integer) || (Integer) threads < 1)) {
+        throw new ParseException("Invalid parallel workflow definition. It should look like:\n\n" +
+            "  parallel(threads: 8)");
+      }
+
+      project.parallelFetcher = new ParallelFetcher(output, threads != null ? (Integer) threads : 8);
+    }
+
+    /**
+     * Enables the {@link ParallelFetcher} using the default number of threads.
+     */
+    public void parallel() {
+      parallel(null);
+    }
+
+    /**
+     * Adds a {@link URLProcess} and records its credentials for the {@link ParallelFetcher}.
+     *
+     * @param attributes The URL attributes.
+     */
+    @Override
+    public void url(Map<String, Object> attributes) {
+      super.url(attributes);
+
+      String username = GroovyTools.toString(attributes, "username");
+      if (username != null) {
+        credentials.put(GroovyTools.toString(attributes, "url"), new ParallelFetcher.Credentials(username, GroovyTools.toString(attributes, "password")));
+      }
+    }
+  }
+
   /**
    * Process delegate class that is used to configure {@link Process} instances for the {@link FetchWorkflow} and {@link
    * PublishWorkflow} of the {@link Workflow}.
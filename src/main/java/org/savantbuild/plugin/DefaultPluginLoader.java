@@ -19,6 +19,7 @@ import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.net.URLClassLoader;
 import java.nio.file.Path;
+import java.util.Collection;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 
@@ -29,18 +30,20 @@ import org.savantbuild.dep.domain.Dependencies;
 import org.savantbuild.dep.domain.DependencyGroup;
 import org.savantbuild.dep.domain.License;
 import org.savantbuild.dep.domain.ReifiedArtifact;
+import org.savantbuild.dep.domain.ResolvedArtifact;
 import org.savantbuild.dep.graph.ArtifactGraph;
 import org.savantbuild.dep.graph.DependencyGraph;
 import org.savantbuild.dep.graph.ResolvedArtifactGraph;
 import org.savantbuild.domain.Project;
-import org.savantbuild.lang.Classpath;
 import org.savantbuild.output.Output;
 import org.savantbuild.runtime.BuildFailureException;
+import org.savantbuild.runtime.BuildProfiler;
 import org.savantbuild.runtime.RuntimeConfiguration;
 import org.savantbuild.util.MapBuilder;
 
 /**
- * Default plugin loader that uses the Savant dependency service and a URLClassLoader to load the plugin.
+ * Default plugin loader that uses the Savant dependency service and a URLClassLoader to load the plugin. The result of
+ * resolving each plugin is stored in a {@link PluginCache} so that later builds can skip the resolution.
  *
  * @author Brian Pontarelli
  */
@@ -49,24 +52,118 @@ public class DefaultPluginLoader implements PluginLoader {
       .with("compile", new GroupTraversalRule(true, "compile", "runtime"))
       .with("runtime", new GroupTraversalRule(true, "compile", "runtime"));
 
+  // The plugin class loaders are shared by every build this JVM runs (the daemon runs many)
+  private static final PluginClassLoaders classLoaders = new PluginClassLoaders(ClassLoader.getSystemClassLoader());
+
   private final Output output;
 
+  private final PluginCache pluginCache;
+
   private final Project project;
 
   private final RuntimeConfiguration runtimeConfiguration;
 
   public DefaultPluginLoader(Project project, RuntimeConfiguration runtimeConfiguration, Output output) {
+    this(project, runtimeConfiguration, output, new PluginCache(output, PluginCache.DEFAULT_DIRECTORY));
+  }
+
+  /**
+   * Constructs the plugin loader with a specific plugin cache.
+   *
+   * @param project              The project.
+   * @param runtimeConfiguration The runtime configuration.
+   * @param output               The output.
+   * @param pluginCache          (Optional) The cache used to store plugin resolutions. If this is null, plugins are
+   *                             always resolved using the dependency service.
+   */
+  public DefaultPluginLoader(Project project, RuntimeConfiguration runtimeConfiguration, Output output, PluginCache pluginCache) {
     this.output = output;
+    this.pluginCache = pluginCache;
     this.project = project;
     this.runtimeConfiguration = runtimeConfiguration;
   }
 
+  /**
+   * Closes the plugin class loaders that are shared by every build this JVM runs, so that the next build loads the plugins
+   * from their JAR files again. This is used by the benchmarks to measure the loading of a new JVM.
+   *
+   * @param output The output.
+   */
+  public static void clearClassLoaders(Output output) {
+    classLoaders.clear(output);
+  }
+
+  /**
+   * Instantiates the plugin class of the given resolved plugin.
+   *
+   * @param pluginDependency The dependency definition of the plugin.
+   * @param resolvedPlugin   The resolved plugin.
+   * @return The Plugin instance.
+   * @throws PluginLoadException If the plugin class could not be loaded or instantiated.
+   */
+  public Plugin instantiate(Artifact pluginDependency, ResolvedPlugin resolvedPlugin) {
+    output.debug("Loading plugin [%s]", pluginDependency);
+
+    String pluginClassName = resolvedPlugin.pluginClassName;
+    try {
+      output.debug("Classpath for plugin [%s] is [%s]", pluginDependency, resolvedPlugin);
+
+      URLClassLoader pluginClassLoader = classLoaders.classLoader(resolvedPlugin, output);
+      Class<?> pluginClass = pluginClassLoader.loadClass(pluginClassName);
+      return (Plugin) pluginClass.getConstructor(Project.class, RuntimeConfiguration.class, Output.class).newInstance(project, runtimeConfiguration, output);
+    } catch (IOException e) {
+      throw new PluginLoadException("Unable to load plugin [" + pluginDependency + "] because the plugin JAR could not be read", e);
+    } catch (ClassNotFoundException e) {
+      throw new PluginLoadException("Unable to load plugin [" + pluginDependency + "] because the plugin class [" + pluginClassName + "] was not in the plugin JAR", e);
+    } catch (ClassCastException e) {
+      throw new PluginLoadException("Unable to load plugin [" + pluginDependency + "] because the plugin class [" + pluginClassName + "] does not extend org.savantbuild.plugin.groovy.Plugin", e);
+    } catch (NoSuchMethodException | InstantiationException e) {
+      throw new PluginLoadException("Unable to load plugin [" + pluginDependency + "] because the plugin class [" + pluginClassName + "] could not be instantiated. " +
+          "It must have a public constructor like this:\n\npublic MyPlugin(Project project, RuntimeConfiguration runtimeConfiguration, Output output) {\n  ...\n}\n", e);
+    } catch (IllegalAccessException e) {
+      throw new PluginLoadException("Unable to load plugin [" + pluginDependency + "] because the plugin class [" + pluginClassName + "] could not be instantiated", e);
+    } catch (InvocationTargetException e) {
+      if (e.getTargetException() instanceof RuntimeException) {
+        throw (RuntimeException) e.getTargetException();
+      }
+
+      throw new PluginLoadException("Unable to load plugin [" + pluginDependency + "] because the plugin class [" + pluginClassName + "] could not be instantiated", e);
+    }
+  }
+
   /**
    * {@inheritDoc}
    */
   @Override
   public Plugin load(Artifact pluginDependency) {
-    output.debug("Loading plugin [%s]", pluginDependency);
+    return instantiate(pluginDependency, resolve(pluginDependency));
+  }
+
+  /**
+   * Creates the class loaders of all of the given plugins. The build file parser calls this once the plugins of the
+   * build file have been resolved so that the plugins that share the shared class loader don't depend on the order that
+   * the plugins were resolved in. See {@link PluginClassLoaders#classLoaders(Collection, Output)}.
+   *
+   * @param resolvedPlugins The resolved plugins.
+   * @throws PluginLoadException If the class loaders could not be created.
+   */
+  public void prepareClassLoaders(Collection<ResolvedPlugin> resolvedPlugins) {
+    try {
+      classLoaders.classLoaders(resolvedPlugins, output);
+    } catch (IOException e) {
+      throw new PluginLoadException("Unable to create the class loaders of the plugins", e);
+    }
+  }
+
+  /**
+   * Resolves the given plugin using the lock file, the plugin cache or the dependency service, in that order.
+   *
+   * @param pluginDependency The dependency definition of the plugin.
+   * @return The resolved plugin.
+   * @throws PluginLoadException If the plugin could not be resolved.
+   */
+  public ResolvedPlugin resolve(Artifact pluginDependency) {
+    output.debug("Resolving plugin [%s]", pluginDependency);
 
     if (project.workflow == null || project.workflow.fetchWorkflow == null || project.workflow.fetchWorkflow.processes.size() == 0 ||
         project.workflow.publishWorkflow == null || project.workflow.publishWorkflow.processes.size() == 0) {
@@ -79,18 +176,54 @@ public class DefaultPluginLoader implements PluginLoader {
       throw new BuildFailureException();
     }
 
+    // Writing the lock file always resolves the plugins
+    ResolvedPlugin resolvedPlugin = null;
+    if (project.lockFile != null && !runtimeConfiguration.writeLock) {
+      resolvedPlugin = project.lockFile.plugin(pluginDependency, project.dependencies);
+      if (resolvedPlugin != null) {
+        output.debug("Using the locked resolution for plugin [%s]", pluginDependency);
+        return resolvedPlugin;
+      }
+    }
+
+    resolvedPlugin = pluginCache != null && !runtimeConfiguration.writeLock ? pluginCache.get(pluginDependency, project.workflow) : null;
+    if (resolvedPlugin == null) {
+      resolvedPlugin = resolveDependencies(pluginDependency);
+      if (pluginCache != null) {
+        pluginCache.put(pluginDependency, project.workflow, resolvedPlugin);
+      }
+    } else {
+      output.debug("Using the cached resolution for plugin [%s]", pluginDependency);
+    }
+
+    if (project.lockFile != null && runtimeConfiguration.writeLock) {
+      project.lockFile.plugins.put(pluginDependency.toString(), resolvedPlugin);
+    }
+
+    return resolvedPlugin;
+  }
+
+  private ResolvedPlugin resolveDependencies(Artifact pluginDependency) {
     // This doesn't use the project as the root because the project might be in the graph and that would cause failures.
     // This is how Savant is self building
     ReifiedArtifact root = new ReifiedArtifact("__savantLoadPluginGroup__:__savantLoadPluginName__:0.0", MapBuilder.simpleMap(License.ApacheV2_0, null));
     Dependencies dependencies = new Dependencies(new DependencyGroup("runtime", false, pluginDependency));
-    DependencyGraph dependencyGraph = project.dependencyService.buildGraph(root, dependencies, project.workflow);
-    ArtifactGraph artifactGraph = project.dependencyService.reduce(dependencyGraph);
-    ResolvedArtifactGraph resolvedArtifactGraph = project.dependencyService.resolve(artifactGraph, project.workflow, RESOLVE_CONFIGURATION);
+    ResolvedArtifactGraph resolvedArtifactGraph;
+    try (BuildProfiler.Span span = project.profile("dependencies", pluginDependency.toString())) {
+      // The plugins are resolved at the same time, so their fetches overlap. Two plugins that fetch the same artifact
+      // both publish the same bytes (the MD5 is verified), which is the same as the DependencyResolver of the project
+      DependencyGraph dependencyGraph = project.dependencyService.buildGraph(root, dependencies, project.workflow);
+      ArtifactGraph artifactGraph = project.dependencyService.reduce(dependencyGraph);
+      if (project.parallelFetcher != null) {
+        project.parallelFetcher.fetch(artifactGraph.values(), project.workflow);
+      }
+
+      resolvedArtifactGraph = project.dependencyService.resolve(artifactGraph, project.workflow, RESOLVE_CONFIGURATION);
+    }
 
     Path pluginJarFilePath = resolvedArtifactGraph.getPath(pluginDependency.id);
-    String pluginClassName = null;
-    try {
-      JarFile pluginJarFile = new JarFile(pluginJarFilePath.toFile());
+    String pluginClassName;
+    try (JarFile pluginJarFile = new JarFile(pluginJarFilePath.toFile())) {
       Manifest manifest = pluginJarFile.getManifest();
       if (manifest == null) {
         throw new PluginLoadException("Invalid plugin [" + pluginDependency + "]. The JAR file does not contain a valid Manifest entry for Savant-Plugin-Class");
@@ -100,30 +233,26 @@ public class DefaultPluginLoader implements PluginLoader {
       if (pluginClassName == null) {
         throw new PluginLoadException("Invalid plugin [" + pluginDependency + "]. The JAR file does not contain a valid Manifest entry for Savant-Plugin-Class");
       }
-
-      Classpath classpath = resolvedArtifactGraph.toClasspath();
-      output.debug("Classpath for plugin [%s] is [%s]", pluginDependency, classpath);
-
-      URLClassLoader pluginClassLoader = classpath.toURLClassLoader();
-      Class<?> pluginClass = pluginClassLoader.loadClass(pluginClassName);
-      return (Plugin) pluginClass.getConstructor(Project.class, RuntimeConfiguration.class, Output.class).newInstance(project, runtimeConfiguration, output);
     } catch (IOException e) {
       throw new PluginLoadException("Unable to load plugin [" + pluginDependency + "] because the plugin JAR could not be read", e);
-    } catch (ClassNotFoundException e) {
-      throw new PluginLoadException("Unable to load plugin [" + pluginDependency + "] because the plugin class [" + pluginClassName + "] was not in the plugin JAR", e);
-    } catch (ClassCastException e) {
-      throw new PluginLoadException("Unable to load plugin [" + pluginDependency + "] because the plugin class [" + pluginClassName + "] does not extend org.savantbuild.plugin.groovy.Plugin", e);
-    } catch (NoSuchMethodException | InstantiationException e) {
-      throw new PluginLoadException("Unable to load plugin [" + pluginDependency + "] because the plugin class [" + pluginClassName + "] could not be instantiated. " +
-          "It must have a public constructor like this:\n\npublic MyPlugin(Project project, RuntimeConfiguration runtimeConfiguration, Output output) {\n  ...\n}\n", e);
-    } catch (IllegalAccessException e) {
-      throw new PluginLoadException("Unable to load plugin [" + pluginDependency + "] because the plugin class [" + pluginClassName + "] could not be instantiated", e);
-    } catch (InvocationTargetException e) {
-      if (e.getTargetException() instanceof RuntimeException) {
-        throw (RuntimeException) e.getTargetException();
+    }
+
+    // The plugin JAR is always first so that its classes win
+    ResolvedPlugin resolvedPlugin = new ResolvedPlugin(pluginClassName);
+    for (ResolvedArtifact artifact : resolvedArtifactGraph.values()) {
+      if (artifact.file == null) {
+        continue;
       }
 
-      throw new PluginLoadException("Unable to load plugin [" + pluginDependency + "] because the plugin class [" + pluginClassName + "] could not be instantiated", e);
+      ResolvedPlugin.ClasspathEntry entry = new ResolvedPlugin.ClasspathEntry(artifact.id.group + ":" + artifact.id.project + ":" +
+          artifact.id.name + ":" + artifact.id.type, artifact.version.toString(), artifact.file);
+      if (artifact.file.equals(pluginJarFilePath)) {
+        resolvedPlugin.classpath.add(0, entry);
+      } else {
+        resolvedPlugin.classpath.add(entry);
+      }
     }
+
+    return resolvedPlugin;
   }
 }
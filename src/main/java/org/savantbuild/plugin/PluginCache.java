@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.plugin;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Properties;
+
+import org.savantbuild.cache.Hashes;
+import org.savantbuild.dep.domain.Artifact;
+import org.savantbuild.dep.workflow.Workflow;
+import org.savantbuild.dep.workflow.process.CacheProcess;
+import org.savantbuild.dep.workflow.process.Process;
+import org.savantbuild.dep.workflow.process.SVNProcess;
+import org.savantbuild.dep.workflow.process.URLProcess;
+import org.savantbuild.output.Output;
+
+/**
+ * Persistent cache of plugin resolutions. This stores the plugin class name and the resolved classpath for each plugin
+ * and workflow so that the dependency graph of a plugin doesn't need to be built, reduced and resolved on every build.
+ * <p>
+ * Each entry records the size and last modified time of every file in the classpath. If any of the files have changed
+ * or been deleted, the entry is ignored and the plugin is resolved again.
+ *
+ * @author Brian Pontarelli
+ */
+public class PluginCache {
+  public static final Path DEFAULT_DIRECTORY = Paths.get(System.getProperty("user.home"), ".savant/cache/plugins");
+
+  private final Path directory;
+
+  private final Output output;
+
+  public PluginCache(Output output, Path directory) {
+    this.output = output;
+    this.directory = directory;
+  }
+
+  /**
+   * Looks up the resolution of the given plugin.
+   *
+   * @param pluginDependency The plugin.
+   * @param workflow         The workflow used to resolve the plugin.
+   * @return The ResolvedPlugin or null if the plugin isn't in the cache or the cache entry is stale.
+   */
+  public ResolvedPlugin get(Artifact pluginDependency, Workflow workflow) {
+    Path file = directory.resolve(key(pluginDependency, workflow) + ".properties");
+    if (!Files.isRegularFile(file)) {
+      return null;
+    }
+
+    Properties properties = new Properties();
+    try (InputStream is = Files.newInputStream(file)) {
+      properties.load(is);
+
+      ResolvedPlugin resolvedPlugin = new ResolvedPlugin(properties.getProperty("class"));
+      for (int i = 0; properties.containsKey("classpath." + i + ".file"); i++) {
+        Path path = Paths.get(properties.getProperty("classpath." + i + ".file"));
+        if (!Files.isRegularFile(path) || Files.size(path) != Long.parseLong(properties.getProperty("classpath." + i + ".size")) ||
+            Files.getLastModifiedTime(path).toMillis() != Long.parseLong(properties.getProperty("classpath." + i + ".lastModified"))) {
+          output.debug("Plugin cache entry for [%s] is stale because [%s] changed", pluginDependency, path);
+          return null;
+        }
+
+        resolvedPlugin.classpath.add(new ResolvedPlugin.ClasspathEntry(properties.getProperty("classpath." + i + ".id"),
+            properties.getProperty("classpath." + i + ".version"), path));
+      }
+
+      if (resolvedPlugin.pluginClassName == null || resolvedPlugin.classpath.isEmpty()) {
+        return null;
+      }
+
+      return resolvedPlugin;
+    } catch (IOException | NumberFormatException e) {
+      output.debug("Unable to read the plugin cache entry [%s]", file);
+      output.debug(e);
+      return null;
+    }
+  }
+
+  /**
+   * Stores the resolution of the given plugin. Failures writing to the cache are not fatal since the plugin can always
+   * be resolved again.
+   *
+   * @param pluginDependency The plugin.
+   * @param workflow         The workflow used to resolve the plugin.
+   * @param resolvedPlugin   The resolved plugin.
+   */
+  public void put(Artifact pluginDependency, Workflow workflow, ResolvedPlugin resolvedPlugin) {
+    Path file = directory.resolve(key(pluginDependency, workflow) + ".properties");
+    try {
+      Properties properties = new Properties();
+      properties.setProperty("plugin", pluginDependency.toString());
+      properties.setProperty("class", resolvedPlugin.pluginClassName);
+      List<ResolvedPlugin.ClasspathEntry> classpath = resolvedPlugin.classpath;
+      for (int i = 0; i < classpath.size(); i++) {
+        ResolvedPlugin.ClasspathEntry entry = classpath.get(i);
+        properties.setProperty("classpath." + i + ".id", entry.id);
+        properties.setProperty("classpath." + i + ".version", entry.version);
+        properties.setProperty("classpath." + i + ".file", entry.file.toAbsolutePath().toString());
+        properties.setProperty("classpath." + i + ".size", Long.toString(Files.size(entry.file)));
+        properties.setProperty("classpath." + i + ".lastModified", Long.toString(Files.getLastModifiedTime(entry.file).toMillis()));
+      }
+
+      Files.createDirectories(directory);
+      Path temp = Files.createTempFile(directory, "plugin", ".properties");
+      try (OutputStream os = Files.newOutputStream(temp)) {
+        properties.store(os, "Savant plugin resolution cache");
+      }
+
+      Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      output.debug("Unable to write the plugin cache entry [%s]", file);
+      output.debug(e);
+    }
+  }
+
+  private String key(Artifact pluginDependency, Workflow workflow) {
+    StringBuilder build = new StringBuilder(pluginDependency.toString());
+    workflow.fetchWorkflow.processes.forEach((process) -> build.append("\nfetch:").append(describe(process)));
+    workflow.publishWorkflow.processes.forEach((process) -> build.append("\npublish:").append(describe(process)));
+    return Hashes.sha256(build.toString());
+  }
+
+  private String describe(Process process) {
+    if (process instanceof CacheProcess) {
+      return "cache(" + ((CacheProcess) process).dir + ")";
+    } else if (process instanceof URLProcess) {
+      return "url(" + ((URLProcess) process).url + ")";
+    } else if (process instanceof SVNProcess) {
+      return "subversion(" + ((SVNProcess) process).repository + ")";
+    }
+
+    return process.getClass().getName();
+  }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.plugin;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.savantbuild.output.Output;
+
+/**
+ * Manages the class loaders of the plugins. The dependencies of all of the plugins are loaded once into a single shared
+ * class loader and each plugin JAR is loaded into its own child of the shared class loader. This means that common
+ * libraries (savant-utils, savant-dependency-management, etc.) are only loaded once no matter how many plugins use
+ * them.
+ * <p>
+ * If a plugin needs a different version of a library than the version that is already in the shared class loader, the
+ * plugin can't use the shared class loader. In that case a warning is output and the plugin and all of its dependencies
+ * are loaded into a class loader of its own. Which plugin wins therefore depends on the order that the class loaders are
+ * created in, so the plugins of a build should all be passed to {@link #classLoaders(Collection, Output)} once they have
+ * been resolved.
+ * <p>
+ * The class loaders are kept for the life of this object so that a JVM that runs many builds (the daemon) only loads
+ * each plugin once. The size and last modified time of every file are recorded when it is added to a class loader. If a
+ * file changes (i.e. a plugin that was published again using the same version), the class loaders that use it are
+ * closed and created again. If a file of the shared class loader changes, all of the class loaders are created again,
+ * since they are all children of the shared class loader.
+ *
+ * @author Brian Pontarelli
+ */
+public class PluginClassLoaders {
+  private final ClassLoader parent;
+
+  private final Map<String, PluginClassLoader> pluginClassLoaders = new HashMap<>();
+
+  private final Map<String, ResolvedPlugin.ClasspathEntry> sharedEntries = new HashMap<>();
+
+  private final Map<Path, String> sharedStats = new HashMap<>();
+
+  private SharedClassLoader sharedClassLoader;
+
+  public PluginClassLoaders(ClassLoader parent) {
+    this.parent = parent;
+    this.sharedClassLoader = new SharedClassLoader(parent);
+  }
+
+  /**
+   * Returns the class loader for the given plugin, creating it if necessary.
+   *
+   * @param resolvedPlugin The resolved plugin.
+   * @param output         The output that conflicts are written to.
+   * @return The class loader.
+   * @throws MalformedURLException If any of the files can't be converted to a URL (this should never happen).
+   */
+  public synchronized URLClassLoader classLoader(ResolvedPlugin resolvedPlugin, Output output) throws MalformedURLException {
+    List<ResolvedPlugin.ClasspathEntry> dependencies = resolvedPlugin.classpath.subList(1, resolvedPlugin.classpath.size());
+    for (ResolvedPlugin.ClasspathEntry dependency : dependencies) {
+      String sharedStat = sharedStats.get(dependency.file);
+      if (sharedStat != null && !sharedStat.equals(stat(dependency.file))) {
+        output.debug("The plugin dependency [%s] changed. Creating the plugin class loaders again", dependency.file);
+        clear(output);
+        break;
+      }
+    }
+
+    String key = resolvedPlugin.toString();
+    String stats = stats(resolvedPlugin);
+    PluginClassLoader pluginClassLoader = pluginClassLoaders.get(key);
+    if (pluginClassLoader != null && pluginClassLoader.stats.equals(stats)) {
+      return pluginClassLoader.classLoader;
+    } else if (pluginClassLoader != null) {
+      output.debug("The plugin [%s] changed. Creating its class loader again", resolvedPlugin.pluginClassName);
+      close(pluginClassLoader.classLoader, output);
+    }
+
+    URLClassLoader classLoader;
+    List<String> conflicts = new ArrayList<>();
+    for (ResolvedPlugin.ClasspathEntry dependency : dependencies) {
+      ResolvedPlugin.ClasspathEntry shared = sharedEntries.get(dependency.id);
+      if (shared != null && (!shared.version.equals(dependency.version) || !shared.file.equals(dependency.file))) {
+        conflicts.add("[" + dependency.id + "] version [" + dependency.version + "] (version [" + shared.version + "] is already loaded)");
+      }
+    }
+
+    if (conflicts.isEmpty()) {
+      for (ResolvedPlugin.ClasspathEntry dependency : dependencies) {
+        if (!sharedEntries.containsKey(dependency.id)) {
+          sharedClassLoader.addURL(dependency.file.toUri().toURL());
+          sharedEntries.put(dependency.id, dependency);
+          sharedStats.put(dependency.file, stat(dependency.file));
+        }
+      }
+
+      classLoader = new URLClassLoader(new URL[]{resolvedPlugin.classpath.get(0).file.toUri().toURL()}, sharedClassLoader);
+    } else {
+      output.warning("The plugin [%s] needs versions of libraries that conflict with the libraries of other plugins. It " +
+          "will be loaded in its own class loader. The conflicts are:\n  %s", resolvedPlugin.pluginClassName, String.join("\n  ", conflicts));
+      classLoader = new URLClassLoader(resolvedPlugin.toURLs(), parent);
+    }
+
+    pluginClassLoaders.put(key, new PluginClassLoader(classLoader, stats));
+    return classLoader;
+  }
+
+  /**
+   * Creates the class loaders for all of the given plugins in the order of the IDs of the plugin JARs. This ensures that
+   * the plugins that share the shared class loader are the same every time, no matter which order the plugins were
+   * resolved in.
+   *
+   * @param resolvedPlugins The resolved plugins.
+   * @param output          The output that conflicts are written to.
+   * @throws MalformedURLException If any of the files can't be converted to a URL (this should never happen).
+   */
+  public synchronized void classLoaders(Collection<ResolvedPlugin> resolvedPlugins, Output output) throws MalformedURLException {
+    List<ResolvedPlugin> sorted = new ArrayList<>(resolvedPlugins);
+    sorted.sort(Comparator.comparing((ResolvedPlugin resolvedPlugin) -> resolvedPlugin.classpath.get(0).id)
+                          .thenComparing((resolvedPlugin) -> resolvedPlugin.classpath.get(0).version));
+    for (ResolvedPlugin resolvedPlugin : sorted) {
+      classLoader(resolvedPlugin, output);
+    }
+  }
+
+  /**
+   * Closes all of the class loaders and replaces the shared class loader, so that the plugins are loaded from their JAR
+   * files again like a new JVM would.
+   *
+   * @param output The output that failures to close the class loaders are written to.
+   */
+  public synchronized void clear(Output output) {
+    pluginClassLoaders.values().forEach((pluginClassLoader) -> close(pluginClassLoader.classLoader, output));
+    close(sharedClassLoader, output);
+    pluginClassLoaders.clear();
+    sharedEntries.clear();
+    sharedStats.clear();
+    sharedClassLoader = new SharedClassLoader(parent);
+  }
+
+  /**
+   * @return The class loader that all of the plugin dependencies are shared from.
+   */
+  public synchronized URLClassLoader sharedClassLoader() {
+    return sharedClassLoader;
+  }
+
+  private static String stat(Path file) {
+    try {
+      return Files.size(file) + " " + Files.getLastModifiedTime(file).toMillis();
+    } catch (IOException e) {
+      return "missing";
+    }
+  }
+
+  private static String stats(ResolvedPlugin resolvedPlugin) {
+    return resolvedPlugin.classpath.stream().map((entry) -> stat(entry.file)).collect(Collectors.joining(","));
+  }
+
+  private void close(URLClassLoader classLoader, Output output) {
+    try {
+      classLoader.close();
+    } catch (IOException e) {
+      output.debug(e);
+    }
+  }
+
+  private static class PluginClassLoader {
+    public final URLClassLoader classLoader;
+
+    public final String stats;
+
+    public PluginClassLoader(URLClassLoader classLoader, String stats) {
+      this.classLoader = classLoader;
+      this.stats = stats;
+    }
+  }
+
+  private static class SharedClassLoader extends URLClassLoader {
+    static {
+      ClassLoader.registerAsParallelCapable();
+    }
+
+    public SharedClassLoader(ClassLoader parent) {
+      super(new URL[0], parent);
+    }
+
+    @Override
+    protected void addURL(URL url) {
+      super.addURL(url);
+    }
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.plugin;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The result of resolving a plugin. This contains the name of the plugin class and the classpath that the plugin
+ * class is loaded from. The first entry in the classpath is always the plugin JAR itself.
+ *
+ * @author Brian Pontarelli
+ */
+public class ResolvedPlugin {
+  public final List<ClasspathEntry> classpath = new ArrayList<>();
+
+  public final String pluginClassName;
+
+  public ResolvedPlugin(String pluginClassName) {
+    this.pluginClassName = pluginClassName;
+  }
+
+  /**
+   * Converts the classpath of this plugin to URLs that can be used to construct a class loader.
+   *
+   * @return The URLs.
+   * @throws MalformedURLException If any of the files can't be converted to a URL (this should never happen).
+   */
+  public URL[] toURLs() throws MalformedURLException {
+    URL[] urls = new URL[classpath.size()];
+    for (int i = 0; i < urls.length; i++) {
+      urls[i] = classpath.get(i).file.toUri().toURL();
+    }
+
+    return urls;
+  }
+
+  @Override
+  public String toString() {
+    List<Path> files = new ArrayList<>();
+    classpath.forEach((entry) -> files.add(entry.file));
+    return pluginClassName + " " + files;
+  }
+
+  /**
+   * A single artifact in the classpath of a plugin.
+   *
+   * @author Brian Pontarelli
+   */
+  public static class ClasspathEntry {
+    /**
+     * The artifact id without the version (i.e. {@code org.example:foo:foo:jar}).
+     */
+    public final String id;
+
+    public final Path file;
+
+    public final String version;
+
+    public ClasspathEntry(String id, String version, Path file) {
+      this.id = id;
+      this.version = version;
+      this.file = file;
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.plugin.groovy;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RunnableFuture;
+
+import org.codehaus.groovy.runtime.InvokerHelper;
+import org.savantbuild.dep.domain.Artifact;
+import org.savantbuild.plugin.Plugin;
+import org.savantbuild.plugin.PluginLoadException;
+
+import groovy.lang.GroovyInterceptable;
+import groovy.lang.GroovyObjectSupport;
+
+/**
+ * A plugin that is still being loaded in the background. The build file gets one of these from {@code loadPlugin} so
+ * that the resolution of all of the plugins overlaps. Every property access and method call from the build file waits
+ * for the plugin to be loaded and is then delegated to it. This means that the build only waits for a plugin the first
+ * time it is used.
+ * <p>
+ * If the plugin hasn't started loading when it is first used (i.e. it was deferred using a {@link RunnableFuture} that
+ * was never submitted), it is loaded by the thread that uses it.
+ * <p>
+ * If the plugin failed to load, the failure is thrown the first time the plugin is used. The build file parser waits for
+ * every plugin once the build file has been run, so the failure of a plugin that is never used fails the build as well.
+ *
+ * @author Brian Pontarelli
+ */
+public class LazyPlugin extends GroovyObjectSupport implements GroovyInterceptable, Plugin {
+  public final Artifact pluginDependency;
+
+  private final Future<Plugin> future;
+
+  public LazyPlugin(Artifact pluginDependency, Future<Plugin> future) {
+    this.pluginDependency = pluginDependency;
+    this.future = future;
+  }
+
+  /**
+   * Waits for the plugin to be loaded.
+   *
+   * @return The plugin.
+   * @throws PluginLoadException If the plugin could not be loaded (or any other RuntimeException thrown while loading
+   *                             the plugin, such as a BuildFailureException from the plugin's constructor).
+   */
+  public Plugin get() {
+    if (future instanceof RunnableFuture && !future.isDone()) {
+      // This does nothing if another thread is already loading the plugin
+      ((RunnableFuture<Plugin>) future).run();
+    }
+
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new PluginLoadException("Interrupted while loading plugin [" + pluginDependency + "]", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+
+      throw new PluginLoadException("Unable to load plugin [" + pluginDependency + "]", cause);
+    }
+  }
+
+  /**
+   * @return True if the plugin has been loaded or failed to load.
+   */
+  public boolean isDone() {
+    return future.isDone();
+  }
+
+  @Override
+  public Object getProperty(String property) {
+    return InvokerHelper.getProperty(get(), property);
+  }
+
+  @Override
+  public Object invokeMethod(String name, Object args) {
+    return InvokerHelper.invokeMethod(get(), name, args);
+  }
+
+  @Override
+  public void setProperty(String property, Object newValue) {
+    InvokerHelper.setProperty(get(), property, newValue);
+  }
+
+  @Override
+  public String toString() {
+    return "Plugin [" + pluginDependency + "]";
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.runtime;
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.savantbuild.domain.Project;
+import org.savantbuild.domain.Target;
+
+/**
+ * Determines which targets are affected by changed files. A target is affected if one of its declared inputs contains
+ * a changed file or if it depends (directly or through other targets) on an affected target.
+ *
+ * @author Brian Pontarelli
+ */
+public final class AffectedTargets {
+  private AffectedTargets() {
+  }
+
+  /**
+   * Finds the targets that are affected by the given changed files.
+   *
+   * @param project      The project.
+   * @param changedPaths The changed files. Relative paths are resolved against the project directory.
+   * @return The names of the affected targets.
+   */
+  public static Set<String> find(Project project, Collection<Path> changedPaths) {
+    List<Path> changed = new ArrayList<>();
+    changedPaths.forEach((path) -> changed.add(resolve(project, path)));
+
+    Map<String, List<String>> dependents = new HashMap<>();
+    Deque<String> queue = new ArrayDeque<>();
+    project.targets.forEach((name, target) -> {
+      if (target.dependencies != null) {
+        target.dependencies.forEach((dependency) -> dependents.computeIfAbsent(dependency, (key) -> new ArrayList<>()).add(name));
+      }
+
+      if (isAffected(project, target, changed)) {
+        queue.add(name);
+      }
+    });
+
+    // Walk the target graph in reverse to add everything that depends on an affected target
+    Set<String> affected = new HashSet<>();
+    while (!queue.isEmpty()) {
+      String name = queue.remove();
+      if (affected.add(name)) {
+        queue.addAll(dependents.getOrDefault(name, new ArrayList<>()));
+      }
+    }
+
+    return affected;
+  }
+
+  private static boolean isAffected(Project project, Target target, List<Path> changed) {
+    for (Path input : target.inputs) {
+      Path resolved = resolve(project, input);
+      for (Path path : changed) {
+        if (path.startsWith(resolved)) {
+          return true;
+        }
+      }
+    }
+
+    return false;
+  }
+
+  private static Path resolve(Project project, Path path) {
+    return (project.directory != null ? project.directory.resolve(path) : path).toAbsolutePath().normalize();
+  }
+}
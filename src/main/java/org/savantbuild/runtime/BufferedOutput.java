@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2001-2010, Inversoft, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.runtime;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+import org.savantbuild.output.Output;
+
+/**
+ * An Output that writes to another Output (usually the console) on a background thread. This is only used when targets
+ * run in parallel. The output of a target is collected in a buffer for the thread that runs the target (see
+ * {@link #startBlock()} and {@link #endBlock()}) and written as a single block once the target finishes. This keeps the
+ * output of targets that run in parallel from being interleaved.
+ * <p>
+ * When debugging is enabled, everything is written directly to the other Output so that the debug output matches what
+ * is happening at that moment.
+ * <p>
+ * This must be closed at the end of the build to write the remaining output.
+ *
+ * @author Brian Pontarelli
+ */
+public class BufferedOutput implements Output, AutoCloseable {
+  /**
+   * The number of lines that a target can write before its buffer is written. This limits the memory used by targets
+   * that write a lot of output, but those targets might be interleaved with other targets.
+   */
+  public static final int MAX_BLOCK_LINES = 1000;
+
+  private static final List<Line> STOP = Collections.emptyList();
+
+  private final ThreadLocal<List<Line>> blocks = new ThreadLocal<>();
+
+  private final Output delegate;
+
+  private final BlockingQueue<List<Line>> queue = new ArrayBlockingQueue<>(1024);
+
+  private final Thread writer;
+
+  private volatile boolean closed;
+
+  private volatile boolean debug;
+
+  public BufferedOutput(Output delegate) {
+    this.delegate = delegate;
+    this.writer = new Thread(this::write, "Savant output");
+    this.writer.setDaemon(true);
+    this.writer.start();
+  }
+
+  /**
+   * Writes all of the buffered output and stops the background thread. Anything that is output after this is written
+   * directly.
+   */
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+
+    flush();
+    closed = true;
+    enqueue(STOP);
+    try {
+      writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public void debug(String message, Object... values) {
+    if (debug) {
+      write(new Line(Level.DEBUG, message, values, null));
+    }
+  }
+
+  @Override
+  public void debug(Throwable t) {
+    if (debug) {
+      write(new Line(Level.DEBUG, null, null, t));
+    }
+  }
+
+  @Override
+  public void disableDebug() {
+    debug = false;
+    delegate.disableDebug();
+  }
+
+  @Override
+  public void enableDebug() {
+    // Everything that is buffered must be written before switching to direct writes
+    flush();
+    debug = true;
+    delegate.enableDebug();
+  }
+
+  /**
+   * Writes the output that the current thread buffered since {@link #startBlock()} was called as a single block.
+   */
+  public void endBlock() {
+    List<Line> block = blocks.get();
+    blocks.remove();
+    if (block != null && !block.isEmpty()) {
+      enqueue(block);
+    }
+  }
+
+  @Override
+  public void error(String message, Object... values) {
+    write(new Line(Level.ERROR, message, values, null));
+  }
+
+  /**
+   * Waits until everything that was output (except open blocks) has been written.
+   */
+  public void flush() {
+    if (closed) {
+      return;
+    }
+
+    CountDownLatch latch = new CountDownLatch(1);
+    enqueue(Collections.singletonList(new Line(latch)));
+    await(latch);
+  }
+
+  /**
+   * Writes the output that the current thread has buffered so far without ending the block and waits until it has been
+   * written. This is used to write the header of a target before the target starts, since the target might write to
+   * System.out directly.
+   */
+  public void flushBlock() {
+    List<Line> block = blocks.get();
+    if (block == null || block.isEmpty()) {
+      return;
+    }
+
+    blocks.set(new ArrayList<>());
+    CountDownLatch latch = new CountDownLatch(1);
+    block.add(new Line(latch));
+    enqueue(block);
+    await(latch);
+  }
+
+  @Override
+  public void info(String message, Object... values) {
+    write(new Line(Level.INFO, message, values, null));
+  }
+
+  /**
+   * Starts buffering the output of the current thread until {@link #endBlock()} is called. This does nothing when
+   * debugging is enabled.
+   */
+  public void startBlock() {
+    if (!debug && !closed) {
+      blocks.set(new ArrayList<>());
+    }
+  }
+
+  @Override
+  public void warning(String message, Object... values) {
+    write(new Line(Level.WARNING, message, values, null));
+  }
+
+  private void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void enqueue(List<Line> lines) {
+    try {
+      queue.put(lines);
+    } catch (InterruptedException e) {
+      // Write it directly rather than losing it
+      Thread.currentThread().interrupt();
+      synchronized (delegate) {
+        lines.forEach(this::output);
+      }
+    }
+  }
+
+  private void output(Line line) {
+    if (line.latch != null) {
+      line.latch.countDown();
+    } else if (line.throwable != null) {
+      delegate.debug(line.throwable);
+    } else if (line.level == Level.DEBUG) {
+      delegate.debug(line.message, line.values);
+    } else if (line.level == Level.INFO) {
+      delegate.info(line.message, line.values);
+    } else if (line.level == Level.WARNING) {
+      delegate.warning(line.message, line.values);
+    } else {
+      delegate.error(line.message, line.values);
+    }
+  }
+
+  private void write(Line line) {
+    if (debug || closed) {
+      synchronized (delegate) {
+        output(line);
+      }
+      return;
+    }
+
+    List<Line> block = blocks.get();
+    if (block == null) {
+      enqueue(Collections.singletonList(line));
+      return;
+    }
+
+    block.add(line);
+    if (block.size() >= MAX_BLOCK_LINES) {
+      enqueue(block);
+      blocks.set(new ArrayList<>());
+    }
+  }
+
+  private void write() {
+    while (true) {
+      List<Line> lines;
+      try {
+        lines = queue.take();
+      } catch (InterruptedException e) {
+        return;
+      }
+
+      if (lines == STOP) {
+        return;
+      }
+
+      synchronized (delegate) {
+        lines.forEach(this::output);
+      }
+    }
+  }
+
+  private enum Level {
+    DEBUG,
+    INFO,
+    WARNING,
+    ERROR
+  }
+
+  private static class Line {
+    public final CountDownLatch latch;
+
+    public final Level level;
+
+    public final String message;
+
+    public final Throwable throwable;
+
+    public final Object[] values;
+
+    public Line(Level level, String message, Object[] values, Throwable throwable) {
+      this.level = level;
+      this.message = message;
+      this.values = values;
+      this.throwable = throwable;
+      this.latch = null;
+    }
+
+    public Line(CountDownLatch latch) {
+      this.level = null;
+      this.message = null;
+      this.values = null;
+      this.throwable = null;
+      this.latch = latch;
+    }
+  }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.runtime;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records where the time of a build goes when the {@code --profile} switch is used. Each part of the build (parsing
+ * the build file, loading a plugin, resolving dependencies and running a target) is recorded as a {@link Span} that
+ * contains the wall time, the CPU time and the bytes allocated by the thread that ran it as well as the garbage
+ * collections that happened while it ran.
+ * <p>
+ * NOTE: Garbage collections are counted for the entire JVM. When targets run in parallel, a single collection is
+ * counted by every span that was running at the time.
+ * <p>
+ * At the end of the build, the spans are written to {@code build/reports/savant-profile} as JSON
+ * ({@code profile.json}) and as Chrome trace events ({@code trace.json}), which can be loaded into
+ * {@code chrome://tracing}.
+ *
+ * @author Brian Pontarelli
+ */
+public class BuildProfiler {
+  public static final String REPORT_DIRECTORY = "build/reports/savant-profile";
+
+  private final List<GarbageCollectorMXBean> garbageCollectors = ManagementFactory.getGarbageCollectorMXBeans();
+
+  private final List<Span> spans = new ArrayList<>();
+
+  private final long start = System.nanoTime();
+
+  private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+  /**
+   * Starts a span. The span is recorded when it is closed, which makes it simple to use with try-with-resources.
+   *
+   * @param category The category of the span (i.e. {@code target}).
+   * @param name     The name of the span (i.e. the name of the target).
+   * @return The span.
+   */
+  public Span start(String category, String name) {
+    return new Span(category, name);
+  }
+
+  /**
+   * @return A copy of the spans that have been closed.
+   */
+  public synchronized List<Span> spans() {
+    return new ArrayList<>(spans);
+  }
+
+  /**
+   * Writes the JSON report and the Chrome trace event report to the given directory.
+   *
+   * @param directory The directory.
+   * @throws IOException If the reports could not be written.
+   */
+  public void writeReports(Path directory) throws IOException {
+    List<Span> spans = spans();
+    Files.createDirectories(directory);
+
+    try (Writer writer = Files.newBufferedWriter(directory.resolve("profile.json"), StandardCharsets.UTF_8)) {
+      writer.write("{\n");
+      writer.write("  \"wallMillis\": " + millis(System.nanoTime() - start) + ",\n");
+      writer.write("  \"spans\": [");
+      for (int i = 0; i < spans.size(); i++) {
+        Span span = spans.get(i);
+        writer.write(i == 0 ? "\n" : ",\n");
+        writer.write("    {\"category\": " + quote(span.category) + ", \"name\": " + quote(span.name) +
+            ", \"thread\": " + quote(span.threadName) + ", \"startMillis\": " + millis(span.startNanos - start) +
+            ", \"wallMillis\": " + millis(span.wallNanos) + ", \"cpuMillis\": " + millis(span.cpuNanos) +
+            ", \"allocatedBytes\": " + span.allocatedBytes + ", \"gcCount\": " + span.gcCount +
+            ", \"gcMillis\": " + span.gcMillis + "}");
+      }
+      writer.write("\n  ]\n}\n");
+    }
+
+    try (Writer writer = Files.newBufferedWriter(directory.resolve("trace.json"), StandardCharsets.UTF_8)) {
+      writer.write("{\"traceEvents\": [");
+      for (int i = 0; i < spans.size(); i++) {
+        Span span = spans.get(i);
+        writer.write(i == 0 ? "\n" : ",\n");
+        writer.write("  {\"name\": " + quote(span.name) + ", \"cat\": " + quote(span.category) + ", \"ph\": \"X\"" +
+            ", \"ts\": " + TimeUnit.NANOSECONDS.toMicros(span.startNanos - start) +
+            ", \"dur\": " + TimeUnit.NANOSECONDS.toMicros(span.wallNanos) + ", \"pid\": 1, \"tid\": " + span.threadId +
+            ", \"args\": {\"cpuMillis\": " + millis(span.cpuNanos) + ", \"allocatedBytes\": " + span.allocatedBytes +
+            ", \"gcCount\": " + span.gcCount + ", \"gcMillis\": " + span.gcMillis + "}}");
+      }
+      writer.write("\n], \"displayTimeUnit\": \"ms\"}\n");
+    }
+  }
+
+  private long allocatedBytes() {
+    if (threads instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+      if (sunThreads.isThreadAllocatedMemorySupported() && sunThreads.isThreadAllocatedMemoryEnabled()) {
+        return sunThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+      }
+    }
+
+    return 0;
+  }
+
+  private long cpuTime() {
+    return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : 0;
+  }
+
+  private long gcCount() {
+    long count = 0;
+    for (GarbageCollectorMXBean garbageCollector : garbageCollectors) {
+      count += Math.max(0, garbageCollector.getCollectionCount());
+    }
+
+    return count;
+  }
+
+  private long gcMillis() {
+    long time = 0;
+    for (GarbageCollectorMXBean garbageCollector : garbageCollectors) {
+      time += Math.max(0, garbageCollector.getCollectionTime());
+    }
+
+    return time;
+  }
+
+  private String millis(long nanos) {
+    return String.format(Locale.ROOT, "%.3f", nanos / 1000000.0);
+  }
+
+  private String quote(String value) {
+    StringBuilder build = new StringBuilder("\"");
+    for (char c : value.toCharArray()) {
+      if (c == '"' || c == '\\') {
+        build.append('\\').append(c);
+      } else if (c < 0x20) {
+        build.append(String.format("\\u%04x", (int) c));
+      } else {
+        build.append(c);
+      }
+    }
+
+    return build.append('"').toString();
+  }
+
+  /**
+   * A single measured part of the build. The measurements are taken on the thread that started the span, so a span
+   * must be closed by the same thread.
+   *
+   * @author Brian Pontarelli
+   */
+  public class Span implements AutoCloseable {
+    public final String category;
+
+    public final String name;
+
+    public final long threadId;
+
+    public final String threadName;
+
+    public long allocatedBytes;
+
+    public long cpuNanos;
+
+    public long gcCount;
+
+    public long gcMillis;
+
+    public long startNanos;
+
+    public long wallNanos;
+
+    private Span(String category, String name) {
+      this.category = category;
+      this.name = name;
+      this.threadId = Thread.currentThread().getId();
+      this.threadName = Thread.currentThread().getName();
+      this.allocatedBytes = allocatedBytes();
+      this.cpuNanos = cpuTime();
+      this.gcCount = gcCount();
+      this.gcMillis = gcMillis();
+      this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Records the span.
+     */
+    @Override
+    public void close() {
+      wallNanos = System.nanoTime() - startNanos;
+      cpuNanos = cpuTime() - cpuNanos;
+      allocatedBytes = allocatedBytes() - allocatedBytes;
+      gcCount = gcCount() - gcCount;
+      gcMillis = gcMillis() - gcMillis;
+
+      synchronized (BuildProfiler.this) {
+        spans.add(this);
+      }
+    }
+  }
+}
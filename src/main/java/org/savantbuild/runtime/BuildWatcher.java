@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.runtime;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.savantbuild.domain.Project;
+import org.savantbuild.domain.Target;
+import org.savantbuild.output.Output;
+
+/**
+ * Runs the targets of a project and then keeps running, watching the inputs of the targets for changes. When files
+ * change, only the targets that are affected by the change (see {@link AffectedTargets}) are run again. Since the
+ * project and its plugins stay in memory, this avoids parsing the build file and loading the plugins for each change.
+ * <p>
+ * Only the inputs that the targets declare are watched. Changes to the build file itself require restarting Savant.
+ * Inputs that don't exist yet (i.e. directories that a target generates) are watched once a run has created them.
+ * <p>
+ * Each run is a complete build (see {@link Build}) so that the build events, the file snapshots and the build cache are
+ * handled just like a normal build.
+ *
+ * @author Brian Pontarelli
+ */
+public class BuildWatcher {
+  /**
+   * The time to wait for more changes before running the targets. Editors and IDEs often write multiple files at once.
+   */
+  public static final long QUIET_PERIOD_MILLIS = 200;
+
+  private final Map<WatchKey, Path> directories = new HashMap<>();
+
+  private final Output output;
+
+  public BuildWatcher(Output output) {
+    this.output = output;
+  }
+
+  /**
+   * Runs the targets and then re-runs the affected targets whenever their inputs change. This only returns if the
+   * thread is interrupted or none of the targets declare inputs.
+   *
+   * @param project The project.
+   * @param targets The targets to run.
+   * @param build   Runs the targets for each change.
+   * @throws BuildRunException If the inputs can't be watched.
+   */
+  public void watch(Project project, List<String> targets, Build build) {
+    Set<Target> closure = new HashSet<>();
+    targets.forEach((name) -> closure(project, name, closure));
+    run(project, build, null, closure);
+
+    List<Path> inputs = new ArrayList<>();
+    closure.forEach((target) -> inputs.addAll(target.inputs));
+    if (inputs.isEmpty()) {
+      output.warning("None of the targets [%s] declare inputs, so there is nothing to watch", String.join(", ", targets));
+      return;
+    }
+
+    try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+      output.info("Watching for changes. Press Ctrl-C to stop.");
+      while (!Thread.currentThread().isInterrupted()) {
+        registerInputs(watchService, inputs);
+
+        Set<Path> changed = new TreeSet<>();
+        collect(watchService, watchService.take(), changed, inputs);
+
+        WatchKey key;
+        while ((key = watchService.poll(QUIET_PERIOD_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+          collect(watchService, key, changed, inputs);
+        }
+
+        run(project, build, changed, closure);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException e) {
+      throw new BuildRunException("Unable to watch the inputs of the targets. The error was [" + e.getMessage() + "]");
+    }
+  }
+
+  private void closure(Project project, String name, Set<Target> closure) {
+    Target target = project.targets.get(name);
+    if (target == null || !closure.add(target)) {
+      return;
+    }
+
+    if (target.dependencies != null) {
+      target.dependencies.forEach((dependency) -> closure(project, dependency, closure));
+    }
+  }
+
+  private void collect(WatchService watchService, WatchKey key, Set<Path> changed, List<Path> inputs) throws IOException {
+    Path directory = directories.get(key);
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == StandardWatchEventKinds.OVERFLOW || directory == null) {
+        // Events were lost, so treat all of the inputs as changed
+        changed.addAll(inputs);
+        continue;
+      }
+
+      Path path = directory.resolve((Path) event.context());
+      changed.add(path);
+      if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+        register(watchService, path, true);
+      }
+    }
+
+    if (!key.reset()) {
+      directories.remove(key);
+    }
+  }
+
+  private void register(WatchService watchService, Path directory, boolean recursive) throws IOException {
+    if (directory == null || !Files.isDirectory(directory) || directories.containsValue(directory)) {
+      return;
+    }
+
+    Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+        WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+            StandardWatchEventKinds.ENTRY_MODIFY);
+        directories.put(key, dir);
+        return recursive ? FileVisitResult.CONTINUE : FileVisitResult.SKIP_SUBTREE;
+      }
+    });
+  }
+
+  /**
+   * Registers the inputs that aren't being watched yet. This is called after every run because the run might have
+   * created inputs that didn't exist before and the directories of deleted inputs stop being watched.
+   */
+  private void registerInputs(WatchService watchService, List<Path> inputs) throws IOException {
+    for (Path input : inputs) {
+      Path absolute = input.toAbsolutePath();
+      if (Files.isDirectory(absolute)) {
+        register(watchService, absolute, true);
+      } else {
+        register(watchService, absolute.getParent(), false);
+      }
+    }
+  }
+
+  private void run(Project project, Build build, Set<Path> changed, Set<Target> closure) {
+    try {
+      if (changed == null) {
+        build.run((target) -> true);
+      } else {
+        Set<String> affected = AffectedTargets.find(project, changed);
+        if (closure.stream().noneMatch((target) -> affected.contains(target.name))) {
+          return;
+        }
+
+        output.info("Files changed %s", changed);
+        output.info("");
+        build.run((target) -> affected.contains(target.name));
+      }
+
+      output.info("Build successful. Waiting for changes.");
+    } catch (RuntimeException e) {
+      // Keep watching so that the user can fix the problem
+      output.error("Build failed. %s", e.getMessage() != null ? e.getMessage() : e.toString());
+      output.debug(e);
+    }
+  }
+
+  /**
+   * A single run of the targets that are being watched.
+   */
+  public interface Build {
+    /**
+     * Runs the targets that the filter accepts.
+     *
+     * @param filter Determines which targets are run.
+     */
+    void run(Predicate<Target> filter);
+  }
+}
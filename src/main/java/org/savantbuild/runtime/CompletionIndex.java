@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2001-2010, Inversoft, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.runtime;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.savantbuild.domain.Project;
+import org.savantbuild.output.Output;
+
+/**
+ * The index that {@code sb --complete} uses to complete the command-line. The index is a text file in the project that
+ * contains one completion per line:
+ * <p>
+ * <ul>
+ *   <li>The targets of the project, including the targets that plugins added</li>
+ *   <li>The fixed arguments (see {@link DefaultRuntimeConfigurationParser#FIXED_ARGUMENTS})</li>
+ *   <li>The switches that the build file checks for (i.e. {@code switches.has("skipTests")})</li>
+ *   <li>The switches that the build file and plugins checked for during earlier builds</li>
+ * </ul>
+ * <p>
+ * The index is created by {@code --complete}, {@code --help} and {@code --listTargets} and it is updated by every build
+ * after that, so it is usually up-to-date. The {@code sb} script reads it directly when it is newer than the build
+ * files, which means that completion doesn't even start the JVM. Otherwise, the build file is parsed for its targets only
+ * and the index is written again.
+ * <p>
+ * The build files of the projects of a workspace are listed in a second file next to the index, one per line, so that
+ * changing the build file of any project of the workspace makes the index stale and not just the workspace file.
+ *
+ * @author Brian Pontarelli
+ */
+public class CompletionIndex {
+  public static final String BUILD_FILES_FILE = "build/.savant/completion-files";
+
+  public static final String INDEX_FILE = "build/.savant/completion";
+
+  private static final Pattern SWITCH_PATTERN = Pattern.compile("switches\\s*\\.\\s*(?:has|hasValue|values)\\s*\\(\\s*[\"']([^\"']+)[\"']");
+
+  private final Path file;
+
+  private final Output output;
+
+  public CompletionIndex(Output output, Path file) {
+    this.output = output;
+    this.file = file;
+  }
+
+  /**
+   * Returns the completions that start with the given partial argument.
+   *
+   * @param partial The partial argument.
+   * @return The completions, which is empty if the index doesn't exist.
+   */
+  public List<String> complete(String partial) {
+    return read().stream()
+                 .filter((completion) -> completion.startsWith(partial))
+                 .collect(Collectors.toList());
+  }
+
+  /**
+   * Determines if the index is missing or older than the build file or any of the build files that the index was
+   * written from.
+   *
+   * @param buildFile (Optional) The build file.
+   * @return True if the index needs to be written.
+   */
+  public boolean isStale(Path buildFile) {
+    if (!Files.isRegularFile(file)) {
+      return true;
+    }
+
+    List<Path> buildFiles = new ArrayList<>();
+    if (buildFile != null) {
+      buildFiles.add(buildFile);
+    }
+
+    readBuildFiles().forEach((line) -> buildFiles.add(Paths.get(line)));
+    try {
+      FileTime indexTime = Files.getLastModifiedTime(file);
+      for (Path path : buildFiles) {
+        if (Files.isRegularFile(path) && indexTime.compareTo(Files.getLastModifiedTime(path)) < 0) {
+          return true;
+        }
+      }
+
+      return false;
+    } catch (IOException e) {
+      return true;
+    }
+  }
+
+  /**
+   * Writes the index for the project. The file is only written if the completions changed.
+   *
+   * @param project  The project.
+   * @param switches The switches of the build, which know the switches that were checked for.
+   */
+  public void write(Project project, Switches switches) {
+    List<String> previous = read();
+    Set<String> switchCompletions = new TreeSet<>(DefaultRuntimeConfigurationParser.FIXED_ARGUMENTS);
+    previous.stream().filter((completion) -> completion.startsWith("--")).forEach(switchCompletions::add);
+    switches.queried.forEach((name) -> switchCompletions.add("--" + name));
+    scan(project.buildFile, switchCompletions);
+    project.subProjects.forEach((subProject) -> scan(subProject.buildFile, switchCompletions));
+
+    List<String> buildFiles = new ArrayList<>();
+    project.subProjects.stream()
+                       .filter((subProject) -> subProject.buildFile != null)
+                       .forEach((subProject) -> buildFiles.add(subProject.buildFile.toAbsolutePath().toString()));
+
+    List<String> completions = new ArrayList<>(new TreeSet<>(project.targets.keySet()));
+    completions.addAll(switchCompletions);
+    boolean buildFilesChanged = !buildFiles.equals(readBuildFiles());
+    if (!buildFilesChanged && completions.equals(previous) && !isStale(project.buildFile)) {
+      return;
+    }
+
+    try {
+      // The index is written last so that it is newer than the list of build files
+      if (buildFilesChanged) {
+        write(file.resolveSibling(Paths.get(BUILD_FILES_FILE).getFileName()), buildFiles);
+      }
+
+      write(file, completions);
+    } catch (IOException e) {
+      output.debug("Unable to write the completion index [%s]", file);
+      output.debug(e);
+    }
+  }
+
+  private List<String> read() {
+    return read(file);
+  }
+
+  private List<String> read(Path path) {
+    if (!Files.isRegularFile(path)) {
+      return new ArrayList<>();
+    }
+
+    try {
+      return Files.readAllLines(path, StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      output.debug("Unable to read the completion index [%s]", path);
+      output.debug(e);
+      return new ArrayList<>();
+    }
+  }
+
+  private List<String> readBuildFiles() {
+    return read(file.resolveSibling(Paths.get(BUILD_FILES_FILE).getFileName()));
+  }
+
+  private void scan(Path buildFile, Set<String> switchCompletions) {
+    if (buildFile == null || !Files.isRegularFile(buildFile)) {
+      return;
+    }
+
+    try {
+      Matcher matcher = SWITCH_PATTERN.matcher(new String(Files.readAllBytes(buildFile), StandardCharsets.UTF_8));
+      while (matcher.find()) {
+        switchCompletions.add("--" + matcher.group(1));
+      }
+    } catch (IOException e) {
+      output.debug("Unable to read the build file [%s] for the completion index", buildFile);
+      output.debug(e);
+    }
+  }
+
+  private void write(Path path, List<String> lines) throws IOException {
+    Files.createDirectories(path.getParent());
+    Path temp = Files.createTempFile(path.getParent(), "completion", ".tmp");
+    Files.write(temp, lines, StandardCharsets.UTF_8);
+    Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+  }
+}
@@ -15,7 +15,15 @@
  */
 package org.savantbuild.runtime;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.savantbuild.dep.LicenseException;
 import org.savantbuild.dep.PublishException;
@@ -25,6 +33,9 @@ import org.savantbuild.dep.workflow.ArtifactMetaDataMissingException;
 import org.savantbuild.dep.workflow.ArtifactMissingException;
 import org.savantbuild.dep.workflow.process.ProcessFailureException;
 import org.savantbuild.domain.Project;
+import org.savantbuild.domain.Target;
+import org.savantbuild.event.BuildFinished;
+import org.savantbuild.event.BuildStarted;
 import org.savantbuild.output.Output;
 import org.savantbuild.parser.BuildFileParser;
 import org.savantbuild.parser.ParseException;
@@ -68,17 +79,107 @@ public class DefaultBuildRunner implements BuildRunner {
       return;
     }
 
+    if (runtimeConfiguration.complete != null) {
+      complete(buildFile, runtimeConfiguration);
+      return;
+    }
+
     Project project = buildFileParser.parse(buildFile, runtimeConfiguration);
+    try {
+      if (runtimeConfiguration.help) {
+        printHelp(project);
+        writeCompletionIndex(project, runtimeConfiguration, true);
+        return;
+      } else if (runtimeConfiguration.listTargets) {
+        printTargets(project);
+        writeCompletionIndex(project, runtimeConfiguration, true);
+        return;
+      }
 
-    if (runtimeConfiguration.help) {
-      printHelp(project);
-      return;
-    } else if (runtimeConfiguration.listTargets) {
-      printTargets(project);
-      return;
+      if (runtimeConfiguration.writeLock) {
+        writeLockFiles(project);
+        if (runtimeConfiguration.targets.isEmpty()) {
+          return;
+        }
+      }
+
+      if (runtimeConfiguration.dryRun) {
+        printPlan(project, runtimeConfiguration);
+        return;
+      }
+
+      if (runtimeConfiguration.watch) {
+        List<String> targets = runtimeConfiguration.targets;
+        new BuildWatcher(output).watch(project, targets, (filter) -> build(project, runtimeConfiguration, () -> projectRunner.run(project, targets, filter)));
+      } else if (runtimeConfiguration.affectedBy != null) {
+        build(project, runtimeConfiguration, () -> runAffected(project, runtimeConfiguration));
+      } else {
+        build(project, runtimeConfiguration, () -> projectRunner.run(project, project.executionPlan(runtimeConfiguration.targets), (target) -> true));
+      }
+    } finally {
+      closeEvents(project);
+    }
+  }
+
+  /**
+   * Runs a single build of the targets. {@code --watch} calls this for every change. The file snapshots, completion
+   * index, build cache uploads and profile are all handled after each build, even if it fails.
+   */
+  private void build(Project project, RuntimeConfiguration runtimeConfiguration, Runnable run) {
+    long start = System.currentTimeMillis();
+    boolean successful = false;
+    project.events.publish(new BuildStarted(project.name, runtimeConfiguration.targets));
+    try {
+      run.run();
+      successful = true;
+    } finally {
+      project.events.publish(new BuildFinished(successful, System.currentTimeMillis() - start));
+      project.events.flush();
+      project.subProjects.forEach((subProject) -> subProject.events.flush());
+
+      project.fileSnapshots.save();
+      writeCompletionIndex(project, runtimeConfiguration, false);
+
+      if (project.buildCache != null) {
+        project.buildCache.waitForUploads();
+      }
+
+      project.subProjects.stream()
+                         .filter((subProject) -> subProject.buildCache != null)
+                         .forEach((subProject) -> subProject.buildCache.waitForUploads());
+
+      if (project.profiler != null) {
+        writeProfile(project);
+      }
+    }
+  }
+
+  /**
+   * Closes the event buses of the project and its sub-projects, which delivers all of the events (including the events
+   * published while the build file was parsed) before the build returns.
+   */
+  private void closeEvents(Project project) {
+    project.events.close();
+    project.subProjects.forEach((subProject) -> subProject.events.close());
+  }
+
+  /**
+   * Outputs the completions for the partial argument. The build file is only parsed (for its targets) if the completion
+   * index is older than the build file.
+   */
+  private void complete(Path buildFile, RuntimeConfiguration runtimeConfiguration) {
+    CompletionIndex index = new CompletionIndex(output, buildFile.toAbsolutePath().getParent().resolve(CompletionIndex.INDEX_FILE));
+    if (index.isStale(buildFile)) {
+      runtimeConfiguration.listTargets = true;
+      Project project = buildFileParser.parse(buildFile, runtimeConfiguration);
+      try {
+        index.write(project, runtimeConfiguration.switches);
+      } finally {
+        closeEvents(project);
+      }
     }
 
-    projectRunner.run(project, runtimeConfiguration.targets);
+    index.complete(runtimeConfiguration.complete).forEach((completion) -> output.info("%s", completion));
   }
 
   private void printHelp(Project project) {
@@ -90,6 +191,13 @@ public class DefaultBuildRunner implements BuildRunner {
     output.info("   --debug        Enables debug output");
     output.info("   --help         Displays the help message");
     output.info("   --listTargets  Lists the build targets");
+    output.info("   --profile      Writes a profile of the build to build/reports/savant-profile");
+    output.info("   --threads=N    Runs independent targets in parallel using N threads");
+    output.info("   --watch        Keeps running and re-runs the targets whose inputs change");
+    output.info("   --complete ARG Lists the targets and switches that start with ARG (for shell completion)");
+    output.info("   --dry-run      Prints the order that the targets would run in without running them");
+    output.info("   --write-lock   Resolves the plugins and writes them to the savant.lock file");
+    output.info("   --affected-by=FILE  Only runs the given targets that are affected by the changed files listed in FILE (i.e. git diff --name-only)");
     output.info("");
     output.info("NOTE: If any other argument starts with '--' then it is considered a switch. Switches can optionally have values using the equals sign like this:");
     output.info("");
@@ -99,6 +207,111 @@ public class DefaultBuildRunner implements BuildRunner {
     printTargets(project);
   }
 
+  /**
+   * Runs the requested targets that are affected by the changed files. The requested targets that aren't affected are
+   * skipped, but the affected targets run along with all of their dependencies.
+   */
+  private void runAffected(Project project, RuntimeConfiguration runtimeConfiguration) {
+    List<String> targets = affectedTargets(project, runtimeConfiguration);
+    if (targets.isEmpty()) {
+      output.info("None of the targets are affected by the changed files in [%s]", runtimeConfiguration.affectedBy);
+      return;
+    }
+
+    output.info("Affected targets %s", targets);
+    output.info("");
+    projectRunner.run(project, project.executionPlan(targets), (target) -> true);
+  }
+
+  /**
+   * Filters the requested targets down to the ones that are affected by the changed files listed in the
+   * {@code --affected-by} file. The targets must be given explicitly, because running every affected target would also
+   * run targets like publishing and releasing.
+   */
+  private List<String> affectedTargets(Project project, RuntimeConfiguration runtimeConfiguration) {
+    if (runtimeConfiguration.targets.isEmpty()) {
+      throw new BuildRunException("The --affected-by switch requires the targets to run (i.e. sb --affected-by=changed.txt test)");
+    }
+
+    Path file = project.directory.resolve(runtimeConfiguration.affectedBy);
+    List<Path> changed;
+    try {
+      changed = Files.readAllLines(file, StandardCharsets.UTF_8).stream()
+                     .map(String::trim)
+                     .filter((line) -> !line.isEmpty())
+                     .map(Paths::get)
+                     .collect(Collectors.toList());
+    } catch (IOException e) {
+      throw new BuildRunException("Unable to read the changed files from [" + file + "]. The error was [" + e.getMessage() + "]");
+    }
+
+    Set<String> affected = AffectedTargets.find(project, changed);
+    return runtimeConfiguration.targets.stream()
+                                       .filter(affected::contains)
+                                       .collect(Collectors.toList());
+  }
+
+  /**
+   * Prints the execution plan of the targets for {@code --dry-run}. If {@code --affected-by} is also used, only the
+   * plan of the affected targets is printed.
+   */
+  private void printPlan(Project project, RuntimeConfiguration runtimeConfiguration) {
+    List<String> targets = runtimeConfiguration.affectedBy != null ? affectedTargets(project, runtimeConfiguration) : runtimeConfiguration.targets;
+    List<Target> steps = project.executionPlan(targets).targets();
+
+    output.info("Execution plan for %s:", targets);
+    output.info("");
+    for (int i = 0; i < steps.size(); i++) {
+      output.info("  %d. %s", i + 1, steps.get(i).name);
+    }
+
+    if (steps.isEmpty()) {
+      output.info("  No targets to run");
+    }
+  }
+
+  /**
+   * Writes the completion index. Builds only update an existing index (which was created by {@code --complete},
+   * {@code --help} or {@code --listTargets}) so that projects that don't use completion never get one.
+   */
+  private void writeCompletionIndex(Project project, RuntimeConfiguration runtimeConfiguration, boolean create) {
+    Path file = project.directory.resolve(CompletionIndex.INDEX_FILE);
+    if (create || Files.isRegularFile(file)) {
+      new CompletionIndex(output, file).write(project, runtimeConfiguration.switches);
+    }
+  }
+
+  /**
+   * Writes the lock files of the project and its sub-projects once all of their plugins have been resolved.
+   */
+  private void writeLockFiles(Project project) {
+    List<Project> projects = new ArrayList<>(project.subProjects);
+    projects.add(project);
+    for (Project lockedProject : projects) {
+      if (lockedProject.lockFile == null) {
+        continue;
+      }
+
+      try {
+        lockedProject.lockFile.write(lockedProject.dependencies);
+        output.info("Wrote the lock file [%s]", lockedProject.lockFile.file);
+      } catch (IOException e) {
+        throw new BuildRunException("Unable to write the lock file [" + lockedProject.lockFile.file + "]. The error was [" + e.getMessage() + "]");
+      }
+    }
+  }
+
+  private void writeProfile(Project project) {
+    Path directory = project.directory.resolve(BuildProfiler.REPORT_DIRECTORY);
+    try {
+      project.profiler.writeReports(directory);
+      output.info("The build profile was written to [%s]", directory);
+    } catch (IOException e) {
+      output.warning("Unable to write the build profile to [%s]. The error was [%s]", directory, e.getMessage());
+      output.debug(e);
+    }
+  }
+
   private void printTargets(Project project) {
     output.info("Targets in the project build file:");
     output.info("");
@@ -15,8 +15,7 @@
  */
 package org.savantbuild.runtime;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.function.Predicate;
 
 import org.savantbuild.dep.LicenseException;
 import org.savantbuild.dep.PublishException;
@@ -27,6 +26,10 @@ import org.savantbuild.dep.workflow.ArtifactMissingException;
 import org.savantbuild.dep.workflow.process.ProcessFailureException;
 import org.savantbuild.domain.Project;
 import org.savantbuild.domain.Target;
+import org.savantbuild.event.BuildEvent;
+import org.savantbuild.event.TargetFinished;
+import org.savantbuild.event.TargetSkipped;
+import org.savantbuild.event.TargetStarted;
 import org.savantbuild.output.Output;
 import org.savantbuild.security.MD5Exception;
 import org.savantbuild.util.CyclicException;
@@ -37,15 +40,14 @@ import org.savantbuild.util.CyclicException;
  * @author Brian Pontarelli
  */
 public class DefaultProjectRunner implements ProjectRunner {
-  private final Output output;
+  protected final Output output;
 
   public DefaultProjectRunner(Output output) {
     this.output = output;
   }
 
   /**
-   * Runs the targets by finding each target and then performing a graph traversal of that targets dependencies. This
-   * ensures that a target is not called twice.
+   * Runs the targets using the {@link ExecutionPlan} of the targets. This ensures that a target is not called twice.
    *
    * @param project The project.
    * @param targets The targets to run.
@@ -68,32 +70,116 @@ public class DefaultProjectRunner implements ProjectRunner {
   public void run(Project project, Iterable<String> targets) throws ArtifactMetaDataMissingException, ArtifactMissingException,
       BuildRunException, BuildFailureException, CompatibilityException, CyclicException, LicenseException, MD5Exception,
       ProcessFailureException, PublishException, VersionException {
-    Set<String> calledTargets = new HashSet<>();
-    targets.forEach((targetName) -> {
-      Target target = project.targets.get(targetName);
-      if (target == null) {
-        throw new BuildRunException("Invalid target [" + targetName + "]");
-      }
+    run(project, targets, (target) -> true);
+  }
 
-      // Traverse the target dependency graph if the target has dependencies (is in the graph)
-      if (project.targetGraph.contains(target)) {
-        project.targetGraph.traverseUp(target, (origin, destination, edge, depth) -> {
-          if (calledTargets.contains(destination.name)) {
-            return;
-          }
+  /**
+   * Runs the targets the same way as {@link #run(Project, Iterable)} except that targets the filter doesn't accept are
+   * skipped.
+   *
+   * @param project The project.
+   * @param targets The targets to run.
+   * @param filter  Determines which targets are run.
+   */
+  @Override
+  public void run(Project project, Iterable<String> targets, Predicate<Target> filter) {
+    run(project, project.executionPlan(targets), filter);
+  }
 
-          runTarget(destination, calledTargets);
-        });
+  /**
+   * Runs the steps of the execution plan in order. Targets the filter doesn't accept are skipped.
+   *
+   * @param project The project.
+   * @param plan    The execution plan.
+   * @param filter  Determines which targets are run.
+   */
+  @Override
+  public void run(Project project, ExecutionPlan plan, Predicate<Target> filter) {
+    for (int id : plan.steps) {
+      Target target = plan.graph.targets[id];
+      if (filter.test(target)) {
+        runTarget(project, target);
       }
+    }
+  }
 
-      runTarget(target, calledTargets);
-    });
+  /**
+   * Runs a single target. This does not handle the target's dependencies, it only invokes the target itself. If the
+   * target declares its outputs and neither its inputs nor its outputs have changed since it last ran successfully, the
+   * target is skipped. If the target declares its inputs and outputs and the project has a build cache, the outputs are
+   * restored from the cache when possible rather than running the target.
+   * <p>
+   * The target events (i.e. {@link TargetStarted}) are published to the project's event bus.
+   *
+   * @param project The project.
+   * @param target  The target to run.
+   */
+  protected void runTarget(Project project, Target target) {
+    try (BuildProfiler.Span span = project.profile("target", target.name)) {
+      execute(project, target);
+    }
   }
 
-  private void runTarget(Target target, Set<String> calledTargets) {
+  private void execute(Project project, Target target) {
+    // The targets of a workspace belong to the sub-projects, but they share the file snapshots of the workspace
+    Project owner = target.project != null ? target.project : project;
+    TargetFingerprints fingerprints = null;
+    String inputsFingerprint = null;
+    String cacheKey = null;
+    if (!target.outputs.isEmpty()) {
+      fingerprints = new TargetFingerprints(output, owner.directory, owner.buildFile, project.fileSnapshots);
+      inputsFingerprint = fingerprints.fingerprint(target.inputs);
+      if (fingerprints.isUpToDate(target, inputsFingerprint)) {
+        publish(project, owner, new TargetSkipped(target.name, TargetSkipped.Reason.UP_TO_DATE));
+        output.info(":[%s]: UP-TO-DATE", target.name);
+        output.info("");
+        return;
+      }
+
+      fingerprints.remove(target);
+
+      if (owner.buildCache != null && !target.inputs.isEmpty() && inputsFingerprint != null) {
+        cacheKey = owner.buildCache.key(owner, target, inputsFingerprint);
+        if (cacheKey != null && owner.buildCache.load(cacheKey, owner.directory, target.outputs)) {
+          fingerprints.save(target, inputsFingerprint);
+          publish(project, owner, new TargetSkipped(target.name, TargetSkipped.Reason.FROM_CACHE));
+          output.info(":[%s]: FROM-CACHE", target.name);
+          output.info("");
+          return;
+        }
+      }
+    }
+
+    publish(project, owner, new TargetStarted(target.name));
     output.info(":[%s]:", target.name);
-    target.invocation.run();
-    calledTargets.add(target.name);
+    if (output instanceof BufferedOutput) {
+      // The parallel runner buffers the output of the target, but the header shows that the target is running
+      ((BufferedOutput) output).flushBlock();
+    }
+    long start = System.currentTimeMillis();
+    boolean successful = false;
+    try {
+      target.invocation.run();
+      successful = true;
+    } finally {
+      publish(project, owner, new TargetFinished(target.name, successful, System.currentTimeMillis() - start));
+    }
+
+    if (fingerprints != null) {
+      fingerprints.save(target, inputsFingerprint);
+    }
+
+    if (cacheKey != null) {
+      owner.buildCache.store(cacheKey, owner.directory, target.outputs);
+    }
+
     output.info("");
   }
+
+  private void publish(Project project, Project owner, BuildEvent event) {
+    project.events.publish(event);
+    if (owner != project) {
+      owner.events.publish(event);
+    }
+  }
 }
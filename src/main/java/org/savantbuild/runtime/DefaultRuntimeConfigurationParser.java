@@ -15,6 +15,12 @@
  */
 package org.savantbuild.runtime;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+
+import static java.util.Arrays.asList;
 import static org.savantbuild.runtime.RuntimeConfiguration.DEBUG_SWITCH;
 
 /**
@@ -24,7 +30,14 @@ import static org.savantbuild.runtime.RuntimeConfiguration.DEBUG_SWITCH;
  */
 public class DefaultRuntimeConfigurationParser implements RuntimeConfigurationParser {
   /**
-   * Parses the command-line arguments. There are currently 4 fixed arguments:
+   * The fixed arguments. The arguments that take a value end with an equals sign.
+   */
+  public static final List<String> FIXED_ARGUMENTS = Collections.unmodifiableList(asList("--affected-by=", "--complete",
+      "--debug", "--dry-run", "--help", "--listTargets", "--noColor", "--profile", "--threads=", "--version", "--watch",
+      "--write-lock"));
+
+  /**
+   * Parses the command-line arguments. There are currently 12 fixed arguments:
    * <p>
    * <pre>
    *   --noColor = Disables the colorized output of Savant
@@ -32,6 +45,13 @@ public class DefaultRuntimeConfigurationParser implements RuntimeConfigurationPa
    *   --version = Displays the version
    *   --help = Displays the help message
    *   --listTargets = Lists the build targets
+   *   --profile = Writes a profile of the build to build/reports/savant-profile
+   *   --threads=N = Runs independent targets in parallel using N threads
+   *   --watch = Keeps running and re-runs the targets whose inputs change
+   *   --affected-by=file = Only runs the given targets that are affected by the changed files listed in the file
+   *   --complete partial = Outputs the targets and switches that start with the partial argument that follows it
+   *   --dry-run = Prints the order that the targets would run in without running them
+   *   --write-lock = Resolves the plugins and writes them to the savant.lock file
    * </pre>
    * <p>
    * If any other argument starts with {@code --} then it is considered a switch. Switches can optionally have values
@@ -47,21 +67,38 @@ public class DefaultRuntimeConfigurationParser implements RuntimeConfigurationPa
    *
    * @param arguments The CLI arguments.
    * @return The RuntimeConfiguration and never null.
+   * @throws BuildRunException If one of the fixed arguments has an invalid value.
    */
   @Override
   public RuntimeConfiguration parse(String... arguments) {
     RuntimeConfiguration configuration = new RuntimeConfiguration();
-    for (String argument : arguments) {
-      if (argument.equals("--noColor")) {
+    for (int i = 0; i < arguments.length; i++) {
+      String argument = arguments[i];
+      if (argument.equals("--complete")) {
+        // The partial argument is taken as is because it is usually the start of a switch
+        configuration.complete = i + 1 < arguments.length ? arguments[++i] : "";
+      } else if (argument.equals("--noColor")) {
         configuration.colorizeOutput = false;
       } else if (argument.equals(DEBUG_SWITCH)) {
         configuration.debug = true;
+      } else if (argument.equals("--dry-run")) {
+        configuration.dryRun = true;
       } else if (argument.equals("--help")) {
         configuration.help = true;
       } else if (argument.equals("--listTargets")) {
         configuration.listTargets = true;
+      } else if (argument.equals("--profile")) {
+        configuration.profile = true;
       } else if (argument.equals("--version")) {
         configuration.printVersion = true;
+      } else if (argument.equals("--watch")) {
+        configuration.watch = true;
+      } else if (argument.equals("--write-lock")) {
+        configuration.writeLock = true;
+      } else if (argument.startsWith("--affected-by=")) {
+        configuration.affectedBy = parseAffectedBy(argument.substring("--affected-by=".length()));
+      } else if (argument.startsWith("--threads=")) {
+        configuration.threads = parseThreads(argument.substring("--threads=".length()));
       } else if (argument.startsWith("--")) {
         int equals = argument.indexOf('=');
         if (equals == -1) {
@@ -76,4 +113,25 @@ public class DefaultRuntimeConfigurationParser implements RuntimeConfigurationPa
 
     return configuration;
   }
+
+  private Path parseAffectedBy(String value) {
+    if (value.trim().isEmpty()) {
+      throw new BuildRunException("Invalid value for the --affected-by switch. It must be a file that lists the changed files.");
+    }
+
+    return Paths.get(value);
+  }
+
+  private int parseThreads(String value) {
+    try {
+      int threads = Integer.parseInt(value);
+      if (threads > 0) {
+        return threads;
+      }
+    } catch (NumberFormatException e) {
+      // Fall through
+    }
+
+    throw new BuildRunException("Invalid value [" + value + "] for the --threads switch. It must be a positive number.");
+  }
 }
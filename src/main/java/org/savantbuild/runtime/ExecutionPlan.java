@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2001-2010, Inversoft, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.runtime;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import org.savantbuild.domain.CompactTargetGraph;
+import org.savantbuild.domain.Target;
+
+/**
+ * The order that the targets of a build are run in. The plan is computed once for all of the requested targets from the
+ * {@link CompactTargetGraph} so that the project runners don't need to walk the graph for each requested target.
+ * <p>
+ * The requested targets are run in the order they were given. Each requested target is preceded by the dependencies
+ * that haven't already been run for an earlier requested target. For example, {@code sb clean jar} runs
+ * {@code clean} and then the dependencies of {@code jar} followed by {@code jar}.
+ *
+ * @author Brian Pontarelli
+ */
+public class ExecutionPlan {
+  /**
+   * For each requested target, the index in {@link #steps} after its last step. The steps of the first requested target
+   * are {@code steps[0]} up to {@code steps[ends[0]]} and those of the others start where the previous one ended. This is
+   * the same as the previous end if the requested target was already run for an earlier requested target.
+   */
+  public final int[] ends;
+
+  public final CompactTargetGraph graph;
+
+  /**
+   * The IDs of the requested targets in the {@link #graph}.
+   */
+  public final int[] requested;
+
+  /**
+   * The IDs of the targets to run in the {@link #graph} in the order they are run.
+   */
+  public final int[] steps;
+
+  private ExecutionPlan(CompactTargetGraph graph, int[] requested, int[] steps, int[] ends) {
+    this.graph = graph;
+    this.requested = requested;
+    this.steps = steps;
+    this.ends = ends;
+  }
+
+  /**
+   * Builds the execution plan for the given targets.
+   *
+   * @param graph   The target graph of the project.
+   * @param targets The names of the requested targets in the order they should be run.
+   * @return The plan.
+   * @throws BuildRunException If any of the targets doesn't exist.
+   */
+  public static ExecutionPlan build(CompactTargetGraph graph, Iterable<String> targets) throws BuildRunException {
+    List<Integer> requested = new ArrayList<>();
+    for (String targetName : targets) {
+      int id = graph.id(targetName);
+      if (id == -1) {
+        throw new BuildRunException("Invalid target [" + targetName + "]");
+      }
+
+      requested.add(id);
+    }
+
+    BitSet planned = new BitSet(graph.size());
+    int[] steps = new int[graph.size()];
+    int[] ends = new int[requested.size()];
+    int count = 0;
+    for (int i = 0; i < ends.length; i++) {
+      BitSet closure = graph.closure(requested.get(i));
+      closure.andNot(planned);
+      planned.or(closure);
+      for (int id = closure.nextSetBit(0); id >= 0; id = closure.nextSetBit(id + 1)) {
+        steps[count++] = id;
+      }
+
+      ends[i] = count;
+    }
+
+    int[] ids = new int[requested.size()];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = requested.get(i);
+    }
+
+    int[] trimmed = new int[count];
+    System.arraycopy(steps, 0, trimmed, 0, count);
+    return new ExecutionPlan(graph, ids, trimmed, ends);
+  }
+
+  /**
+   * @return The targets to run in the order they are run.
+   */
+  public List<Target> targets() {
+    List<Target> targets = new ArrayList<>(steps.length);
+    for (int id : steps) {
+      targets.add(graph.targets[id]);
+    }
+
+    return Collections.unmodifiableList(targets);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder build = new StringBuilder();
+    for (int id : steps) {
+      build.append(build.length() == 0 ? "" : " -> ").append(graph.name(id));
+    }
+
+    return build.toString();
+  }
+}
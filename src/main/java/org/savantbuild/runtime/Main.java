@@ -15,9 +15,12 @@
  */
 package org.savantbuild.runtime;
 
+import java.io.IOException;
+import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Map;
 
 import org.savantbuild.dep.LicenseException;
 import org.savantbuild.dep.PublishException;
@@ -28,9 +31,13 @@ import org.savantbuild.dep.workflow.ArtifactMissingException;
 import org.savantbuild.dep.workflow.process.ProcessFailureException;
 import org.savantbuild.output.Output;
 import org.savantbuild.output.SystemOutOutput;
+import org.savantbuild.parser.BuildFileParser;
 import org.savantbuild.parser.DefaultTargetGraphBuilder;
 import org.savantbuild.parser.ParseException;
+import org.savantbuild.parser.WorkspaceParser;
+import org.savantbuild.parser.groovy.CompiledScriptCache;
 import org.savantbuild.parser.groovy.GroovyBuildFileParser;
+import org.savantbuild.parser.groovy.TargetCache;
 import org.savantbuild.plugin.PluginLoadException;
 import org.savantbuild.security.MD5Exception;
 import org.savantbuild.util.CyclicException;
@@ -49,38 +56,133 @@ public class Main {
    * @param args CLI arguments.
    */
   public static void main(String... args) {
+    int exitCode = run(projectDir, args);
+    if (exitCode != 0) {
+      System.exit(exitCode);
+    }
+  }
+
+  /**
+   * Runs a single build of the project in the given directory. This is used by the main method and by the
+   * {@link org.savantbuild.runtime.daemon.BuildDaemon} which runs many builds in the same JVM.
+   *
+   * @param projectDir The project directory.
+   * @param args       CLI arguments.
+   * @return The exit code of the build.
+   */
+  public static int run(Path projectDir, String... args) {
+    return run(projectDir, System.getenv(), args);
+  }
+
+  /**
+   * Runs a single build of the project in the given directory using the given environment variables for the build file.
+   * The {@link org.savantbuild.runtime.daemon.BuildDaemon} uses this to run builds with the environment of the client.
+   *
+   * @param projectDir  The project directory.
+   * @param environment The environment variables.
+   * @param args        CLI arguments.
+   * @return The exit code of the build.
+   */
+  public static int run(Path projectDir, Map<String, String> environment, String... args) {
     RuntimeConfigurationParser runtimeConfigurationParser = new DefaultRuntimeConfigurationParser();
-    RuntimeConfiguration runtimeConfiguration = runtimeConfigurationParser.parse(args);
+    RuntimeConfiguration runtimeConfiguration;
+    try {
+      runtimeConfiguration = runtimeConfigurationParser.parse(args);
+    } catch (BuildRunException e) {
+      System.err.println(e.getMessage());
+      return 1;
+    }
+
+    runtimeConfiguration.environment = environment;
+
+    // Parallel builds buffer the output of each target so that targets aren't interleaved. Serial builds write directly
+    // so that the output of Savant stays in order with anything that writes to System.out directly (i.e. forked processes)
     Output output = new SystemOutOutput(runtimeConfiguration.colorizeOutput);
-    if (runtimeConfiguration.debug) {
-      output.enableDebug();
+    BufferedOutput bufferedOutput = runtimeConfiguration.threads > 1 ? new BufferedOutput(output) : null;
+    if (bufferedOutput != null) {
+      output = bufferedOutput;
+    }
+
+    try {
+      if (runtimeConfiguration.debug) {
+        output.enableDebug();
+      }
+
+      return run(projectDir, runtimeConfiguration, output);
+    } finally {
+      if (bufferedOutput != null) {
+        bufferedOutput.close();
+      }
+    }
+  }
+
+  private static int run(Path projectDir, RuntimeConfiguration runtimeConfiguration, Output output) {
+    // A workspace file means that this is a multi-project build
+    Path buildFile = projectDir.resolve(WorkspaceParser.WORKSPACE_FILE);
+    boolean workspace = Files.isRegularFile(buildFile);
+    if (!workspace) {
+      buildFile = projectDir.resolve("build.savant");
     }
 
-    Path buildFile = projectDir.resolve("build.savant");
     if (!Files.isRegularFile(buildFile) || !Files.isReadable(buildFile)) {
       output.error("Build file [build.savant] is missing or not readable.");
-      System.exit(1);
+      return 1;
     }
 
     try {
-      BuildRunner buildRunner = new DefaultBuildRunner(output, new GroovyBuildFileParser(output, new DefaultTargetGraphBuilder()), new DefaultProjectRunner(output));
+      ProjectRunner projectRunner = runtimeConfiguration.threads > 1 ? new ParallelProjectRunner(output, runtimeConfiguration.threads) : new DefaultProjectRunner(output);
+      // Development builds don't have a version, so they always compile the build file
+      String version = compiledVersion();
+      CompiledScriptCache compiledScriptCache = version != null ? new CompiledScriptCache(output, CompiledScriptCache.DEFAULT_DIRECTORY, version) : null;
+      TargetCache targetCache = new TargetCache(output, TargetCache.DEFAULT_DIRECTORY);
+      BuildFileParser buildFileParser = new GroovyBuildFileParser(output, new DefaultTargetGraphBuilder(), compiledScriptCache, targetCache);
+      if (workspace) {
+        buildFileParser = new WorkspaceParser(output, buildFileParser, new DefaultTargetGraphBuilder());
+      }
+
+      BuildRunner buildRunner = new DefaultBuildRunner(output, buildFileParser, projectRunner);
       buildRunner.run(buildFile, runtimeConfiguration);
+      return 0;
     } catch (ArtifactMetaDataMissingException | ArtifactMissingException | BuildRunException | BuildFailureException |
         CompatibilityException | LicenseException | MD5Exception | ParseException | PluginLoadException |
         ProcessFailureException | PublishException | VersionException e) {
       int lineNumber = determineLineNumber(e);
       output.error(e.getMessage() + (lineNumber > 0 ? " Error occurred on line [" + lineNumber + "]" : ""));
       output.debug(e);
-      System.exit(1);
+      return 1;
     } catch (CyclicException e) {
       output.error("Your dependencies appear to have cycle. The root message is [" + e.getMessage() + "]");
       output.debug(e);
-      System.exit(1);
+      return 1;
     } catch (Throwable t) {
       output.error("Build failed due to an exception or error." + (runtimeConfiguration.debug ? "" : " Enable debug using the %s switch to see the stack trace."), RuntimeConfiguration.DEBUG_SWITCH);
       output.debug(t);
-      System.exit(1);
+      return 1;
+    }
+  }
+
+  /**
+   * Determines the version of Savant that build files are compiled against. Integration builds all have the same
+   * implementation version, so this includes the size and modification time of the Savant JAR as well.
+   *
+   * @return The version or null if this is a development build that doesn't have a version.
+   */
+  public static String compiledVersion() {
+    String version = Main.class.getPackage().getImplementationVersion();
+    if (version == null) {
+      return null;
     }
+
+    try {
+      Path jar = Paths.get(Main.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+      if (Files.isRegularFile(jar)) {
+        return version + "-" + Files.size(jar) + "-" + Files.getLastModifiedTime(jar).toMillis();
+      }
+    } catch (IOException | SecurityException | URISyntaxException e) {
+      // Fall through and don't cache since the JAR can't be identified
+    }
+
+    return null;
   }
 
   private static int determineLineNumber(Exception e) {
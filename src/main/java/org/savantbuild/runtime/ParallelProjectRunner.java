@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.runtime;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+
+import org.savantbuild.domain.CompactTargetGraph;
+import org.savantbuild.domain.Project;
+import org.savantbuild.domain.Target;
+import org.savantbuild.output.Output;
+
+/**
+ * Project runner that executes the target graph using a work-stealing pool. A target is started as soon as all of the
+ * targets it depends on have finished, which allows independent targets (i.e. {@code doc} and {@code test}) to run at
+ * the same time.
+ * <p>
+ * The targets the user requested are run in the order they were given, just like the {@link DefaultProjectRunner}. Every
+ * target that is first run for a requested target waits for the earlier requested targets. This ensures that commands
+ * like {@code sb compile clean jar} run {@code jar} after {@code clean} even though {@code jar} only depends on
+ * {@code compile}. The dependencies of each requested target still run in parallel.
+ *
+ * @author Brian Pontarelli
+ */
+public class ParallelProjectRunner extends DefaultProjectRunner {
+  private final int threads;
+
+  public ParallelProjectRunner(Output output, int threads) {
+    super(output);
+    this.threads = threads;
+  }
+
+  /**
+   * Runs the steps of the execution plan by scheduling all of them on the pool and then waiting for the requested targets
+   * in the order they were given. A target is only ever run once, even if multiple targets depend on it. If any target
+   * fails, no new targets are started and the failure is thrown once the targets that are already running have finished.
+   *
+   * @param project The project.
+   * @param plan    The execution plan.
+   * @param filter  Determines which targets are run.
+   */
+  @Override
+  public void run(Project project, ExecutionPlan plan, Predicate<Target> filter) {
+    CompactTargetGraph graph = plan.graph;
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    CompletableFuture<?>[] scheduled = new CompletableFuture<?>[graph.size()];
+    try {
+      int step = 0;
+      for (int i = 0; i < plan.requested.length; i++) {
+        // The steps are in topological order, so the dependencies of each target are always scheduled first
+        for (; step < plan.ends[i]; step++) {
+          int id = plan.steps[step];
+          scheduled[id] = schedule(project, graph, id, filter, scheduled, plan.requested, i, pool, failure);
+        }
+      }
+
+      for (int id : plan.requested) {
+        await(scheduled[id], failure);
+      }
+    } finally {
+      pool.shutdown();
+      try {
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Runs the target and keeps its output together so that it isn't interleaved with the output of the targets that are
+   * running at the same time.
+   *
+   * @param project The project.
+   * @param target  The target to run.
+   */
+  @Override
+  protected void runTarget(Project project, Target target) {
+    BufferedOutput bufferedOutput = output instanceof BufferedOutput ? (BufferedOutput) output : null;
+    if (bufferedOutput != null) {
+      bufferedOutput.startBlock();
+    }
+
+    try {
+      super.runTarget(project, target);
+    } finally {
+      if (bufferedOutput != null) {
+        bufferedOutput.endBlock();
+      }
+    }
+  }
+
+  private void await(CompletableFuture<?> future, AtomicReference<Throwable> failure) {
+    try {
+      future.join();
+    } catch (CompletionException | CancellationException e) {
+      // Use the original failure since the future might have completed with the cancellation of a sibling target
+      Throwable cause = failure.get() != null ? failure.get() : e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+
+      throw new BuildRunException("Build failed due to an exception [" + cause + "]");
+    }
+  }
+
+  private CompletableFuture<?> schedule(Project project, CompactTargetGraph graph, int id, Predicate<Target> filter,
+                                        CompletableFuture<?>[] scheduled, int[] requested, int index,
+                                        ExecutorService pool, AtomicReference<Throwable> failure) {
+    // The target waits for its dependencies and the earlier requested targets (i.e. the jar in sb compile clean jar waits
+    // for the clean)
+    int edges = graph.offsets[id + 1] - graph.offsets[id];
+    CompletableFuture<?>[] dependencies = new CompletableFuture<?>[edges + index];
+    for (int i = 0; i < edges; i++) {
+      dependencies[i] = scheduled[graph.edges[graph.offsets[id] + i]];
+    }
+
+    for (int i = 0; i < index; i++) {
+      dependencies[edges + i] = scheduled[requested[i]];
+    }
+
+    Target target = graph.targets[id];
+    return CompletableFuture.allOf(dependencies)
+                            .thenRunAsync(() -> {
+                              if (failure.get() != null) {
+                                throw new CancellationException("Target [" + target.name + "] was skipped because another target failed");
+                              }
+
+                              if (!filter.test(target)) {
+                                return;
+                              }
+
+                              try {
+                                runTarget(project, target);
+                              } catch (RuntimeException | Error e) {
+                                failure.compareAndSet(null, e);
+                                throw e;
+                              }
+                            }, pool);
+  }
+}
@@ -15,6 +15,8 @@
  */
 package org.savantbuild.runtime;
 
+import java.util.function.Predicate;
+
 import org.savantbuild.dep.LicenseException;
 import org.savantbuild.dep.domain.CompatibilityException;
 import org.savantbuild.dep.domain.VersionException;
@@ -24,6 +26,7 @@ import org.savantbuild.dep.workflow.ArtifactMetaDataMissingException;
 import org.savantbuild.dep.workflow.ArtifactMissingException;
 import org.savantbuild.dep.workflow.process.ProcessFailureException;
 import org.savantbuild.domain.Project;
+import org.savantbuild.domain.Target;
 import org.savantbuild.parser.ParseException;
 
 /**
@@ -54,4 +57,55 @@ public interface ProjectRunner {
   void run(Project project, Iterable<String> targets) throws ArtifactMetaDataMissingException, ArtifactMissingException,
       BuildRunException, BuildFailureException, CompatibilityException, CyclicException, LicenseException, MD5Exception,
       ParseException, ProcessFailureException, VersionException;
+
+  /**
+   * Executes the given targets on the given project, but only runs the targets (including the dependencies of the given
+   * targets) that the filter accepts. The other targets are treated as if they had already run. This is used to re-run
+   * only the targets that are affected by changed files.
+   *
+   * @param project The project.
+   * @param targets The targets to run.
+   * @param filter  Determines which targets are run.
+   * @throws ArtifactMetaDataMissingException If any dependencies of the project are missing an AMD file in the
+   *                                          repository or local cache.
+   * @throws ArtifactMissingException         If any dependencies of the project are missing in the repository or local
+   *                                          cache.
+   * @throws BuildRunException                If the build can not be run (internally not due to a failure of the build
+   *                                          itself).
+   * @throws BuildFailureException            If the build fails while running.
+   * @throws CompatibilityException           If the project has incompatible versions of a dependency.
+   * @throws CyclicException                  If the project has cyclic dependencies.
+   * @throws LicenseException                 If the project has a dependency with an invalid license.
+   * @throws MD5Exception                     If a dependency is corrupt.
+   * @throws ProcessFailureException          If the downloading of a dependency fails.
+   * @throws VersionException                 If any of the versions are not semantic.
+   */
+  void run(Project project, Iterable<String> targets, Predicate<Target> filter) throws ArtifactMetaDataMissingException,
+      ArtifactMissingException, BuildRunException, BuildFailureException, CompatibilityException, CyclicException,
+      LicenseException, MD5Exception, ParseException, ProcessFailureException, VersionException;
+
+  /**
+   * Executes the steps of the given execution plan on the given project, but only runs the targets that the filter
+   * accepts.
+   *
+   * @param project The project.
+   * @param plan    The execution plan, which must have been built from the target graph of the project.
+   * @param filter  Determines which targets are run.
+   * @throws ArtifactMetaDataMissingException If any dependencies of the project are missing an AMD file in the
+   *                                          repository or local cache.
+   * @throws ArtifactMissingException         If any dependencies of the project are missing in the repository or local
+   *                                          cache.
+   * @throws BuildRunException                If the build can not be run (internally not due to a failure of the build
+   *                                          itself).
+   * @throws BuildFailureException            If the build fails while running.
+   * @throws CompatibilityException           If the project has incompatible versions of a dependency.
+   * @throws CyclicException                  If the project has cyclic dependencies.
+   * @throws LicenseException                 If the project has a dependency with an invalid license.
+   * @throws MD5Exception                     If a dependency is corrupt.
+   * @throws ProcessFailureException          If the downloading of a dependency fails.
+   * @throws VersionException                 If any of the versions are not semantic.
+   */
+  void run(Project project, ExecutionPlan plan, Predicate<Target> filter) throws ArtifactMetaDataMissingException,
+      ArtifactMissingException, BuildRunException, BuildFailureException, CompatibilityException, CyclicException,
+      LicenseException, MD5Exception, ProcessFailureException, VersionException;
 }
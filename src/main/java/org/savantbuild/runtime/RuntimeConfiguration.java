@@ -15,9 +15,11 @@
  */
 package org.savantbuild.runtime;
 
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Runtime configuration for a Savant build run.
@@ -31,6 +33,18 @@ public class RuntimeConfiguration {
    */
   public static final String DEBUG_SWITCH = "--debug";
 
+  /**
+   * A file that lists changed files, one per line (i.e. the output of {@code git diff --name-only}). If this is set,
+   * only the requested targets that are affected by the changed files are run (along with all of their dependencies).
+   * If this is null, all of the requested targets are run.
+   */
+  public Path affectedBy;
+
+  /**
+   * The partial command-line argument to complete or null if the arguments aren't being completed.
+   */
+  public String complete;
+
   /**
    * Determines if the output should be colorized.
    */
@@ -41,6 +55,17 @@ public class RuntimeConfiguration {
    */
   public boolean debug;
 
+  /**
+   * Determines if the execution plan of the targets should be printed rather than running the targets.
+   */
+  public boolean dryRun;
+
+  /**
+   * The environment variables that the build file sees as {@code ENV}. This is the environment of the JVM except when
+   * the build is run by the daemon, which uses the environment of the client.
+   */
+  public Map<String, String> environment = System.getenv();
+
   /**
    * Determines if the user needs help.
    */
@@ -51,11 +76,22 @@ public class RuntimeConfiguration {
    */
   public boolean listTargets;
 
+  /**
+   * Determines if the build should be profiled. If this is true, a profile report is written to
+   * {@code build/reports/savant-profile} at the end of the build.
+   */
+  public boolean profile;
+
   /**
    * The command-line switches.
    */
   public Switches switches = new Switches();
 
+  /**
+   * The number of threads used to run the targets. If this is greater than 1, independent targets are run in parallel.
+   */
+  public int threads = 1;
+
   /**
    * The list of targets to execute (in order).
    */
@@ -66,6 +102,16 @@ public class RuntimeConfiguration {
    */
   public boolean printVersion;
 
+  /**
+   * Determines if the plugins should be resolved and written to the {@code savant.lock} file of the project.
+   */
+  public boolean writeLock;
+
+  /**
+   * Determines if the build should keep running and re-run the targets that are affected when their inputs change.
+   */
+  public boolean watch;
+
   public RuntimeConfiguration() {
   }
 
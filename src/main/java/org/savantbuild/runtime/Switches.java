@@ -21,6 +21,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A class that models command-line switches that might have values or not.
@@ -30,6 +31,12 @@ import java.util.Set;
 public class Switches {
   public Set<String> booleanSwitches = new HashSet<>();
 
+  /**
+   * The names of the switches that the build file and the plugins checked for. These are used to complete the switch
+   * names on the command-line (see {@link CompletionIndex}).
+   */
+  public Set<String> queried = ConcurrentHashMap.newKeySet();
+
   public Map<String, List<String>> valueSwitches = new HashMap<>();
 
   /**
@@ -64,6 +71,7 @@ public class Switches {
    * @return True if the switch is present (either --foo or --foo=bar).
    */
   public boolean has(String name) {
+    queried.add(name);
     return booleanSwitches.contains(name) || valueSwitches.containsKey(name);
   }
 
@@ -75,6 +83,7 @@ public class Switches {
    * @return True if the switch has the value.
    */
   public boolean hasValue(String name, String value) {
+    queried.add(name);
     List<String> values = valueSwitches.get(name);
     return values != null && values.contains(value);
   }
@@ -86,6 +95,7 @@ public class Switches {
    * @return The values or null.
    */
   public String[] values(String name) {
+    queried.add(name);
     List<String> values = valueSwitches.get(name);
     if (values == null) {
       return null;
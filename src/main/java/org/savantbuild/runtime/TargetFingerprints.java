@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.runtime;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.savantbuild.cache.FileSnapshots;
+import org.savantbuild.cache.Hashes;
+import org.savantbuild.domain.Target;
+import org.savantbuild.output.Output;
+
+/**
+ * Stores the fingerprints of the inputs and outputs of each target after it runs successfully. The fingerprints are
+ * stored in the project's {@code build/.savant/targets} directory, which means that cleaning the project always causes
+ * every target to run again.
+ * <p>
+ * A fingerprint is a SHA-256 hash of the paths and content hashes of all of the files in the given files and
+ * directories. The content hashes come from the project's {@link FileSnapshots}, so unchanged files aren't read again.
+ * The hash of the build file is stored with the fingerprints, so that changing the build file (i.e. the body of a
+ * target) always causes the targets to run again. Failures reading or writing fingerprints are never fatal, they just
+ * cause the target to run.
+ *
+ * @author Brian Pontarelli
+ */
+public class TargetFingerprints {
+  public static final String DIRECTORY = "build/.savant/targets";
+
+  private final Path buildFile;
+
+  private final Path directory;
+
+  private final FileSnapshots fileSnapshots;
+
+  private final Output output;
+
+  private final Path projectDirectory;
+
+  public TargetFingerprints(Output output, Path projectDirectory, Path buildFile, FileSnapshots fileSnapshots) {
+    this.output = output;
+    this.projectDirectory = projectDirectory;
+    this.buildFile = buildFile;
+    this.fileSnapshots = fileSnapshots;
+    this.directory = projectDirectory.resolve(DIRECTORY);
+  }
+
+  /**
+   * Calculates the fingerprint of the given files and directories. Directories are walked recursively in parallel.
+   * Missing files are included in the fingerprint so that deleting a file changes it. Paths inside the project are
+   * fingerprinted relative to the project directory so that the fingerprint is the same for every checkout of the
+   * project.
+   *
+   * @param paths The files and directories.
+   * @return The fingerprint or null if the files could not be read.
+   */
+  public String fingerprint(List<Path> paths) {
+    try {
+      MessageDigest digest = Hashes.digest("SHA-256");
+      for (Path path : paths) {
+        update(digest, "path:" + (path.startsWith(projectDirectory) ? projectDirectory.relativize(path) : path));
+        if (Files.isDirectory(path)) {
+          for (Map.Entry<Path, String> file : fileSnapshots.snapshot(path).entrySet()) {
+            update(digest, "file:" + path.relativize(file.getKey()));
+            update(digest, "hash:" + file.getValue());
+          }
+        } else if (Files.isRegularFile(path)) {
+          update(digest, "hash:" + fileSnapshots.hash(path));
+        } else {
+          update(digest, "missing");
+        }
+      }
+
+      return Hashes.hex(digest.digest());
+    } catch (IOException e) {
+      output.debug("Unable to fingerprint the files %s", paths);
+      output.debug(e);
+      return null;
+    }
+  }
+
+  /**
+   * Determines if the target is up-to-date. A target is up-to-date if it declares outputs, it ran successfully before
+   * and neither the build file nor the fingerprints of its inputs and outputs have changed since then.
+   *
+   * @param target            The target.
+   * @param inputsFingerprint The current fingerprint of the target's inputs.
+   * @return True if the target is up-to-date.
+   */
+  public boolean isUpToDate(Target target, String inputsFingerprint) {
+    if (target.outputs.isEmpty() || inputsFingerprint == null) {
+      return false;
+    }
+
+    Path file = file(target);
+    if (!Files.isRegularFile(file)) {
+      return false;
+    }
+
+    Properties properties = new Properties();
+    try (InputStream is = Files.newInputStream(file)) {
+      properties.load(is);
+    } catch (IOException e) {
+      output.debug("Unable to read the fingerprints of the target [%s]", target.name);
+      output.debug(e);
+      return false;
+    }
+
+    String buildFileHash = buildFileHash();
+    return buildFileHash != null && buildFileHash.equals(properties.getProperty("buildFile")) &&
+        inputsFingerprint.equals(properties.getProperty("inputs")) &&
+        properties.getProperty("outputs") != null && properties.getProperty("outputs").equals(fingerprint(target.outputs));
+  }
+
+  /**
+   * Removes the fingerprints of the target. This is called before a target runs so that a failure never leaves the
+   * fingerprints of an older run behind.
+   *
+   * @param target The target.
+   */
+  public void remove(Target target) {
+    try {
+      Files.deleteIfExists(file(target));
+    } catch (IOException e) {
+      output.debug("Unable to delete the fingerprints of the target [%s]", target.name);
+      output.debug(e);
+    }
+  }
+
+  /**
+   * Stores the fingerprints of the target after it ran successfully. The outputs are fingerprinted by this method.
+   *
+   * @param target            The target.
+   * @param inputsFingerprint The fingerprint of the target's inputs, which was calculated before the target ran.
+   */
+  public void save(Target target, String inputsFingerprint) {
+    String outputsFingerprint = fingerprint(target.outputs);
+    String buildFileHash = buildFileHash();
+    if (inputsFingerprint == null || outputsFingerprint == null || buildFileHash == null) {
+      return;
+    }
+
+    Properties properties = new Properties();
+    properties.setProperty("buildFile", buildFileHash);
+    properties.setProperty("inputs", inputsFingerprint);
+    properties.setProperty("outputs", outputsFingerprint);
+    try {
+      Files.createDirectories(directory);
+      Path temp = Files.createTempFile(directory, "target", ".properties");
+      try (OutputStream os = Files.newOutputStream(temp)) {
+        properties.store(os, "Savant target fingerprints");
+      }
+
+      Files.move(temp, file(target), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      output.debug("Unable to write the fingerprints of the target [%s]", target.name);
+      output.debug(e);
+    }
+  }
+
+  private String buildFileHash() {
+    if (buildFile == null) {
+      return "";
+    }
+
+    try {
+      return fileSnapshots.hash(buildFile);
+    } catch (IOException e) {
+      output.debug("Unable to hash the build file [%s]", buildFile);
+      output.debug(e);
+      return null;
+    }
+  }
+
+  private Path file(Target target) {
+    return directory.resolve(target.name.replaceAll("[^A-Za-z0-9._-]", "_") + ".properties");
+  }
+
+  private void update(MessageDigest digest, String value) {
+    digest.update(value.getBytes(StandardCharsets.UTF_8));
+    digest.update((byte) 0);
+  }
+}
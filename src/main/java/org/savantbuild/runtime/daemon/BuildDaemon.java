@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.runtime.daemon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.savantbuild.cache.Hashes;
+import org.savantbuild.output.Output;
+import org.savantbuild.output.SystemOutOutput;
+import org.savantbuild.runtime.Main;
+
+/**
+ * A long-lived Savant process that runs builds for the {@link DaemonClient}. Since the JVM stays up between builds, the
+ * JIT compiled code, the Groovy runtime, the compiled build files and the plugin class loaders are reused by each build.
+ * <p>
+ * Builds are run one at a time because the output of each build is captured by replacing {@link System#out} and
+ * {@link System#err}. The daemon exits when it is stopped by a client or when it hasn't run a build for the idle
+ * timeout.
+ * <p>
+ * The working directory and the environment variables of the daemon can't be changed. The build file sees the
+ * environment variables of the client, but the daemon refuses to run builds for clients that have a different working
+ * directory or different {@link DaemonProtocol#DAEMON_VARIABLES}. This only happens if a client connects to the wrong
+ * daemon, since each working directory and environment has its own daemon file.
+ * <p>
+ * The daemon doesn't keep the parsed projects between builds, because the plugins and targets of a project hold state
+ * from the build that ran them. The compiled build files and the cached targets are reused instead.
+ *
+ * @author Brian Pontarelli
+ */
+public class BuildDaemon {
+  public static final long DEFAULT_IDLE_TIMEOUT = TimeUnit.HOURS.toMillis(3);
+
+  private final Path directory;
+
+  private final long idleTimeout;
+
+  private final Output output;
+
+  private final String token;
+
+  public BuildDaemon(Output output, Path directory, long idleTimeout) {
+    this.output = output;
+    this.directory = directory;
+    this.idleTimeout = idleTimeout;
+
+    byte[] bytes = new byte[16];
+    new SecureRandom().nextBytes(bytes);
+    this.token = Hashes.hex(bytes);
+  }
+
+  /**
+   * Starts the daemon using the default directory and idle timeout.
+   *
+   * @param args Not used.
+   * @throws IOException If the daemon could not be started.
+   */
+  public static void main(String... args) throws IOException {
+    new BuildDaemon(new SystemOutOutput(false), DaemonProtocol.DEFAULT_DIRECTORY, DEFAULT_IDLE_TIMEOUT).run();
+  }
+
+  /**
+   * Binds the server socket, writes out the daemon file and then runs builds until the daemon is stopped or times out.
+   *
+   * @throws IOException If the server socket could not be bound or the daemon file could not be written.
+   */
+  public void run() throws IOException {
+    Path daemonFile = DaemonProtocol.daemonFile(directory);
+    try (ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+      serverSocket.setSoTimeout((int) idleTimeout);
+      writeDaemonFile(daemonFile, serverSocket.getLocalPort());
+
+      boolean running = true;
+      while (running) {
+        try (Socket socket = serverSocket.accept()) {
+          running = handle(socket);
+        } catch (SocketTimeoutException e) {
+          running = false;
+        } catch (IOException e) {
+          // The client went away in the middle of the build. Keep running for the next client
+          output.debug(e);
+        }
+      }
+    } finally {
+      Properties properties = DaemonProtocol.readDaemonFile(directory);
+      if (properties != null && token.equals(properties.getProperty("token"))) {
+        Files.deleteIfExists(daemonFile);
+      }
+    }
+  }
+
+  private boolean handle(Socket socket) throws IOException {
+    DataInputStream dis = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+    DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    if (!token.equals(dis.readUTF())) {
+      return true;
+    }
+
+    int request = dis.readInt();
+    if (request == DaemonProtocol.REQUEST_STOP) {
+      writeExit(dos, 0);
+      return false;
+    }
+
+    Path projectDir = Paths.get(dis.readUTF());
+    Path workingDir = Paths.get(dis.readUTF());
+    Map<String, String> environment = new HashMap<>();
+    int variables = dis.readInt();
+    for (int i = 0; i < variables; i++) {
+      environment.put(dis.readUTF(), dis.readUTF());
+    }
+
+    String[] args = new String[dis.readInt()];
+    for (int i = 0; i < args.length; i++) {
+      args[i] = dis.readUTF();
+    }
+
+    if (!workingDir.equals(Paths.get("").toAbsolutePath()) || !DaemonProtocol.sameEnvironment(environment, System.getenv())) {
+      synchronized (dos) {
+        dos.writeByte(DaemonProtocol.REFUSED_FRAME);
+        dos.writeInt(0);
+        dos.flush();
+      }
+      return true;
+    }
+
+    PrintStream originalOut = System.out;
+    PrintStream originalErr = System.err;
+    PrintStream out = new PrintStream(new DaemonProtocol.FrameOutputStream(dos, DaemonProtocol.OUTPUT_FRAME), true);
+    PrintStream err = new PrintStream(new DaemonProtocol.FrameOutputStream(dos, DaemonProtocol.ERROR_FRAME), true);
+    int exitCode;
+    System.setOut(out);
+    System.setErr(err);
+    try {
+      exitCode = Main.run(projectDir, Collections.unmodifiableMap(environment), args);
+    } finally {
+      out.flush();
+      err.flush();
+      System.setOut(originalOut);
+      System.setErr(originalErr);
+    }
+
+    writeExit(dos, exitCode);
+    return true;
+  }
+
+  private void writeDaemonFile(Path daemonFile, int port) throws IOException {
+    Properties properties = new Properties();
+    properties.setProperty("port", Integer.toString(port));
+    properties.setProperty("token", token);
+
+    Files.createDirectories(directory);
+    Path temp = Files.createTempFile(directory, "daemon", ".properties");
+    try {
+      Files.setPosixFilePermissions(temp, PosixFilePermissions.fromString("rw-------"));
+    } catch (UnsupportedOperationException e) {
+      // Not a POSIX file system
+    }
+
+    try (OutputStream os = Files.newOutputStream(temp)) {
+      properties.store(os, "Savant build daemon");
+    }
+
+    Files.move(temp, daemonFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  private void writeExit(DataOutputStream dos, int exitCode) throws IOException {
+    synchronized (dos) {
+      dos.writeByte(DaemonProtocol.EXIT_FRAME);
+      dos.writeInt(exitCode);
+      dos.flush();
+    }
+  }
+}
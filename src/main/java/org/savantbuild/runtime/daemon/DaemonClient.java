@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.runtime.daemon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.ProcessBuilder.Redirect;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * The thin client for the {@link BuildDaemon}. This sends the CLI arguments, the project directory and the working
+ * directory and environment of the client to the daemon and streams the output of the build back to the console. If
+ * the daemon isn't running, this starts it.
+ * <p>
+ * Calling the client with the single argument {@code --stop} stops the daemon.
+ *
+ * @author Brian Pontarelli
+ */
+public class DaemonClient {
+  public static final long START_TIMEOUT = 30000;
+
+  private final Path directory;
+
+  private final PrintStream err;
+
+  private final PrintStream out;
+
+  public DaemonClient(Path directory, PrintStream out, PrintStream err) {
+    this.directory = directory;
+    this.out = out;
+    this.err = err;
+  }
+
+  /**
+   * The main method.
+   *
+   * @param args CLI arguments.
+   */
+  public static void main(String... args) {
+    DaemonClient client = new DaemonClient(DaemonProtocol.DEFAULT_DIRECTORY, System.out, System.err);
+    System.exit(client.run(Paths.get("").toAbsolutePath(), args));
+  }
+
+  /**
+   * Runs the build on the daemon for the working directory and environment of this client, starting it if necessary. If
+   * the daemon refuses the build because it was started from a different working directory or environment, it is
+   * stopped and a new daemon is started for this client.
+   *
+   * @param projectDir The project directory.
+   * @param args       The CLI arguments.
+   * @return The exit code of the build.
+   */
+  public int run(Path projectDir, String... args) {
+    try {
+      if (args.length == 1 && args[0].equals("--stop")) {
+        if (!stopDaemon()) {
+          out.println("The Savant daemon is not running");
+        }
+        return 0;
+      }
+
+      Integer exitCode = build(projectDir, args);
+      if (exitCode == null) {
+        stopDaemon();
+        exitCode = build(projectDir, args);
+      }
+
+      if (exitCode == null) {
+        err.println("The Savant daemon refused to run the build because it was started from a different working directory or environment");
+        return 1;
+      }
+
+      return exitCode;
+    } catch (EOFException e) {
+      err.println("The Savant daemon stopped in the middle of the build. Check the log in [" + directory.resolve("daemon.log") + "]");
+      return 1;
+    } catch (IOException e) {
+      err.println("Unable to communicate with the Savant daemon. The error was [" + e.getMessage() + "]");
+      return 1;
+    }
+  }
+
+  /**
+   * Sends the build to the daemon, starting the daemon if it isn't running.
+   *
+   * @return The exit code of the build or null if the daemon refused to run the build.
+   */
+  private Integer build(Path projectDir, String... args) throws IOException {
+    try (Socket socket = connect(true)) {
+      Properties properties = DaemonProtocol.readDaemonFile(directory);
+      DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      dos.writeUTF(properties.getProperty("token"));
+      dos.writeInt(DaemonProtocol.REQUEST_BUILD);
+      dos.writeUTF(projectDir.toAbsolutePath().toString());
+      dos.writeUTF(Paths.get("").toAbsolutePath().toString());
+      Map<String, String> environment = System.getenv();
+      dos.writeInt(environment.size());
+      for (Map.Entry<String, String> variable : environment.entrySet()) {
+        dos.writeUTF(variable.getKey());
+        dos.writeUTF(variable.getValue());
+      }
+
+      dos.writeInt(args.length);
+      for (String arg : args) {
+        dos.writeUTF(arg);
+      }
+      dos.flush();
+
+      return readResponse(new DataInputStream(new BufferedInputStream(socket.getInputStream())));
+    }
+  }
+
+  private Socket connect(boolean start) throws IOException {
+    Socket socket = connectToRunningDaemon();
+    if (socket != null || !start) {
+      return socket;
+    }
+
+    // Lock while starting the daemon so that clients started at the same time don't all start a daemon
+    Files.createDirectories(directory);
+    try (FileChannel channel = FileChannel.open(DaemonProtocol.lockFile(directory), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+         FileLock lock = channel.lock()) {
+      socket = connectToRunningDaemon();
+      if (socket != null) {
+        return socket;
+      }
+
+      startDaemon();
+
+      long end = System.currentTimeMillis() + START_TIMEOUT;
+      while (System.currentTimeMillis() < end) {
+        socket = connectToRunningDaemon();
+        if (socket != null) {
+          return socket;
+        }
+
+        try {
+          Thread.sleep(50);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+      }
+    }
+
+    throw new IOException("The Savant daemon did not start within [" + START_TIMEOUT + "] milliseconds");
+  }
+
+  private Socket connectToRunningDaemon() throws IOException {
+    Properties properties = DaemonProtocol.readDaemonFile(directory);
+    if (properties != null) {
+      try {
+        return new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(properties.getProperty("port")));
+      } catch (ConnectException e) {
+        // The daemon died without cleaning up
+        Files.deleteIfExists(DaemonProtocol.daemonFile(directory));
+      }
+    }
+
+    return null;
+  }
+
+  private Integer readResponse(DataInputStream dis) throws IOException {
+    while (true) {
+      byte type = dis.readByte();
+      int value = dis.readInt();
+      if (type == DaemonProtocol.EXIT_FRAME) {
+        out.flush();
+        err.flush();
+        return value;
+      } else if (type == DaemonProtocol.REFUSED_FRAME) {
+        return null;
+      }
+
+      byte[] bytes = new byte[value];
+      dis.readFully(bytes);
+      PrintStream stream = type == DaemonProtocol.ERROR_FRAME ? err : out;
+      stream.write(bytes, 0, bytes.length);
+      stream.flush();
+    }
+  }
+
+  private void startDaemon() throws IOException {
+    // The daemon inherits the working directory and environment of this client, which means it uses the same daemon file
+    Files.createDirectories(directory);
+    Path java = Paths.get(System.getProperty("java.home"), "bin", "java");
+    new ProcessBuilder(java.toString(), "-cp", System.getProperty("java.class.path"), BuildDaemon.class.getName())
+        .redirectErrorStream(true)
+        .redirectOutput(Redirect.appendTo(directory.resolve("daemon.log").toFile()))
+        .start();
+  }
+
+  /**
+   * Stops the running daemon.
+   *
+   * @return True if the daemon was running.
+   */
+  private boolean stopDaemon() throws IOException {
+    String token;
+    try (Socket socket = connect(false)) {
+      if (socket == null) {
+        return false;
+      }
+
+      token = DaemonProtocol.readDaemonFile(directory).getProperty("token");
+      DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      dos.writeUTF(token);
+      dos.writeInt(DaemonProtocol.REQUEST_STOP);
+      dos.flush();
+      readResponse(new DataInputStream(new BufferedInputStream(socket.getInputStream())));
+    }
+
+    // The daemon deletes its file when it exits, but a new daemon might be started before that happens
+    Properties properties = DaemonProtocol.readDaemonFile(directory);
+    if (properties != null && token.equals(properties.getProperty("token"))) {
+      Files.deleteIfExists(DaemonProtocol.daemonFile(directory));
+    }
+
+    return true;
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.runtime.daemon;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+
+import org.savantbuild.cache.Hashes;
+import org.savantbuild.runtime.Main;
+
+/**
+ * The constants and helpers for the protocol between the {@link DaemonClient} and the {@link BuildDaemon}.
+ * <p>
+ * The daemon listens on a loopback socket. The port and a secret token are written to the daemon file in
+ * {@code ~/.savant/daemon}. There is a daemon for each working directory and value of the {@link #DAEMON_VARIABLES},
+ * since the JVM can't change them, so opening a new terminal or building another project never stops a running daemon.
+ * <p>
+ * A request is the token, a request type and then for builds, the project directory, the working directory and
+ * environment variables of the client and the CLI arguments. The build file sees the environment variables of the
+ * client. The response is a sequence of frames. Each frame is a type byte followed by an int and for output frames, the
+ * bytes of the output. The last frame is always the exit frame, which contains the exit code of the build, or the
+ * refused frame if the daemon can't run the build because it was started from a different working directory or
+ * environment.
+ *
+ * @author Brian Pontarelli
+ */
+public final class DaemonProtocol {
+  /**
+   * The environment variables that are used by the JVM of the daemon and the processes it forks rather than only by the
+   * build file. The daemon only runs builds for clients that have the same values.
+   */
+  public static final List<String> DAEMON_VARIABLES = Arrays.asList("HOME", "JAVA_HOME", "LANG", "LC_ALL", "PATH");
+
+  public static final Path DEFAULT_DIRECTORY = Paths.get(System.getProperty("user.home"), ".savant/daemon");
+
+  public static final byte ERROR_FRAME = 'E';
+
+  public static final byte EXIT_FRAME = 'X';
+
+  public static final byte OUTPUT_FRAME = 'O';
+
+  public static final byte REFUSED_FRAME = 'R';
+
+  public static final int REQUEST_BUILD = 1;
+
+  public static final int REQUEST_STOP = 2;
+
+  private DaemonProtocol() {
+  }
+
+  /**
+   * Returns the daemon file for this version of Savant and the working directory and environment of this JVM. Each
+   * version has its own daemon so that upgrading Savant never runs builds on an old daemon.
+   *
+   * @param directory The daemon directory.
+   * @return The daemon file.
+   */
+  public static Path daemonFile(Path directory) {
+    return directory.resolve(name() + ".properties");
+  }
+
+  /**
+   * Returns the lock file that clients lock while they start the daemon for this version of Savant and the working
+   * directory and environment of this JVM. This prevents two clients that are started at the same time from both
+   * starting a daemon.
+   *
+   * @param directory The daemon directory.
+   * @return The lock file.
+   */
+  public static Path lockFile(Path directory) {
+    return directory.resolve(name() + ".lock");
+  }
+
+  /**
+   * Determines if the {@link #DAEMON_VARIABLES} of a client are the same as those of the daemon. The other variables
+   * are passed to the build, so they can be different.
+   *
+   * @param client The environment variables of the client.
+   * @param daemon The environment variables of the daemon.
+   * @return True if they are the same.
+   */
+  public static boolean sameEnvironment(Map<String, String> client, Map<String, String> daemon) {
+    return DAEMON_VARIABLES.stream().allMatch((variable) -> Objects.equals(client.get(variable), daemon.get(variable)));
+  }
+
+  /**
+   * Reads the daemon file.
+   *
+   * @param directory The daemon directory.
+   * @return The properties from the daemon file (port and token) or null if the daemon file doesn't exist.
+   * @throws IOException If the file could not be read.
+   */
+  public static Properties readDaemonFile(Path directory) throws IOException {
+    Path file = daemonFile(directory);
+    if (!Files.isRegularFile(file)) {
+      return null;
+    }
+
+    Properties properties = new Properties();
+    try (InputStream is = Files.newInputStream(file)) {
+      properties.load(is);
+    }
+
+    return properties;
+  }
+
+  private static String name() {
+    StringBuilder build = new StringBuilder(Paths.get("").toAbsolutePath().toString()).append("\n");
+    DAEMON_VARIABLES.forEach((variable) -> build.append(variable).append("=").append(System.getenv(variable)).append("\n"));
+
+    String version = Main.class.getPackage().getImplementationVersion();
+    return "daemon-" + (version != null ? version : "development") + "-" + Hashes.sha256(build.toString()).substring(0, 16);
+  }
+
+  /**
+   * An OutputStream that writes everything as frames of the given type. This is used to send the output of the build
+   * back to the client.
+   *
+   * @author Brian Pontarelli
+   */
+  public static class FrameOutputStream extends OutputStream {
+    private final DataOutputStream dos;
+
+    private final byte type;
+
+    public FrameOutputStream(DataOutputStream dos, byte type) {
+      this.dos = dos;
+      this.type = type;
+    }
+
+    @Override
+    public void flush() throws IOException {
+      synchronized (dos) {
+        dos.flush();
+      }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      synchronized (dos) {
+        dos.writeByte(type);
+        dos.writeInt(len);
+        dos.write(b, off, len);
+      }
+    }
+  }
+}
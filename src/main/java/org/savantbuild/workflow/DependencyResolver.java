@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2001-2010, Inversoft, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.workflow;
+
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.savantbuild.dep.DependencyService;
+import org.savantbuild.dep.DependencyService.TraversalRules;
+import org.savantbuild.dep.domain.Dependencies;
+import org.savantbuild.dep.graph.ArtifactGraph;
+import org.savantbuild.dep.graph.DependencyGraph;
+import org.savantbuild.dep.graph.ResolvedArtifactGraph;
+import org.savantbuild.dep.workflow.Workflow;
+import org.savantbuild.domain.Project;
+import org.savantbuild.lang.Classpath;
+import org.savantbuild.runtime.BuildRunException;
+
+/**
+ * Resolves the dependencies of a project and remembers the results for the rest of the build. Plugins (i.e. compiling,
+ * testing and copying the dependencies) all need the dependencies of the project, usually with different
+ * {@link TraversalRules}. Using this rather than the dependency service directly means that the dependency graph is
+ * only built and reduced once per build and that each set of traversal rules is only resolved once.
+ * <p>
+ * The resolutions are keyed by the contents of the TraversalRules (the name of each group, whether it is transitive and
+ * its transitive groups), so equal rules share a resolution even if each plugin creates its own instance. If the
+ * {@code dependencies} or the {@code workflow} of the project change, everything is resolved again.
+ * <p>
+ * This is thread-safe. If multiple threads need the same resolution at the same time, it is only done once and the
+ * other threads wait for it.
+ *
+ * @author Brian Pontarelli
+ */
+public class DependencyResolver {
+  private final DependencyService dependencyService;
+
+  private final Project project;
+
+  private State state;
+
+  public DependencyResolver(Project project, DependencyService dependencyService) {
+    this.project = project;
+    this.dependencyService = dependencyService;
+  }
+
+  /**
+   * @return The reduced artifact graph of the project's dependencies or null if the project doesn't have any
+   * dependencies.
+   */
+  public ArtifactGraph artifactGraph() {
+    State current = state();
+    return current.dependencies == null ? null : get(current, current.artifactGraph);
+  }
+
+  /**
+   * Resolves the project's dependencies and converts them to a classpath.
+   *
+   * @param rules The traversal rules.
+   * @return The Classpath or null if the project doesn't have any dependencies.
+   */
+  public Classpath classpath(TraversalRules rules) {
+    ResolvedArtifactGraph resolved = resolve(rules);
+    return resolved != null ? resolved.toClasspath() : null;
+  }
+
+  /**
+   * @return The dependency graph of the project's dependencies or null if the project doesn't have any dependencies.
+   */
+  public DependencyGraph dependencyGraph() {
+    State current = state();
+    return current.dependencies == null ? null : get(current, current.dependencyGraph);
+  }
+
+  /**
+   * Resolves the project's dependencies using the given traversal rules, which downloads the artifacts.
+   *
+   * @param rules The traversal rules.
+   * @return The ResolvedArtifactGraph or null if the project doesn't have any dependencies.
+   */
+  public ResolvedArtifactGraph resolve(TraversalRules rules) {
+    State current = state();
+    if (current.dependencies == null) {
+      return null;
+    }
+
+    FutureTask<ResolvedArtifactGraph> task = new FutureTask<>(() -> dependencyService.resolve(get(current, current.artifactGraph), current.workflow, rules));
+    FutureTask<ResolvedArtifactGraph> existing = current.resolutions.putIfAbsent(key(rules), task);
+    return get(current, existing != null ? existing : task);
+  }
+
+  /**
+   * Discards the resolutions if one of them failed so that the next call tries again (i.e. the next run of
+   * {@code --watch}).
+   */
+  private synchronized void discard(State failed) {
+    if (state == failed) {
+      state = null;
+    }
+  }
+
+  private <T> T get(State current, FutureTask<T> task) {
+    // This does nothing if the task was already run or another thread is running it
+    task.run();
+
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new BuildRunException("Interrupted while resolving the dependencies of the project");
+    } catch (ExecutionException e) {
+      discard(current);
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+
+      throw new BuildRunException("Unable to resolve the dependencies of the project. The error was [" + cause + "]");
+    }
+  }
+
+  /**
+   * Creates a key for the given rules from their contents. TraversalRules doesn't implement equals, and the groups and
+   * transitive groups are hash sets and maps, so everything is sorted.
+   */
+  private String key(TraversalRules rules) {
+    StringBuilder build = new StringBuilder();
+    new TreeMap<>(rules.rules).forEach((group, rule) -> build.append(group)
+                                                             .append(rule.transitive ? " transitive " : " ")
+                                                             .append(new TreeSet<>(rule.transitiveGroups))
+                                                             .append("\n"));
+    return build.toString();
+  }
+
+  private synchronized State state() {
+    String fingerprint = LockFile.fingerprint(project.dependencies);
+    if (state == null || state.dependencies != project.dependencies || state.workflow != project.workflow ||
+        !state.fingerprint.equals(fingerprint)) {
+      state = new State(project.dependencies, project.workflow, fingerprint);
+    }
+
+    return state;
+  }
+
+  /**
+   * The resolutions for one version of the project's dependencies and workflow.
+   */
+  private class State {
+    public final FutureTask<ArtifactGraph> artifactGraph;
+
+    public final Dependencies dependencies;
+
+    public final FutureTask<DependencyGraph> dependencyGraph;
+
+    public final String fingerprint;
+
+    public final ConcurrentMap<String, FutureTask<ResolvedArtifactGraph>> resolutions = new ConcurrentHashMap<>();
+
+    public final Workflow workflow;
+
+    public State(Dependencies dependencies, Workflow workflow, String fingerprint) {
+      this.dependencies = dependencies;
+      this.workflow = workflow;
+      this.fingerprint = fingerprint;
+      this.dependencyGraph = new FutureTask<>(() -> dependencyService.buildGraph(project.toArtifact(), dependencies, workflow));
+      this.artifactGraph = new FutureTask<>(() -> {
+        ArtifactGraph graph = dependencyService.reduce(get(this, dependencyGraph));
+        if (graph != null && project.parallelFetcher != null) {
+          project.parallelFetcher.fetch(graph.values(), workflow);
+        }
+
+        return graph;
+      });
+    }
+  }
+}
@@ -0,0 +1,352 @@
+/*
+ * Copyright (c) 2001-2010, Inversoft, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.workflow;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.savantbuild.cache.Hashes;
+import org.savantbuild.dep.domain.Artifact;
+import org.savantbuild.dep.domain.Dependencies;
+import org.savantbuild.dep.domain.DependencyGroup;
+import org.savantbuild.output.Output;
+import org.savantbuild.plugin.ResolvedPlugin;
+
+/**
+ * The {@code savant.lock} file of a project, which records the resolved dependencies so that they don't need to be
+ * resolved on every build. The lock file is written by {@code sb --write-lock} and it is meant to be checked in next to
+ * the build file.
+ * <p>
+ * For every plugin the lock file contains the plugin class and the ID, version, file, size and MD5 of every artifact
+ * in the classpath of the plugin. Files in the home directory of the user (i.e. the Savant cache) are stored relative to
+ * {@code ~} so that the lock file works for everyone that builds the project. Loading a plugin from the lock file only
+ * checks these files rather than walking the AMD files of the dependency graph. If any of the files is missing or has
+ * changed, the plugin is resolved normally.
+ * <p>
+ * The last modified times of the files are local to each machine, so they are kept out of the lock file. Once the MD5 of
+ * a file has been verified, its size and last modified time are recorded in {@code build/.savant/lock-stats.properties}
+ * and the file isn't hashed again until one of them changes.
+ * <p>
+ * The lock file also contains a fingerprint of the {@code dependencies} of the project. If the dependencies change,
+ * the whole lock file is ignored until it is written again.
+ *
+ * @author Brian Pontarelli
+ */
+public class LockFile {
+  public static final String LOCK_FILE = "savant.lock";
+
+  public static final String STATS_FILE = "build/.savant/lock-stats.properties";
+
+  public final Path file;
+
+  /**
+   * The plugin resolutions of the lock file keyed by the plugin artifact (i.e.
+   * {@code org.savantbuild.plugin:java:0.1.0}).
+   */
+  public final Map<String, ResolvedPlugin> plugins = new ConcurrentHashMap<>();
+
+  private final Output output;
+
+  private final Map<String, Checksum> checksums = new ConcurrentHashMap<>();
+
+  private final Map<String, Stat> stats = new ConcurrentHashMap<>();
+
+  private final Path statsFile;
+
+  private volatile boolean loaded;
+
+  public LockFile(Output output, Path file) {
+    this.output = output;
+    this.file = file;
+    this.statsFile = file.toAbsolutePath().getParent().resolve(STATS_FILE);
+  }
+
+  /**
+   * Creates a fingerprint of the dependencies of a project.
+   *
+   * @param dependencies The dependencies (can be null).
+   * @return The fingerprint.
+   */
+  public static String fingerprint(Dependencies dependencies) {
+    StringBuilder build = new StringBuilder();
+    if (dependencies != null) {
+      for (DependencyGroup group : dependencies.groups.values()) {
+        build.append(group.name).append(group.export ? " export" : "").append("\n");
+        for (Artifact artifact : group.dependencies) {
+          build.append("  ").append(artifact).append(artifact.skipCompatibilityCheck ? " skipCompatibilityCheck" : "").append("\n");
+        }
+      }
+    }
+
+    return Hashes.sha256(build.toString());
+  }
+
+  /**
+   * Looks up the resolution of the given plugin. The lock file is read the first time this is called. The resolution is
+   * only returned if all of the files in its classpath still have the size and MD5 that were locked. The MD5 is only
+   * calculated if the size or last modified time of the file changed since its MD5 was last verified.
+   *
+   * @param pluginDependency The plugin.
+   * @param dependencies     The current dependencies of the project, which must match the locked dependencies.
+   * @return The ResolvedPlugin or null if the plugin isn't locked or the lock is stale.
+   */
+  public ResolvedPlugin plugin(Artifact pluginDependency, Dependencies dependencies) {
+    load(dependencies);
+
+    ResolvedPlugin resolvedPlugin = plugins.get(pluginDependency.toString());
+    if (resolvedPlugin == null) {
+      return null;
+    }
+
+    boolean verified = false;
+    try {
+      for (ResolvedPlugin.ClasspathEntry entry : resolvedPlugin.classpath) {
+        String key = entry.file.toString();
+        Checksum checksum = checksums.get(key);
+        if (checksum == null || !Files.isRegularFile(entry.file) || Files.size(entry.file) != checksum.size) {
+          output.debug("The lock of the plugin [%s] is stale because [%s] changed", pluginDependency, entry.file);
+          return null;
+        }
+
+        long lastModified = Files.getLastModifiedTime(entry.file).toMillis();
+        Stat stat = stats.get(key);
+        if (stat != null && stat.size == checksum.size && stat.lastModified == lastModified && stat.md5.equals(checksum.md5)) {
+          continue;
+        }
+
+        if (!Hashes.md5(entry.file).equals(checksum.md5)) {
+          output.debug("The lock of the plugin [%s] is stale because [%s] changed", pluginDependency, entry.file);
+          return null;
+        }
+
+        stats.put(key, new Stat(checksum.size, lastModified, checksum.md5));
+        verified = true;
+      }
+    } catch (IOException e) {
+      output.debug("Unable to verify the lock of the plugin [%s]", pluginDependency);
+      output.debug(e);
+      return null;
+    }
+
+    if (verified) {
+      saveStats();
+    }
+
+    return resolvedPlugin;
+  }
+
+  /**
+   * Writes the lock file. The entries are sorted so that the file only changes when the resolutions change.
+   *
+   * @param dependencies The current dependencies of the project.
+   * @throws IOException If the lock file could not be written or the files of the classpaths could not be read.
+   */
+  public void write(Dependencies dependencies) throws IOException {
+    Properties properties = new Properties();
+    properties.setProperty("dependencies", fingerprint(dependencies));
+
+    Map<String, ResolvedPlugin> sorted = new TreeMap<>(plugins);
+    int i = 0;
+    for (Map.Entry<String, ResolvedPlugin> plugin : sorted.entrySet()) {
+      String prefix = "plugin." + i++;
+      properties.setProperty(prefix + ".id", plugin.getKey());
+      properties.setProperty(prefix + ".class", plugin.getValue().pluginClassName);
+
+      List<ResolvedPlugin.ClasspathEntry> classpath = plugin.getValue().classpath;
+      for (int j = 0; j < classpath.size(); j++) {
+        ResolvedPlugin.ClasspathEntry entry = classpath.get(j);
+        String entryPrefix = prefix + ".classpath." + j;
+        properties.setProperty(entryPrefix + ".id", entry.id);
+        properties.setProperty(entryPrefix + ".version", entry.version);
+        properties.setProperty(entryPrefix + ".file", toString(entry.file));
+        long size = Files.size(entry.file);
+        long lastModified = Files.getLastModifiedTime(entry.file).toMillis();
+        String md5 = Hashes.md5(entry.file);
+        properties.setProperty(entryPrefix + ".size", Long.toString(size));
+        properties.setProperty(entryPrefix + ".md5", md5);
+        stats.put(entry.file.toString(), new Stat(size, lastModified, md5));
+      }
+    }
+
+    // Properties.store adds a timestamp and doesn't sort the entries, so the entries are taken from its output
+    StringWriter writer = new StringWriter();
+    properties.store(writer, null);
+    List<String> lines = new ArrayList<>();
+    for (String line : writer.toString().split("\n")) {
+      if (!line.startsWith("#") && !line.trim().isEmpty()) {
+        lines.add(line.trim());
+      }
+    }
+
+    lines.sort(null);
+    lines.add(0, "# The resolved dependencies of the project. This file is written by sb --write-lock");
+
+    Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), "savant", ".lock");
+    Files.write(temp, lines, StandardCharsets.ISO_8859_1);
+    Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    saveStats();
+  }
+
+  private synchronized void load(Dependencies dependencies) {
+    if (loaded) {
+      return;
+    }
+
+    loaded = true;
+    if (!Files.isRegularFile(file)) {
+      return;
+    }
+
+    loadStats();
+
+    Properties properties = new Properties();
+    try (Reader reader = Files.newBufferedReader(file, StandardCharsets.ISO_8859_1)) {
+      properties.load(reader);
+    } catch (IOException e) {
+      output.warning("Unable to read the lock file [%s]. The error was [%s]", file, e.getMessage());
+      return;
+    }
+
+    if (!fingerprint(dependencies).equals(properties.getProperty("dependencies"))) {
+      output.info("The dependencies of the project changed since [%s] was written. Run sb --write-lock to update it.", file.getFileName());
+      return;
+    }
+
+    try {
+      for (int i = 0; properties.containsKey("plugin." + i + ".id"); i++) {
+        String prefix = "plugin." + i;
+        ResolvedPlugin resolvedPlugin = new ResolvedPlugin(properties.getProperty(prefix + ".class"));
+        for (int j = 0; properties.containsKey(prefix + ".classpath." + j + ".file"); j++) {
+          String entryPrefix = prefix + ".classpath." + j;
+          Path path = toPath(properties.getProperty(entryPrefix + ".file"));
+          resolvedPlugin.classpath.add(new ResolvedPlugin.ClasspathEntry(properties.getProperty(entryPrefix + ".id"),
+              properties.getProperty(entryPrefix + ".version"), path));
+          checksums.put(path.toString(), new Checksum(Long.parseLong(properties.getProperty(entryPrefix + ".size")),
+              properties.getProperty(entryPrefix + ".md5")));
+        }
+
+        plugins.put(properties.getProperty(prefix + ".id"), resolvedPlugin);
+      }
+    } catch (NumberFormatException e) {
+      output.warning("The lock file [%s] is invalid. Run sb --write-lock to write it again.", file);
+      plugins.clear();
+    }
+  }
+
+  private void loadStats() {
+    if (!Files.isRegularFile(statsFile)) {
+      return;
+    }
+
+    Properties properties = new Properties();
+    try (Reader reader = Files.newBufferedReader(statsFile, StandardCharsets.ISO_8859_1)) {
+      properties.load(reader);
+      for (String key : properties.stringPropertyNames()) {
+        String[] parts = properties.getProperty(key).split(" ");
+        if (parts.length == 3) {
+          stats.put(key, new Stat(Long.parseLong(parts[0]), Long.parseLong(parts[1]), parts[2]));
+        }
+      }
+    } catch (IOException | NumberFormatException e) {
+      output.debug("Unable to read the lock file stats [%s]", statsFile);
+      output.debug(e);
+    }
+  }
+
+  /**
+   * Writes the sizes and last modified times of the verified files. Failures are not fatal since this only means that
+   * the files are hashed again by the next build.
+   */
+  private synchronized void saveStats() {
+    Properties properties = new Properties();
+    stats.forEach((key, stat) -> properties.setProperty(key, stat.size + " " + stat.lastModified + " " + stat.md5));
+    try {
+      Files.createDirectories(statsFile.getParent());
+      Path temp = Files.createTempFile(statsFile.getParent(), "lock-stats", ".tmp");
+      try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.ISO_8859_1)) {
+        properties.store(writer, "Savant lock file stats");
+      }
+
+      Files.move(temp, statsFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      output.debug("Unable to write the lock file stats [%s]", statsFile);
+      output.debug(e);
+    }
+  }
+
+  /**
+   * Converts a locked file back to a path, replacing the {@code ~} with the home directory of the current user.
+   */
+  private Path toPath(String file) {
+    if (file.startsWith("~/")) {
+      return Paths.get(System.getProperty("user.home"), file.substring(2));
+    }
+
+    return Paths.get(file);
+  }
+
+  /**
+   * Converts the path of a locked file to a String. The files are usually in the Savant cache in the home directory of
+   * the user, so the home directory is replaced with {@code ~} to allow the lock file to be shared.
+   */
+  private String toString(Path file) {
+    Path home = Paths.get(System.getProperty("user.home")).toAbsolutePath();
+    Path absolute = file.toAbsolutePath();
+    if (absolute.startsWith(home)) {
+      return "~/" + home.relativize(absolute).toString().replace('\\', '/');
+    }
+
+    return absolute.toString();
+  }
+
+  private static class Checksum {
+    public final String md5;
+
+    public final long size;
+
+    public Checksum(long size, String md5) {
+      this.size = size;
+      this.md5 = md5;
+    }
+  }
+
+  private static class Stat {
+    public final long lastModified;
+
+    public final String md5;
+
+    public final long size;
+
+    public Stat(long size, long lastModified, String md5) {
+      this.size = size;
+      this.lastModified = lastModified;
+      this.md5 = md5;
+    }
+  }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2001-2010, Inversoft, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.workflow;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.savantbuild.cache.Hashes;
+import org.savantbuild.dep.domain.ReifiedArtifact;
+import org.savantbuild.dep.workflow.Workflow;
+import org.savantbuild.dep.workflow.process.CacheProcess;
+import org.savantbuild.dep.workflow.process.Process;
+import org.savantbuild.dep.workflow.process.URLProcess;
+import org.savantbuild.output.Output;
+
+/**
+ * Downloads the artifacts of a dependency graph into the cache of the fetch workflow in parallel. The fetch workflow
+ * fetches the artifacts one at a time, so on a cold cache resolving a large graph is dominated by the latency of each
+ * download. Fetching the artifacts ahead of time using a bounded pool means that the workflow finds them in the cache.
+ * <p>
+ * This is enabled in the fetch workflow of the build file like this:
+ * <p>
+ * <pre>
+ *   workflow {
+ *     fetch {
+ *       parallel(threads: 8)
+ *       cache()
+ *       url(url: "http://repository.savantbuild.org")
+ *     }
+ *   }
+ * </pre>
+ * <p>
+ * The artifacts are downloaded from the URL processes of the workflow (in order) into the directory of the first cache
+ * process. The MD5 of each artifact is computed while it is being downloaded and the artifact is only stored in the
+ * cache if it matches the MD5 file in the repository. Any failure only causes the artifact to be skipped, which leaves
+ * it to the fetch workflow to download and report the failure.
+ * <p>
+ * The downloads run on a pool that is shared by all of the fetchers in the JVM (the daemon parses many build files and
+ * each workspace project has its own fetcher). Its threads exit when they are idle. Each fetch uses at most the number
+ * of threads of its fetcher.
+ *
+ * @author Brian Pontarelli
+ */
+public class ParallelFetcher {
+  public static final int CONNECT_TIMEOUT = 10_000;
+
+  public static final int READ_TIMEOUT = 60_000;
+
+  private static final AtomicInteger fetcherCount = new AtomicInteger();
+
+  private static final ExecutorService pool = Executors.newCachedThreadPool((runnable) -> {
+    Thread thread = new Thread(runnable, "Savant fetcher " + fetcherCount.incrementAndGet());
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /**
+   * The credentials of the URL processes keyed by the URL of the repository. The fetch workflow DSL fills this in since
+   * the credentials of the URL processes aren't accessible.
+   */
+  public final Map<String, Credentials> credentials = new ConcurrentHashMap<>();
+
+  public final int threads;
+
+  private final Output output;
+
+  public ParallelFetcher(Output output, int threads) {
+    this.output = output;
+    this.threads = threads;
+  }
+
+  /**
+   * Downloads the given artifacts that aren't in the cache yet.
+   *
+   * @param artifacts The artifacts (i.e. the values of a reduced ArtifactGraph).
+   * @param workflow  The workflow that the artifacts are fetched with.
+   * @return The number of artifacts that were downloaded.
+   */
+  public int fetch(Collection<? extends ReifiedArtifact> artifacts, Workflow workflow) {
+    Path cacheDirectory = null;
+    List<String> urls = new ArrayList<>();
+    for (Process process : workflow.fetchWorkflow.processes) {
+      if (process instanceof CacheProcess && cacheDirectory == null) {
+        cacheDirectory = Paths.get(((CacheProcess) process).dir);
+      } else if (process instanceof URLProcess) {
+        urls.add(((URLProcess) process).url);
+      }
+    }
+
+    if (cacheDirectory == null || urls.isEmpty()) {
+      return 0;
+    }
+
+    Queue<String> items = new ConcurrentLinkedQueue<>();
+    for (ReifiedArtifact artifact : artifacts) {
+      if (artifact.id == null || artifact.version == null) {
+        continue;
+      }
+
+      String item = artifact.id.group.replace('.', '/') + "/" + artifact.id.project + "/" + artifact.version + "/" + artifact.getArtifactFile();
+      if (!Files.isRegularFile(cacheDirectory.resolve(item))) {
+        items.add(item);
+      }
+    }
+
+    // The shared pool isn't bounded, so this fetch is limited to the threads of this fetcher by only submitting that many
+    // workers
+    Path directory = cacheDirectory;
+    AtomicInteger downloaded = new AtomicInteger();
+    List<Future<?>> futures = new ArrayList<>();
+    for (int i = 0; i < Math.min(threads, items.size()); i++) {
+      futures.add(pool.submit(() -> {
+        String item;
+        while ((item = items.poll()) != null) {
+          for (String url : urls) {
+            if (download(url, item, directory.resolve(item))) {
+              downloaded.incrementAndGet();
+              break;
+            }
+          }
+        }
+      }));
+    }
+
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (ExecutionException e) {
+        output.debug(e.getCause());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+    }
+
+    int count = downloaded.get();
+    if (count > 0) {
+      output.debug("Fetched [%d] artifacts in parallel", count);
+    }
+
+    return count;
+  }
+
+  private boolean download(String url, String item, Path file) {
+    String location = url + (url.endsWith("/") ? "" : "/") + item;
+    try {
+      byte[] md5File = read(location + ".md5");
+      if (md5File == null) {
+        return false;
+      }
+
+      String expected = new String(md5File, StandardCharsets.UTF_8).trim().split("\\s+")[0].toLowerCase();
+      Files.createDirectories(file.getParent());
+      Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+      Path md5Temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".md5.tmp");
+      try {
+        HttpURLConnection connection = open(location);
+        if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+          output.debug("Unable to fetch [%s]. The status was [%d]", location, connection.getResponseCode());
+          return false;
+        }
+
+        MessageDigest digest = Hashes.digest("MD5");
+        try (InputStream is = new DigestInputStream(connection.getInputStream(), digest)) {
+          Files.copy(is, temp, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        String actual = Hashes.hex(digest.digest());
+        if (!actual.equals(expected)) {
+          output.warning("The MD5 of [%s] is [%s] but the repository says it should be [%s]", location, actual, expected);
+          return false;
+        }
+
+        // The MD5 file is moved into place first so that the workflow never finds the artifact without it. Both are moved
+        // atomically because the artifacts of different plugins and projects are fetched at the same time
+        Files.write(md5Temp, md5File);
+        Files.move(md5Temp, file.resolveSibling(file.getFileName() + ".md5"), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return true;
+      } finally {
+        Files.deleteIfExists(md5Temp);
+        Files.deleteIfExists(temp);
+      }
+    } catch (IOException e) {
+      output.debug("Unable to fetch [%s]. The error was [%s]", location, e.getMessage());
+      return false;
+    }
+  }
+
+  private HttpURLConnection open(String location) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(location).openConnection();
+    connection.setConnectTimeout(CONNECT_TIMEOUT);
+    connection.setReadTimeout(READ_TIMEOUT);
+    credentials.forEach((url, repositoryCredentials) -> {
+      if (location.startsWith(url)) {
+        String token = repositoryCredentials.username + ":" + repositoryCredentials.password;
+        connection.setRequestProperty("Authorization", "Basic " + Base64.getEncoder().encodeToString(token.getBytes(StandardCharsets.UTF_8)));
+      }
+    });
+
+    return connection;
+  }
+
+  private byte[] read(String location) throws IOException {
+    HttpURLConnection connection = open(location);
+    if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+      output.debug("Unable to fetch [%s]. The status was [%d]", location, connection.getResponseCode());
+      return null;
+    }
+
+    try (InputStream is = connection.getInputStream()) {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4096];
+      int read;
+      while ((read = is.read(buffer)) != -1) {
+        baos.write(buffer, 0, read);
+      }
+
+      return baos.toByteArray();
+    }
+  }
+
+  /**
+   * The username and password of a repository.
+   */
+  public static class Credentials {
+    public final String password;
+
+    public final String username;
+
+    public Credentials(String username, String password) {
+      this.username = username;
+      this.password = password;
+    }
+  }
+}
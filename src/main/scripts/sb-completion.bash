@@ -0,0 +1,10 @@
+# Bash completion for Savant. Source this file from your ~/.bashrc:
+#
+#   source /path/to/savant/bin/sb-completion.bash
+#
+_sb() {
+  local IFS=$'\n'
+  COMPREPLY=($(sb --complete "${COMP_WORDS[COMP_CWORD]}" 2> /dev/null))
+}
+
+complete -o default -F _sb sb
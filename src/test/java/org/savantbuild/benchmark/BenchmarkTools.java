@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.savantbuild.dep.PathTools;
+import org.savantbuild.output.Output;
+
+/**
+ * Helpers shared by the JMH benchmarks.
+ *
+ * @author Brian Pontarelli
+ */
+public final class BenchmarkTools {
+  private BenchmarkTools() {
+  }
+
+  /**
+   * Creates (or cleans) a working directory for a benchmark under {@code build/benchmark}.
+   *
+   * @param name The name of the benchmark.
+   * @return The directory.
+   * @throws IOException If the directory could not be cleaned or created.
+   */
+  public static Path directory(String name) throws IOException {
+    Path directory = projectDirectory().resolve("build/benchmark").resolve(name).toAbsolutePath();
+    PathTools.prune(directory);
+    Files.createDirectories(directory);
+    return directory;
+  }
+
+  /**
+   * @return The savant-core project directory. This works when the benchmarks are run from the project directory or
+   * from a sibling project, just like the unit tests.
+   */
+  public static Path projectDirectory() {
+    Path projectDir = Paths.get("");
+    if (!Files.isRegularFile(projectDir.resolve("LICENSE"))) {
+      projectDir = projectDir.resolve("../savant-core");
+    }
+
+    return projectDir;
+  }
+
+  /**
+   * Creates an Output that discards everything. The runner and the parser print for every target, which would
+   * otherwise flood the benchmark forks and measure the console rather than Savant.
+   *
+   * @return The Output.
+   */
+  public static Output quietOutput() {
+    return new Output() {
+      @Override
+      public void debug(String message, Object... values) {
+      }
+
+      @Override
+      public void debug(Throwable t) {
+      }
+
+      @Override
+      public void disableDebug() {
+      }
+
+      @Override
+      public void enableDebug() {
+      }
+
+      @Override
+      public void error(String message, Object... values) {
+      }
+
+      @Override
+      public void info(String message, Object... values) {
+      }
+
+      @Override
+      public void warning(String message, Object... values) {
+      }
+    };
+  }
+
+  /**
+   * Replaces {@link System#out} with a stream that discards everything, for code that prints directly rather than using
+   * an Output. This is called from the {@code @Setup} method of a benchmark and the returned stream must be passed to
+   * {@link #restoreSystemOut(PrintStream)} from its {@code @TearDown} method.
+   *
+   * @return The original System.out.
+   */
+  public static PrintStream quietSystemOut() {
+    PrintStream original = System.out;
+    System.setOut(new PrintStream(new OutputStream() {
+      @Override
+      public void write(int b) {
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) {
+      }
+    }));
+
+    return original;
+  }
+
+  /**
+   * Restores {@link System#out} after {@link #quietSystemOut()}.
+   *
+   * @param original The original System.out.
+   */
+  public static void restoreSystemOut(PrintStream original) {
+    System.setOut(original);
+  }
+}
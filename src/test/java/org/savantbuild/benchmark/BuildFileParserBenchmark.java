@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.benchmark;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.savantbuild.domain.Project;
+import org.savantbuild.output.Output;
+import org.savantbuild.parser.DefaultTargetGraphBuilder;
+import org.savantbuild.parser.groovy.CompiledScriptCache;
+import org.savantbuild.parser.groovy.GroovyBuildFileParser;
+import org.savantbuild.runtime.RuntimeConfiguration;
+
+/**
+ * Benchmarks parsing synthetic build files with and without the compiled script cache.
+ *
+ * @author Brian Pontarelli
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class BuildFileParserBenchmark {
+  @Param({"10", "1000"})
+  public int targets;
+
+  private Path buildFile;
+
+  private GroovyBuildFileParser cachedParser;
+
+  private GroovyBuildFileParser parser;
+
+  private RuntimeConfiguration runtimeConfiguration;
+
+  private PrintStream systemOut;
+
+  @Setup
+  public void setup() throws IOException {
+    Path directory = BenchmarkTools.directory("parser-" + targets);
+    buildFile = directory.resolve("build.savant");
+
+    StringBuilder build = new StringBuilder();
+    build.append("project(group: \"org.savantbuild.benchmark\", name: \"parser\", version: \"1.0\", licenses: [\"ApacheV2_0\"]) {\n}\n\n");
+    for (int i = 0; i < targets; i++) {
+      build.append("target(name: \"target").append(i).append("\", description: \"Target ").append(i).append("\"");
+      if (i > 0) {
+        build.append(", dependsOn: [\"target").append(i - 1).append("\"]");
+      }
+      if (i % 2 == 0) {
+        build.append(", inputs: [\"src/main/java/").append(i).append("\"], outputs: \"build/").append(i).append("\"");
+      }
+      build.append(") {\n  project.name = \"parser\"\n}\n\n");
+    }
+
+    Files.write(buildFile, build.toString().getBytes(StandardCharsets.UTF_8));
+
+    systemOut = BenchmarkTools.quietSystemOut();
+    Output output = BenchmarkTools.quietOutput();
+    runtimeConfiguration = new RuntimeConfiguration();
+    parser = new GroovyBuildFileParser(output, new DefaultTargetGraphBuilder());
+    cachedParser = new GroovyBuildFileParser(output, new DefaultTargetGraphBuilder(),
+        new CompiledScriptCache(output, directory.resolve("scripts"), "benchmark"));
+  }
+
+  /**
+   * The compiled script cache keeps the script classes it loaded in memory for the daemon. Clearing them before every
+   * invocation means that {@link #parseCached()} measures loading the classes from the cache directory, which is what
+   * every build does in a new JVM.
+   */
+  @Setup(Level.Invocation)
+  public void clearLoadedClasses() {
+    CompiledScriptCache.clearLoadedClasses();
+  }
+
+  @Benchmark
+  public Project parse() {
+    return parser.parse(buildFile, runtimeConfiguration);
+  }
+
+  @Benchmark
+  public Project parseCached() {
+    return cachedParser.parse(buildFile, runtimeConfiguration);
+  }
+
+  @TearDown
+  public void tearDown() {
+    BenchmarkTools.restoreSystemOut(systemOut);
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.benchmark;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.savantbuild.dep.domain.Artifact;
+import org.savantbuild.dep.domain.License;
+import org.savantbuild.dep.domain.Version;
+import org.savantbuild.dep.workflow.FetchWorkflow;
+import org.savantbuild.dep.workflow.PublishWorkflow;
+import org.savantbuild.dep.workflow.Workflow;
+import org.savantbuild.dep.workflow.process.CacheProcess;
+import org.savantbuild.domain.Project;
+import org.savantbuild.output.Output;
+import org.savantbuild.plugin.DefaultPluginLoader;
+import org.savantbuild.plugin.Plugin;
+import org.savantbuild.plugin.PluginCache;
+import org.savantbuild.plugin.PluginLoader;
+import org.savantbuild.runtime.RuntimeConfiguration;
+
+/**
+ * Benchmarks loading the test plugin from the file based repository in {@code src/test/plugin-repository}, both by
+ * resolving its dependencies and by using the plugin cache.
+ *
+ * @author Brian Pontarelli
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class PluginLoaderBenchmark {
+  private final Artifact pluginDependency = new Artifact("org.savantbuild.test:good:0.1.0", false);
+
+  private PluginLoader cachedLoader;
+
+  private PluginLoader loader;
+
+  private Output output;
+
+  private PrintStream systemOut;
+
+  @Setup
+  public void setup() throws IOException {
+    systemOut = BenchmarkTools.quietSystemOut();
+    output = BenchmarkTools.quietOutput();
+    Path projectDir = BenchmarkTools.projectDirectory().toAbsolutePath();
+    Path repository = projectDir.resolve("src/test/plugin-repository");
+
+    Project project = new Project(projectDir, output);
+    project.group = "org.savantbuild.benchmark";
+    project.name = "plugin-loader";
+    project.version = new Version("0.1.0");
+    project.licenses.put(License.BSD_2_Clause, null);
+    project.workflow = new Workflow(
+        new FetchWorkflow(output, new CacheProcess(output, repository.toString())),
+        new PublishWorkflow(new CacheProcess(output, repository.toString()))
+    );
+
+    loader = new DefaultPluginLoader(project, new RuntimeConfiguration(), output, null);
+    cachedLoader = new DefaultPluginLoader(project, new RuntimeConfiguration(), output,
+        new PluginCache(output, BenchmarkTools.directory("plugin-cache")));
+  }
+
+  /**
+   * The plugin class loaders are shared by every build in the JVM for the daemon. Closing them before every invocation
+   * means that the benchmarks measure loading the plugin classes from the JAR files, which is what every build does in
+   * a new JVM.
+   */
+  @Setup(Level.Invocation)
+  public void clearClassLoaders() {
+    DefaultPluginLoader.clearClassLoaders(output);
+  }
+
+  @Benchmark
+  public Plugin load() {
+    return loader.load(pluginDependency);
+  }
+
+  @Benchmark
+  public Plugin loadCached() {
+    return cachedLoader.load(pluginDependency);
+  }
+
+  @TearDown
+  public void tearDown() {
+    BenchmarkTools.restoreSystemOut(systemOut);
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.savantbuild.domain.Project;
+import org.savantbuild.output.Output;
+import org.savantbuild.parser.DefaultTargetGraphBuilder;
+import org.savantbuild.runtime.DefaultProjectRunner;
+import org.savantbuild.runtime.ParallelProjectRunner;
+import org.savantbuild.runtime.ProjectRunner;
+
+import static java.util.Arrays.asList;
+
+/**
+ * Benchmarks the scheduling overhead of the project runners. Every target is a no-op, so the time is spent walking the
+ * target graph and dispatching the targets.
+ *
+ * @author Brian Pontarelli
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class ProjectRunnerBenchmark {
+  @Param({"100", "1000"})
+  public int targets;
+
+  private ProjectRunner parallelRunner;
+
+  private Project project;
+
+  private ProjectRunner runner;
+
+  private List<String> targetNames;
+
+  @Setup
+  public void setup() {
+    project = TargetGraphBuilderBenchmark.makeProject(targets);
+    project.targetGraph = new DefaultTargetGraphBuilder().build(project);
+    targetNames = asList("target" + (targets - 1));
+
+    Output output = BenchmarkTools.quietOutput();
+    runner = new DefaultProjectRunner(output);
+    parallelRunner = new ParallelProjectRunner(output, Runtime.getRuntime().availableProcessors());
+  }
+
+  @Benchmark
+  public void run() {
+    runner.run(project, targetNames);
+  }
+
+  @Benchmark
+  public void runParallel() {
+    parallelRunner.run(project, targetNames);
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.savantbuild.runtime.DefaultRuntimeConfigurationParser;
+import org.savantbuild.runtime.RuntimeConfiguration;
+import org.savantbuild.runtime.RuntimeConfigurationParser;
+
+/**
+ * Benchmarks parsing the command-line arguments.
+ *
+ * @author Brian Pontarelli
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class RuntimeConfigurationParserBenchmark {
+  private final String[] arguments = {"--noColor", "--threads=4", "--profile", "--skipTests", "--env=production",
+      "--env=staging", "clean", "compile", "test", "int"};
+
+  private final RuntimeConfigurationParser parser = new DefaultRuntimeConfigurationParser();
+
+  @Benchmark
+  public RuntimeConfiguration parse() {
+    return parser.parse(arguments);
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.savantbuild.domain.Project;
+import org.savantbuild.domain.Target;
+import org.savantbuild.parser.DefaultTargetGraphBuilder;
+import org.savantbuild.parser.TargetGraphBuilder;
+import org.savantbuild.util.Graph;
+
+/**
+ * Benchmarks building the target graph of projects with thousands of targets.
+ *
+ * @author Brian Pontarelli
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class TargetGraphBuilderBenchmark {
+  @Param({"1000", "5000"})
+  public int targets;
+
+  private Project project;
+
+  private TargetGraphBuilder targetGraphBuilder;
+
+  /**
+   * Creates a project whose targets each depend on up to three earlier targets, which gives a graph that is both deep
+   * and wide.
+   *
+   * @param targets The number of targets.
+   * @return The project.
+   */
+  public static Project makeProject(int targets) {
+    Project project = new Project(null, BenchmarkTools.quietOutput());
+    for (int i = 0; i < targets; i++) {
+      String[] dependencies;
+      if (i == 0) {
+        dependencies = new String[0];
+      } else if (i < 10) {
+        dependencies = new String[]{"target" + (i - 1)};
+      } else {
+        dependencies = new String[]{"target" + (i - 1), "target" + (i / 2), "target" + (i - 10)};
+      }
+
+      project.targets.put("target" + i, new Target("target" + i, "Target " + i, () -> {}, dependencies));
+    }
+
+    return project;
+  }
+
+  @Setup
+  public void setup() {
+    project = makeProject(targets);
+    targetGraphBuilder = new DefaultTargetGraphBuilder();
+  }
+
+  @Benchmark
+  public Graph<Target, Object> build() {
+    return targetGraphBuilder.build(project);
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.cache;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.savantbuild.BaseUnitTest;
+import org.savantbuild.dep.PathTools;
+import org.testng.annotations.Test;
+
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests the build cache.
+ *
+ * @author Brian Pontarelli
+ */
+public class BuildCacheTest extends BaseUnitTest {
+  @Test
+  public void remote() throws Exception {
+    Path directory = projectDir.resolve("build/test/remote-build-cache");
+    PathTools.prune(directory);
+
+    Path project1 = directory.resolve("project1");
+    Files.createDirectories(project1.resolve("build/jars"));
+    Files.write(project1.resolve("build/jars/test.jar"), "Jar contents".getBytes());
+    Files.write(project1.resolve("build/jars/test-src.jar"), "Jar contents".getBytes());
+
+    BuildCacheServer server = new BuildCacheServer(directory.resolve("server"), 0, "ci", "secret");
+    server.start();
+    try {
+      RemoteBuildCache remote = new HTTPRemoteBuildCache("http://localhost:" + server.getPort() + "/cache", "ci", "secret");
+
+      // Store on one machine and push to the remote cache
+      BuildCache cache1 = new BuildCache(output, directory.resolve("cache1"), remote, true);
+      cache1.store("key", project1, asList(project1.resolve("build/jars")));
+      cache1.waitForUploads();
+      assertTrue(Files.isRegularFile(directory.resolve("server/key")));
+
+      // Load on another machine
+      Path project2 = directory.resolve("project2");
+      BuildCache cache2 = new BuildCache(output, directory.resolve("cache2"), remote, false);
+      assertFalse(cache2.load("missing", project2, asList(project2.resolve("build/jars"))));
+      assertTrue(cache2.load("key", project2, asList(project2.resolve("build/jars"))));
+      assertEquals(new String(Files.readAllBytes(project2.resolve("build/jars/test.jar"))), "Jar contents");
+      assertEquals(new String(Files.readAllBytes(project2.resolve("build/jars/test-src.jar"))), "Jar contents");
+      assertTrue(Files.isRegularFile(directory.resolve("cache2/entries/key.properties")));
+
+      // Entries aren't pushed unless push is enabled
+      cache2.store("key2", project2, asList(project2.resolve("build/jars")));
+      cache2.waitForUploads();
+      assertFalse(Files.isRegularFile(directory.resolve("server/key2")));
+
+      // Storing entries requires the credentials of the server
+      BuildCache anonymous = new BuildCache(output, directory.resolve("cache3"), new HTTPRemoteBuildCache("http://localhost:" + server.getPort() + "/cache", null, null), true);
+      anonymous.store("key3", project2, asList(project2.resolve("build/jars")));
+      anonymous.waitForUploads();
+      assertFalse(Files.isRegularFile(directory.resolve("server/key3")));
+    } finally {
+      server.stop();
+    }
+  }
+
+  @Test
+  public void loadRejectsPathsOutsideOfTheOutputs() throws Exception {
+    Path directory = projectDir.resolve("build/test/untrusted-build-cache");
+    PathTools.prune(directory);
+
+    Path project = directory.resolve("project");
+    Files.createDirectories(project.resolve("build/jars"));
+    Files.write(project.resolve("build/jars/test.jar"), "Jar contents".getBytes());
+
+    BuildCache cache = new BuildCache(output, directory.resolve("cache"));
+    cache.store("key", project, asList(project.resolve("build/jars")));
+
+    // Tamper with the entry so that it writes outside of the outputs
+    Path entry = directory.resolve("cache/entries/key.properties");
+    String contents = new String(Files.readAllBytes(entry), "ISO-8859-1");
+    Files.write(entry, contents.replace("file.0.path=build/jars/test.jar", "file.0.path=../evil.txt").getBytes("ISO-8859-1"));
+    assertFalse(cache.load("key", project, asList(project.resolve("build/jars"))));
+    assertFalse(Files.exists(directory.resolve("evil.txt")));
+    assertTrue(Files.isRegularFile(project.resolve("build/jars/test.jar")));
+
+    Files.write(entry, contents.replace("file.0.path=build/jars/test.jar", "file.0.path=build/classes/Test.class").getBytes("ISO-8859-1"));
+    assertFalse(cache.load("key", project, asList(project.resolve("build/jars"))));
+
+    Files.write(entry, contents.replaceAll("file.0.hash=[0-9a-f]+", "file.0.hash=../../../evil").getBytes("ISO-8859-1"));
+    assertFalse(cache.load("key", project, asList(project.resolve("build/jars"))));
+  }
+}
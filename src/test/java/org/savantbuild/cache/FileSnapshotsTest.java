@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.cache;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Properties;
+import java.util.SortedMap;
+
+import org.savantbuild.BaseUnitTest;
+import org.savantbuild.dep.PathTools;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests the file snapshots.
+ *
+ * @author Brian Pontarelli
+ */
+public class FileSnapshotsTest extends BaseUnitTest {
+  @Test
+  public void snapshot() throws Exception {
+    Path directory = projectDir.resolve("build/test/file-snapshots").toAbsolutePath();
+    PathTools.prune(directory);
+    Path cacheFile = directory.resolve("cache/file-hashes.properties");
+    Path tree = directory.resolve("tree");
+    FileTime past = FileTime.fromMillis(System.currentTimeMillis() - 60000);
+    for (int i = 0; i < 40; i++) {
+      write(tree.resolve("dir" + (i % 4)).resolve("sub").resolve("file" + i + ".txt"), "file " + i, past);
+    }
+    byte[] large = new byte[200 * 1024];
+    large[large.length - 1] = 42;
+    Files.write(tree.resolve("large.bin"), large);
+    Files.setLastModifiedTime(tree.resolve("large.bin"), past);
+
+    FileSnapshots snapshots = new FileSnapshots(output, cacheFile);
+    SortedMap<Path, String> snapshot = snapshots.snapshot(tree);
+    assertEquals(snapshot.size(), 41);
+    assertEquals(snapshot.firstKey(), tree.resolve("dir0/sub/file0.txt"));
+    assertEquals(snapshot.get(tree.resolve("dir1/sub/file13.txt")), Hashes.sha256("file 13"));
+    assertEquals(snapshot.get(tree.resolve("large.bin")), Hashes.sha256(large));
+
+    // Changing the contents without changing the size or last modified time proves that the file isn't read again
+    Path file = tree.resolve("dir1/sub/file13.txt");
+    write(file, "FILE 13", past);
+    assertEquals(snapshots.hash(file), Hashes.sha256("file 13"));
+
+    // The cache is loaded by a new instance
+    snapshots.save();
+    assertTrue(Files.isRegularFile(cacheFile));
+    assertEquals(new FileSnapshots(output, cacheFile).hash(file), Hashes.sha256("file 13"));
+
+    // Changing the last modified time causes the file to be read
+    write(file, "FILE 13", FileTime.fromMillis(past.toMillis() + 1000));
+    assertEquals(snapshots.hash(file), Hashes.sha256("FILE 13"));
+
+    // Files that were just modified are never cached
+    Path recent = tree.resolve("recent.txt");
+    Files.write(recent, "recent".getBytes(StandardCharsets.UTF_8));
+    FileTime now = Files.getLastModifiedTime(recent);
+    assertEquals(snapshots.hash(recent), Hashes.sha256("recent"));
+    write(recent, "RECENT", now);
+    assertEquals(snapshots.hash(recent), Hashes.sha256("RECENT"));
+
+    // A snapshot of a sub-directory without a cache file
+    assertEquals(new FileSnapshots(output, null).snapshot(tree.resolve("dir2")).size(), 10);
+
+    // Deleted files are removed from the cache by the next snapshot
+    Path deleted = tree.resolve("dir3/sub/file3.txt");
+    Files.delete(deleted);
+    assertEquals(snapshots.snapshot(tree).size(), 41);
+    snapshots.save();
+    Properties properties = new Properties();
+    try (InputStream is = Files.newInputStream(cacheFile)) {
+      properties.load(is);
+    }
+    assertFalse(properties.containsKey(deleted.toString()));
+    assertTrue(properties.containsKey(tree.resolve("dir3/sub/file7.txt").toString()));
+  }
+
+  private void write(Path file, String contents, FileTime lastModified) throws Exception {
+    Files.createDirectories(file.getParent());
+    Files.write(file, contents.getBytes(StandardCharsets.UTF_8));
+    Files.setLastModifiedTime(file, lastModified);
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2001-2010, Inversoft, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.domain;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.savantbuild.BaseUnitTest;
+import org.savantbuild.parser.ParseException;
+import org.testng.annotations.Test;
+
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Tests the compact target graph.
+ *
+ * @author Brian Pontarelli
+ */
+public class CompactTargetGraphTest extends BaseUnitTest {
+  @Test
+  public void build() {
+    Project project = new Project(null, output);
+    add(project, "clean");
+    add(project, "compile");
+    add(project, "resources");
+    add(project, "test", "resources", "compile");
+    add(project, "jar", "compile");
+    add(project, "int", "test", "jar", "other:jar");
+
+    CompactTargetGraph graph = CompactTargetGraph.build(project);
+    assertEquals(graph.size(), 6);
+    for (int id = 0; id < graph.size(); id++) {
+      assertEquals(graph.id(graph.name(id)), id);
+      assertEquals(graph.targets[id], project.targets.get(graph.name(id)));
+
+      // Dependencies always come first
+      for (int i = graph.offsets[id]; i < graph.offsets[id + 1]; i++) {
+        assertTrue(graph.edges[i] < id);
+      }
+    }
+
+    assertEquals(graph.id("missing"), -1);
+    assertEquals(names(graph, graph.closure(graph.id("int"))), asList("resources", "compile", "test", "jar", "int"));
+    assertEquals(names(graph, graph.closure(graph.id("clean"))), asList("clean"));
+  }
+
+  @Test
+  public void buildCycle() {
+    Project project = new Project(null, output);
+    add(project, "compile", "resources");
+    add(project, "resources", "test");
+    add(project, "test", "compile");
+    add(project, "clean");
+
+    try {
+      CompactTargetGraph.build(project);
+      fail("Should have failed");
+    } catch (ParseException e) {
+      assertEquals(e.getMessage(), "The dependsOn of the targets has a cycle [compile -> resources -> test -> compile]");
+    }
+  }
+
+  @Test
+  public void buildLarge() {
+    // A long chain doesn't overflow the stack
+    Project project = new Project(null, output);
+    add(project, "target0");
+    for (int i = 1; i < 20000; i++) {
+      add(project, "target" + i, "target" + (i - 1));
+    }
+
+    CompactTargetGraph graph = CompactTargetGraph.build(project);
+    assertEquals(graph.closure(graph.id("target19999")).cardinality(), 20000);
+    assertEquals(graph.name(0), "target0");
+    assertEquals(graph.name(19999), "target19999");
+  }
+
+  @Test
+  public void buildMissingDependency() {
+    Project project = new Project(null, output);
+    add(project, "test", "compile");
+
+    try {
+      CompactTargetGraph.build(project);
+      fail("Should have failed");
+    } catch (ParseException e) {
+      assertTrue(e.getMessage().contains("[compile]"));
+    }
+
+    // Dependencies on other projects are only valid in a workspace
+    add(project, "compile");
+    add(project, "jar", "core:jar");
+    project.subProjects.add(new Project(null, output));
+    try {
+      CompactTargetGraph.build(project);
+      fail("Should have failed");
+    } catch (ParseException e) {
+      assertTrue(e.getMessage().contains("[core:jar]"));
+    }
+  }
+
+  private void add(Project project, String name, String... dependencies) {
+    project.targets.put(name, new Target(name, name, () -> {}, dependencies));
+  }
+
+  private List<String> names(CompactTargetGraph graph, BitSet ids) {
+    List<String> names = new ArrayList<>();
+    ids.stream().forEach((id) -> names.add(graph.name(id)));
+    return names;
+  }
+}
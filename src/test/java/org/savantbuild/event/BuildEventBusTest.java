@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2001-2010, Inversoft, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.event;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.savantbuild.BaseUnitTest;
+import org.testng.annotations.Test;
+
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests the build event bus.
+ *
+ * @author Brian Pontarelli
+ */
+public class BuildEventBusTest extends BaseUnitTest {
+  @Test
+  public void publish() throws Exception {
+    // A small buffer makes the publishers wrap around and wait for the listener
+    BuildEventBus bus = new BuildEventBus(output, 16);
+    bus.publish(new TargetStarted("before:0"));
+
+    Map<String, List<Integer>> received = new ConcurrentHashMap<>();
+    List<Thread> threads = new ArrayList<>();
+    bus.subscribe((event) -> {
+      assertEquals(Thread.currentThread().getName(), "Savant build events");
+      String[] parts = ((TargetStarted) event).target.split(":");
+      received.computeIfAbsent(parts[0], (key) -> new ArrayList<>()).add(Integer.parseInt(parts[1]));
+    });
+
+    // A failing listener (even one that throws an Error) doesn't stop the others
+    AtomicBoolean failed = new AtomicBoolean();
+    bus.subscribe((event) -> {
+      if (failed.compareAndSet(false, true)) {
+        throw new AssertionError("Bad listener");
+      }
+    });
+
+    for (int i = 0; i < 4; i++) {
+      String name = "thread" + i;
+      threads.add(new Thread(() -> {
+        for (int j = 0; j < 1000; j++) {
+          bus.publish(new TargetStarted(name + ":" + j));
+        }
+      }));
+    }
+
+    threads.forEach(Thread::start);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    bus.close();
+    bus.publish(new TargetStarted("after:0"));
+
+    // The events published before the first listener subscribed are delivered, but nothing is delivered after closing
+    assertTrue(failed.get());
+    assertEquals(received.remove("before"), asList(0));
+
+    // Each publisher's events arrive in order
+    assertEquals(received.keySet(), new HashSet<>(asList("thread0", "thread1", "thread2", "thread3")));
+    for (List<Integer> sequence : received.values()) {
+      assertEquals(sequence.size(), 1000);
+      for (int i = 0; i < sequence.size(); i++) {
+        assertEquals((int) sequence.get(i), i);
+      }
+    }
+  }
+
+  @Test
+  public void flush() throws Exception {
+    BuildEventBus bus = new BuildEventBus(output);
+    List<BuildEvent> received = new ArrayList<>();
+    bus.subscribe((event) -> {
+      try {
+        Thread.sleep(10);
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+
+      received.add(event);
+    });
+
+    for (int i = 0; i < 10; i++) {
+      bus.publish(new TargetSkipped("target" + i, TargetSkipped.Reason.UP_TO_DATE));
+    }
+
+    bus.flush();
+    assertEquals(received.size(), 10);
+    assertTrue(received.get(9) instanceof TargetSkipped);
+    assertEquals(((TargetSkipped) received.get(9)).target, "target9");
+    bus.close();
+  }
+}
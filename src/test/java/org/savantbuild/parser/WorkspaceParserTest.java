@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.parser;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.savantbuild.BaseUnitTest;
+import org.savantbuild.dep.PathTools;
+import org.savantbuild.domain.Project;
+import org.savantbuild.domain.Target;
+import org.savantbuild.runtime.DefaultProjectRunner;
+import org.savantbuild.runtime.RuntimeConfiguration;
+import org.testng.annotations.Test;
+
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Tests the workspace parser.
+ *
+ * @author Brian Pontarelli
+ */
+public class WorkspaceParserTest extends BaseUnitTest {
+  @Test
+  public void parse() throws Exception {
+    Path directory = projectDir.resolve("build/test/workspace").toAbsolutePath();
+    PathTools.prune(directory);
+    Path workspaceFile = write(directory.resolve(WorkspaceParser.WORKSPACE_FILE), "# The projects\ncore\n\nmodules/*\n");
+    write(directory.resolve("core/build.savant"), "");
+    write(directory.resolve("modules/api/build.savant"), "");
+    write(directory.resolve("modules/web/build.savant"), "");
+    Files.createDirectories(directory.resolve("modules/not-a-project"));
+
+    List<String> calledTargets = Collections.synchronizedList(new ArrayList<>());
+    BuildFileParser buildFileParser = (file, runtimeConfiguration) -> {
+      Project project = new Project(file.getParent(), output);
+      project.targets.put("compile", new Target("compile", "Compile", () -> calledTargets.add(project.directory.getFileName() + ":compile")));
+      if (project.directory.endsWith("web")) {
+        project.targets.put("jar", new Target("jar", "Jar", () -> calledTargets.add("web:jar"), "compile", "core:compile", "modules/api:compile"));
+      }
+
+      project.targetGraph = new DefaultTargetGraphBuilder().build(project);
+      return project;
+    };
+
+    RuntimeConfiguration runtimeConfiguration = new RuntimeConfiguration();
+    runtimeConfiguration.targets = asList("compile", "modules/web:jar");
+    Project workspace = new WorkspaceParser(output, buildFileParser, new DefaultTargetGraphBuilder()).parse(workspaceFile, runtimeConfiguration);
+    assertEquals(workspace.directory, directory);
+    assertEquals(workspace.subProjects.size(), 3);
+    assertEquals(workspace.subProjects.get(0).directory, directory.resolve("core"));
+    assertEquals(workspace.subProjects.get(1).directory, directory.resolve("modules/api"));
+    assertEquals(workspace.subProjects.get(2).directory, directory.resolve("modules/web"));
+    assertEquals(workspace.targets.size(), 4);
+    assertSame(workspace.targets.get("modules/web:jar").project, workspace.subProjects.get(2));
+    assertEquals(workspace.targets.get("modules/web:jar").dependencies, asList("modules/web:compile", "core:compile", "modules/api:compile"));
+    assertTrue(workspace.targetGraph.contains(workspace.targets.get("core:compile")));
+
+    // Unqualified targets run for every project that defines them
+    assertEquals(runtimeConfiguration.targets, asList("core:compile", "modules/api:compile", "modules/web:compile", "modules/web:jar"));
+
+    new DefaultProjectRunner(output).run(workspace, runtimeConfiguration.targets);
+    assertEquals(calledTargets, asList("core:compile", "api:compile", "web:compile", "web:jar"));
+  }
+
+  @Test
+  public void parseMissingProject() throws Exception {
+    Path directory = projectDir.resolve("build/test/workspace-missing").toAbsolutePath();
+    PathTools.prune(directory);
+    Path workspaceFile = write(directory.resolve(WorkspaceParser.WORKSPACE_FILE), "core\n");
+
+    try {
+      new WorkspaceParser(output, (file, runtimeConfiguration) -> null, new DefaultTargetGraphBuilder()).parse(workspaceFile, new RuntimeConfiguration());
+      fail("Should have failed");
+    } catch (ParseException e) {
+      assertTrue(e.getMessage().contains("[core]"));
+    }
+  }
+
+  @Test
+  public void parseInvalidCrossProjectDependency() throws Exception {
+    Path directory = projectDir.resolve("build/test/workspace-invalid").toAbsolutePath();
+    PathTools.prune(directory);
+    Path workspaceFile = write(directory.resolve(WorkspaceParser.WORKSPACE_FILE), "core\n");
+    write(directory.resolve("core/build.savant"), "");
+
+    BuildFileParser buildFileParser = (file, runtimeConfiguration) -> {
+      Project project = new Project(file.getParent(), output);
+      project.targets.put("compile", new Target("compile", "Compile", () -> {}, "other:compile"));
+      project.targetGraph = new DefaultTargetGraphBuilder().build(project);
+      return project;
+    };
+
+    try {
+      new WorkspaceParser(output, buildFileParser, new DefaultTargetGraphBuilder()).parse(workspaceFile, new RuntimeConfiguration());
+      fail("Should have failed");
+    } catch (ParseException e) {
+      assertTrue(e.getMessage().contains("[other:compile]"));
+    }
+  }
+
+  private Path write(Path file, String contents) throws Exception {
+    Files.createDirectories(file.getParent());
+    return Files.write(file, contents.getBytes(StandardCharsets.UTF_8));
+  }
+}
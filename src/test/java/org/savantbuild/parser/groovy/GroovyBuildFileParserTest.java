@@ -15,9 +15,14 @@
  */
 package org.savantbuild.parser.groovy;
 
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.stream.Stream;
 
 import org.savantbuild.BaseUnitTest;
+import org.savantbuild.cache.HTTPRemoteBuildCache;
+import org.savantbuild.dep.PathTools;
 import org.savantbuild.dep.domain.Artifact;
 import org.savantbuild.dep.domain.ArtifactID;
 import org.savantbuild.dep.domain.ArtifactMetaData;
@@ -43,9 +48,11 @@ import org.testng.annotations.Test;
 
 import static java.util.Arrays.asList;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 /**
  * Tests the groovy build file parser.
@@ -72,6 +79,10 @@ public class GroovyBuildFileParserTest extends BaseUnitTest {
     assertEquals(project.targets.get("test").description, "This runs the tests");
     assertNotNull(project.targets.get("test").invocation);
     assertEquals(project.targets.get("test").dependencies, asList("compile"));
+    assertEquals(project.targets.get("test").inputs, asList(project.directory.resolve("src/main/java"), project.directory.resolve("src/test/java")));
+    assertEquals(project.targets.get("test").outputs, asList(project.directory.resolve("build/test-reports")));
+    assertTrue(project.targets.get("compile").inputs.isEmpty());
+    assertTrue(project.targets.get("compile").outputs.isEmpty());
 
     // Verify the target graph
     Graph<Target, Object> expected = new HashGraph<>();
@@ -91,6 +102,11 @@ public class GroovyBuildFileParserTest extends BaseUnitTest {
     assertEquals(project.workflow.publishWorkflow.processes.size(), 1);
     assertEquals(((CacheProcess) project.workflow.publishWorkflow.processes.get(0)).dir, System.getProperty("user.home") + "/.savant/cache");
 
+    // Verify the build cache
+    assertEquals(project.buildCache.directory, project.directory.resolve("build/test/build-cache"));
+    assertEquals(((HTTPRemoteBuildCache) project.buildCache.remote).url, "http://localhost:7001/cache/");
+    assertTrue(project.buildCache.push);
+
     // Verify the PublishWorkflow
     assertEquals(project.publishWorkflow.processes.size(), 1);
     assertTrue(project.publishWorkflow.processes.get(0) instanceof SVNProcess);
@@ -119,6 +135,94 @@ public class GroovyBuildFileParserTest extends BaseUnitTest {
     assertEquals(project.publications, expectedPublications);
   }
 
+  @Test
+  public void parseCached() throws Exception {
+    Path cacheDir = projectDir.resolve("build/test/script-cache");
+    PathTools.prune(cacheDir);
+
+    CompiledScriptCache cache = new CompiledScriptCache(output, cacheDir, "0.3.0");
+    GroovyBuildFileParser parser = new GroovyBuildFileParser(output, new DefaultTargetGraphBuilder(), cache);
+    Path buildFile = projectDir.resolve("src/test/java/org/savantbuild/parser/groovy/simple.savant");
+    Project project = parser.parse(buildFile, new RuntimeConfiguration());
+    assertEquals(project.name, "name");
+    assertEquals(project.targets.get("test").dependencies, asList("compile"));
+    try (Stream<Path> entries = Files.list(cacheDir)) {
+      assertEquals(entries.count(), 1L);
+    }
+
+    // Parse again from the cache and verify the closures still work
+    project = parser.parse(buildFile, new RuntimeConfiguration());
+    assertEquals(project.targets.get("test").dependencies, asList("compile"));
+    project.targets.get("compile").invocation.run();
+    assertEquals(project.name, "changed");
+    try (Stream<Path> entries = Files.list(cacheDir)) {
+      assertEquals(entries.count(), 1L);
+    }
+
+    // A different Savant version is a different entry
+    new GroovyBuildFileParser(output, new DefaultTargetGraphBuilder(), new CompiledScriptCache(output, cacheDir, "0.4.0")).parse(buildFile, new RuntimeConfiguration());
+    try (Stream<Path> entries = Files.list(cacheDir)) {
+      assertEquals(entries.count(), 2L);
+    }
+  }
+
+  @Test
+  public void parseCachedTargets() throws Exception {
+    Path cacheDir = projectDir.resolve("build/test/target-cache");
+    PathTools.prune(cacheDir);
+
+    GroovyBuildFileParser parser = new GroovyBuildFileParser(output, new DefaultTargetGraphBuilder(), null, new TargetCache(output, cacheDir));
+    Path buildFile = projectDir.resolve("src/test/java/org/savantbuild/parser/groovy/simple.savant");
+    RuntimeConfiguration runtimeConfiguration = new RuntimeConfiguration();
+    runtimeConfiguration.listTargets = true;
+
+    // The first time the build file is run
+    Project project = parser.parse(buildFile, runtimeConfiguration);
+    assertEquals(project.name, "name");
+    try (Stream<Path> entries = Files.list(cacheDir)) {
+      assertEquals(entries.count(), 1L);
+    }
+
+    // The second time only the cached targets are loaded
+    project = parser.parse(buildFile, runtimeConfiguration);
+    assertNull(project.name);
+    assertEquals(project.targets.keySet(), new HashSet<>(asList("compile", "test")));
+    assertEquals(project.targets.get("compile").description, "This target compiles everything");
+    assertNull(project.targets.get("compile").invocation);
+    assertEquals(project.targets.get("test").dependencies, asList("compile"));
+    assertEquals(project.targets.get("test").inputs, asList(project.directory.resolve("src/main/java"), project.directory.resolve("src/test/java")));
+    assertEquals(project.targets.get("test").outputs, asList(project.directory.resolve("build/test-reports")));
+    assertTrue(project.targetGraph.contains(project.targets.get("test")));
+
+    // Builds always run the build file
+    project = parser.parse(buildFile, new RuntimeConfiguration());
+    assertEquals(project.name, "name");
+    assertNotNull(project.targets.get("compile").invocation);
+  }
+
+  @Test
+  public void parseCachedTargetsWithSwitches() throws Exception {
+    Path cacheDir = projectDir.resolve("build/test/target-cache-switches");
+    PathTools.prune(cacheDir);
+
+    GroovyBuildFileParser parser = new GroovyBuildFileParser(output, new DefaultTargetGraphBuilder(), null, new TargetCache(output, cacheDir));
+    Path buildFile = projectDir.resolve("src/test/java/org/savantbuild/parser/groovy/switch-targets.savant");
+    RuntimeConfiguration runtimeConfiguration = new RuntimeConfiguration();
+    runtimeConfiguration.listTargets = true;
+    runtimeConfiguration.switches.add("docs");
+
+    // The build file checks a switch, so its targets aren't cached
+    Project project = parser.parse(buildFile, runtimeConfiguration);
+    assertEquals(project.targets.keySet(), new HashSet<>(asList("compile", "doc")));
+    assertFalse(Files.isDirectory(cacheDir));
+
+    runtimeConfiguration = new RuntimeConfiguration();
+    runtimeConfiguration.listTargets = true;
+    project = parser.parse(buildFile, runtimeConfiguration);
+    assertEquals(project.targets.keySet(), new HashSet<>(asList("compile")));
+    assertFalse(Files.isDirectory(cacheDir));
+  }
+
   @Test
   public void parseMissingPlugin() {
     GroovyBuildFileParser parser = new GroovyBuildFileParser(output, new DefaultTargetGraphBuilder());
@@ -133,6 +237,21 @@ public class GroovyBuildFileParserTest extends BaseUnitTest {
     }
   }
 
+  @Test
+  public void parseUnusedPluginFailure() {
+    GroovyBuildFileParser parser = new GroovyBuildFileParser(output, new DefaultTargetGraphBuilder());
+    Path buildFile = projectDir.resolve("src/test/java/org/savantbuild/parser/groovy/unused-plugin.savant");
+
+    // The project doesn't have a workflow, so the plugin fails to load even though the build file never uses it
+    try {
+      parser.parse(buildFile, new RuntimeConfiguration());
+      fail("Should have failed");
+    } catch (BuildFailureException e) {
+      // Expected and the failure contains the line of the loadPlugin call
+      assertTrue(Stream.of(e.getStackTrace()).anyMatch((ste) -> "unused-plugin.savant".equals(ste.getFileName()) && ste.getLineNumber() == 6));
+    }
+  }
+
   @Test
   public void parseWithSwitches() {
     GroovyBuildFileParser parser = new GroovyBuildFileParser(output, new DefaultTargetGraphBuilder());
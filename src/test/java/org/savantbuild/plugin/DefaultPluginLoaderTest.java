@@ -15,7 +15,19 @@
  */
 package org.savantbuild.plugin;
 
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.savantbuild.BaseUnitTest;
+import org.savantbuild.dep.PathTools;
 import org.savantbuild.dep.domain.Artifact;
 import org.savantbuild.dep.domain.License;
 import org.savantbuild.dep.domain.Version;
@@ -23,6 +35,7 @@ import org.savantbuild.dep.workflow.FetchWorkflow;
 import org.savantbuild.dep.workflow.PublishWorkflow;
 import org.savantbuild.dep.workflow.Workflow;
 import org.savantbuild.dep.workflow.process.CacheProcess;
+import org.savantbuild.dep.workflow.process.URLProcess;
 import org.savantbuild.domain.Project;
 import org.savantbuild.output.Output;
 import org.savantbuild.output.SystemOutOutput;
@@ -31,6 +44,10 @@ import org.savantbuild.security.MD5;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
+import com.sun.net.httpserver.HttpServer;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
@@ -79,7 +96,7 @@ public class DefaultPluginLoaderTest extends BaseUnitTest {
   public void loadBadClass() throws Exception {
     Output output = new SystemOutOutput(false);
     Project project = makeProject(output);
-    DefaultPluginLoader loader = new DefaultPluginLoader(project, new RuntimeConfiguration(), output);
+    DefaultPluginLoader loader = new DefaultPluginLoader(project, new RuntimeConfiguration(), output, null);
 
     try {
       loader.load(new Artifact("org.savantbuild.test:bad-class:0.1.0", false));
@@ -94,7 +111,7 @@ public class DefaultPluginLoaderTest extends BaseUnitTest {
   public void loadBadConstructor() throws Exception {
     Output output = new SystemOutOutput(false);
     Project project = makeProject(output);
-    DefaultPluginLoader loader = new DefaultPluginLoader(project, new RuntimeConfiguration(), output);
+    DefaultPluginLoader loader = new DefaultPluginLoader(project, new RuntimeConfiguration(), output, null);
 
     try {
       loader.load(new Artifact("org.savantbuild.test:bad-constructor:0.1.0", false));
@@ -109,7 +126,7 @@ public class DefaultPluginLoaderTest extends BaseUnitTest {
   public void loadBadManifest() throws Exception {
     Output output = new SystemOutOutput(false);
     Project project = makeProject(output);
-    DefaultPluginLoader loader = new DefaultPluginLoader(project, new RuntimeConfiguration(), output);
+    DefaultPluginLoader loader = new DefaultPluginLoader(project, new RuntimeConfiguration(), output, null);
 
     try {
       loader.load(new Artifact("org.savantbuild.test:bad-manifest:0.1.0", false));
@@ -124,18 +141,120 @@ public class DefaultPluginLoaderTest extends BaseUnitTest {
   public void loadGood() throws Exception {
     Output output = new SystemOutOutput(false);
     Project project = makeProject(output);
-    DefaultPluginLoader loader = new DefaultPluginLoader(project, new RuntimeConfiguration(), output);
+    DefaultPluginLoader loader = new DefaultPluginLoader(project, new RuntimeConfiguration(), output, null);
 
     GoodPlugin plugin = (GoodPlugin) loader.load(new Artifact("org.savantbuild.test:good:0.1.0", false));
     assertSame(plugin.project, project);
     assertSame(plugin.output, output);
   }
 
+  @Test
+  public void loadGoodCached() throws Exception {
+    Output output = new SystemOutOutput(false);
+    Project project = makeProject(output);
+    Path cacheDir = projectDir.resolve("build/test/plugin-cache");
+    PathTools.prune(cacheDir);
+
+    PluginCache cache = new PluginCache(output, cacheDir);
+    Artifact pluginDependency = new Artifact("org.savantbuild.test:good:0.1.0", false);
+    assertNull(cache.get(pluginDependency, project.workflow));
+
+    DefaultPluginLoader loader = new DefaultPluginLoader(project, new RuntimeConfiguration(), output, cache);
+    GoodPlugin plugin = (GoodPlugin) loader.load(pluginDependency);
+    assertSame(plugin.project, project);
+
+    ResolvedPlugin resolvedPlugin = cache.get(pluginDependency, project.workflow);
+    assertNotNull(resolvedPlugin);
+    assertEquals(resolvedPlugin.pluginClassName, GoodPlugin.class.getName());
+    assertTrue(resolvedPlugin.classpath.get(0).file.endsWith("good-0.1.0.jar"));
+    assertEquals(resolvedPlugin.classpath.get(0).id, "org.savantbuild.test:good:good:jar");
+    assertEquals(resolvedPlugin.classpath.get(0).version, "0.1.0");
+
+    // Load again from the cache
+    plugin = (GoodPlugin) new DefaultPluginLoader(project, new RuntimeConfiguration(), output, cache).load(pluginDependency);
+    assertSame(plugin.project, project);
+
+    // Changing the plugin JAR makes the entry stale
+    Path jar = resolvedPlugin.classpath.get(0).file;
+    FileTime lastModified = Files.getLastModifiedTime(jar);
+    try {
+      Files.setLastModifiedTime(jar, FileTime.fromMillis(lastModified.toMillis() - 10000));
+      assertNull(cache.get(pluginDependency, project.workflow));
+    } finally {
+      Files.setLastModifiedTime(jar, lastModified);
+    }
+  }
+
+  @Test
+  public void loadConcurrentFetches() throws Exception {
+    Output output = new SystemOutOutput(false);
+    Path cacheDir = projectDir.resolve("build/test/plugin-fetch-cache");
+    PathTools.prune(cacheDir);
+
+    // Each JAR request waits until another JAR request is in flight, which only happens if the fetches overlap
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxInFlight = new AtomicInteger();
+    CountDownLatch overlapped = new CountDownLatch(1);
+    HttpServer server = HttpServer.create(new InetSocketAddress(7001), 0);
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.createContext("/", (httpExchange) -> {
+      httpExchange.getRequestBody().close();
+      Path file = projectDir.resolve(httpExchange.getRequestURI().getPath().substring(1));
+      boolean jar = file.toString().endsWith(".jar");
+      try {
+        if (jar) {
+          maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+          if (inFlight.get() > 1) {
+            overlapped.countDown();
+          }
+
+          overlapped.await(5, TimeUnit.SECONDS);
+        }
+
+        if (Files.isRegularFile(file)) {
+          byte[] bytes = Files.readAllBytes(file);
+          httpExchange.sendResponseHeaders(200, bytes.length);
+          httpExchange.getResponseBody().write(bytes);
+        } else {
+          httpExchange.sendResponseHeaders(404, -1);
+        }
+      } catch (InterruptedException e) {
+        httpExchange.sendResponseHeaders(500, -1);
+      } finally {
+        if (jar) {
+          inFlight.decrementAndGet();
+        }
+
+        httpExchange.close();
+      }
+    });
+
+    server.start();
+    ExecutorService pool = Executors.newFixedThreadPool(2);
+    try {
+      Project project = makeProject(output);
+      project.workflow = new Workflow(
+          new FetchWorkflow(output, new CacheProcess(output, cacheDir.toString()), new URLProcess(output, "http://localhost:7001/src/test/plugin-repository", null, null)),
+          new PublishWorkflow(new CacheProcess(output, cacheDir.toString()))
+      );
+
+      DefaultPluginLoader loader = new DefaultPluginLoader(project, new RuntimeConfiguration(), output, null);
+      Future<ResolvedPlugin> good = pool.submit(() -> loader.resolve(new Artifact("org.savantbuild.test:good:0.1.0", false)));
+      Future<ResolvedPlugin> missingClass = pool.submit(() -> loader.resolve(new Artifact("org.savantbuild.test:missing-class:0.1.0", false)));
+      assertEquals(good.get().pluginClassName, GoodPlugin.class.getName());
+      assertNotNull(missingClass.get());
+      assertEquals(maxInFlight.get(), 2);
+    } finally {
+      pool.shutdown();
+      server.stop(0);
+    }
+  }
+
   @Test
   public void loadMissingClass() throws Exception {
     Output output = new SystemOutOutput(false);
     Project project = makeProject(output);
-    DefaultPluginLoader loader = new DefaultPluginLoader(project, new RuntimeConfiguration(), output);
+    DefaultPluginLoader loader = new DefaultPluginLoader(project, new RuntimeConfiguration(), output, null);
 
     try {
       loader.load(new Artifact("org.savantbuild.test:missing-class:0.1.0", false));
@@ -150,7 +269,7 @@ public class DefaultPluginLoaderTest extends BaseUnitTest {
   public void loadMissingManifest() throws Exception {
     Output output = new SystemOutOutput(false);
     Project project = makeProject(output);
-    DefaultPluginLoader loader = new DefaultPluginLoader(project, new RuntimeConfiguration(), output);
+    DefaultPluginLoader loader = new DefaultPluginLoader(project, new RuntimeConfiguration(), output, null);
 
     try {
       loader.load(new Artifact("org.savantbuild.test:missing-manifest:0.1.0", false));
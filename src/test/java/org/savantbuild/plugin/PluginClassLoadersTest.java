@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.plugin;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.savantbuild.BaseUnitTest;
+import org.savantbuild.dep.PathTools;
+import org.testng.annotations.Test;
+
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+
+/**
+ * Tests the plugin class loaders.
+ *
+ * @author Brian Pontarelli
+ */
+public class PluginClassLoadersTest extends BaseUnitTest {
+  @Test
+  public void conflict() throws Exception {
+    PluginClassLoaders classLoaders = new PluginClassLoaders(ClassLoader.getSystemClassLoader());
+    URLClassLoader first = classLoaders.classLoader(makePlugin("first", "1.0"), output);
+    URLClassLoader second = classLoaders.classLoader(makePlugin("second", "2.0"), output);
+
+    assertSame(first.getParent(), classLoaders.sharedClassLoader());
+    assertSame(second.getParent(), ClassLoader.getSystemClassLoader());
+    assertEquals(asList(second.getURLs()), asList(url("second-0.1.0.jar"), url("utils-2.0.jar")));
+    assertEquals(asList(classLoaders.sharedClassLoader().getURLs()), asList(url("utils-1.0.jar")));
+  }
+
+  @Test
+  public void conflictOrder() throws Exception {
+    // The plugins are created in the order of their IDs no matter which order they are passed in
+    PluginClassLoaders classLoaders = new PluginClassLoaders(ClassLoader.getSystemClassLoader());
+    ResolvedPlugin first = makePlugin("first", "1.0");
+    ResolvedPlugin second = makePlugin("second", "2.0");
+    classLoaders.classLoaders(asList(second, first), output);
+
+    assertSame(classLoaders.classLoader(first, output).getParent(), classLoaders.sharedClassLoader());
+    assertSame(classLoaders.classLoader(second, output).getParent(), ClassLoader.getSystemClassLoader());
+    assertEquals(asList(classLoaders.sharedClassLoader().getURLs()), asList(url("utils-1.0.jar")));
+  }
+
+  @Test
+  public void changedFiles() throws Exception {
+    Path directory = file("");
+    PathTools.prune(directory);
+    Files.createDirectories(directory);
+    Files.write(file("first-0.1.0.jar"), new byte[0]);
+    Files.write(file("utils-1.0.jar"), new byte[0]);
+
+    PluginClassLoaders classLoaders = new PluginClassLoaders(ClassLoader.getSystemClassLoader());
+    URLClassLoader first = classLoaders.classLoader(makePlugin("first", "1.0"), output);
+    URLClassLoader shared = classLoaders.sharedClassLoader();
+    assertSame(classLoaders.classLoader(makePlugin("first", "1.0"), output), first);
+
+    // A plugin JAR that was published again with the same version gets a new class loader
+    Files.setLastModifiedTime(file("first-0.1.0.jar"), FileTime.fromMillis(System.currentTimeMillis() + 60000));
+    URLClassLoader changed = classLoaders.classLoader(makePlugin("first", "1.0"), output);
+    assertNotSame(changed, first);
+    assertSame(changed.getParent(), shared);
+
+    // A changed dependency replaces the shared class loader
+    Files.setLastModifiedTime(file("utils-1.0.jar"), FileTime.fromMillis(System.currentTimeMillis() + 60000));
+    URLClassLoader reset = classLoaders.classLoader(makePlugin("first", "1.0"), output);
+    assertNotSame(reset, changed);
+    assertNotSame(classLoaders.sharedClassLoader(), shared);
+    assertSame(reset.getParent(), classLoaders.sharedClassLoader());
+    assertEquals(asList(classLoaders.sharedClassLoader().getURLs()), asList(url("utils-1.0.jar")));
+  }
+
+  @Test
+  public void shared() throws Exception {
+    PluginClassLoaders classLoaders = new PluginClassLoaders(ClassLoader.getSystemClassLoader());
+    URLClassLoader first = classLoaders.classLoader(makePlugin("first", "1.0"), output);
+    URLClassLoader second = classLoaders.classLoader(makePlugin("second", "1.0"), output);
+
+    assertNotSame(first, second);
+    assertSame(first.getParent(), classLoaders.sharedClassLoader());
+    assertSame(second.getParent(), classLoaders.sharedClassLoader());
+    assertEquals(asList(first.getURLs()), asList(url("first-0.1.0.jar")));
+    assertEquals(asList(second.getURLs()), asList(url("second-0.1.0.jar")));
+    assertEquals(asList(classLoaders.sharedClassLoader().getURLs()), asList(url("utils-1.0.jar")));
+
+    // The same plugin gets the same class loader
+    assertSame(classLoaders.classLoader(makePlugin("first", "1.0"), output), first);
+  }
+
+  private ResolvedPlugin makePlugin(String name, String utilsVersion) {
+    ResolvedPlugin resolvedPlugin = new ResolvedPlugin("org.example." + name + ".Plugin");
+    resolvedPlugin.classpath.add(new ResolvedPlugin.ClasspathEntry("org.example:" + name + ":" + name + ":jar", "0.1.0", file(name + "-0.1.0.jar")));
+    resolvedPlugin.classpath.add(new ResolvedPlugin.ClasspathEntry("org.example:utils:utils:jar", utilsVersion, file("utils-" + utilsVersion + ".jar")));
+    return resolvedPlugin;
+  }
+
+  private Path file(String name) {
+    return projectDir.resolve("build/test/plugin-class-loaders").resolve(name).toAbsolutePath();
+  }
+
+  private URL url(String name) throws Exception {
+    return file(name).toUri().toURL();
+  }
+}
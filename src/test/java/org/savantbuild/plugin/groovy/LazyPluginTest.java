@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.plugin.groovy;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.savantbuild.BaseUnitTest;
+import org.savantbuild.dep.domain.Artifact;
+import org.savantbuild.plugin.Plugin;
+import org.savantbuild.plugin.PluginLoadException;
+import org.testng.annotations.Test;
+
+import groovy.lang.Binding;
+import groovy.lang.GroovyShell;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.fail;
+
+/**
+ * Tests the lazy plugin.
+ *
+ * @author Brian Pontarelli
+ */
+public class LazyPluginTest extends BaseUnitTest {
+  @Test
+  public void delegates() throws Exception {
+    CompletableFuture<Plugin> future = new CompletableFuture<>();
+    LazyPlugin lazyPlugin = new LazyPlugin(new Artifact("org.savantbuild.test:settings:0.1.0", false), future);
+    SettingsPlugin plugin = new SettingsPlugin();
+
+    // Complete the plugin after the script starts to use it
+    new Thread(() -> {
+      try {
+        Thread.sleep(200);
+      } catch (InterruptedException e) {
+        // Ignore
+      }
+      future.complete(plugin);
+    }).start();
+
+    Binding binding = new Binding();
+    binding.setVariable("plugin", lazyPlugin);
+    Object result = new GroovyShell(binding).evaluate("plugin.settings.javaVersion = '1.8'\nplugin.name = 'changed'\nplugin.run('foo')");
+
+    assertEquals(result, "foo 1.8");
+    assertEquals(plugin.settings.get("javaVersion"), "1.8");
+    assertEquals(plugin.name, "changed");
+    assertSame(lazyPlugin.get(), plugin);
+  }
+
+  @Test
+  public void deferred() throws Exception {
+    AtomicInteger loads = new AtomicInteger();
+    FutureTask<Plugin> future = new FutureTask<>(() -> {
+      loads.incrementAndGet();
+      return new SettingsPlugin();
+    });
+    LazyPlugin lazyPlugin = new LazyPlugin(new Artifact("org.savantbuild.test:settings:0.1.0", false), future);
+    assertEquals(loads.get(), 0);
+
+    // The plugin is loaded by the first use
+    Binding binding = new Binding();
+    binding.setVariable("plugin", lazyPlugin);
+    assertEquals(new GroovyShell(binding).evaluate("plugin.name"), "settings");
+    assertEquals(new GroovyShell(binding).evaluate("plugin.run('foo')"), "foo null");
+    assertEquals(loads.get(), 1);
+  }
+
+  @Test
+  public void failure() throws Exception {
+    CompletableFuture<Plugin> future = new CompletableFuture<>();
+    future.completeExceptionally(new PluginLoadException("Bad plugin"));
+    LazyPlugin lazyPlugin = new LazyPlugin(new Artifact("org.savantbuild.test:bad:0.1.0", false), future);
+
+    Binding binding = new Binding();
+    binding.setVariable("plugin", lazyPlugin);
+    try {
+      new GroovyShell(binding).evaluate("plugin.run('foo')");
+      fail("Should have failed");
+    } catch (PluginLoadException e) {
+      assertEquals(e.getMessage(), "Bad plugin");
+    }
+  }
+
+  public static class SettingsPlugin implements Plugin {
+    public String name = "settings";
+
+    public Map<String, String> settings = new HashMap<>();
+
+    public String run(String value) {
+      return value + " " + settings.get("javaVersion");
+    }
+  }
+}
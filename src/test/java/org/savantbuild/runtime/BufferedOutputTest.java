@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2001-2010, Inversoft, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.runtime;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.savantbuild.BaseUnitTest;
+import org.savantbuild.output.Output;
+import org.testng.annotations.Test;
+
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests the buffered output.
+ *
+ * @author Brian Pontarelli
+ */
+public class BufferedOutputTest extends BaseUnitTest {
+  @Test
+  public void blocks() throws Exception {
+    RecordingOutput recording = new RecordingOutput();
+    BufferedOutput output = new BufferedOutput(recording);
+    output.info("Start");
+
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      String name = "target" + i;
+      threads.add(new Thread(() -> {
+        output.startBlock();
+        for (int j = 0; j < 100; j++) {
+          output.info("%s %d", name, j);
+          Thread.yield();
+        }
+        output.endBlock();
+      }));
+    }
+
+    threads.forEach(Thread::start);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    output.error("Done");
+    output.debug("Not written because debugging is disabled");
+    output.close();
+    output.info("After close");
+
+    // Each target's output is written together by the writer thread
+    assertEquals(recording.lines.size(), 403);
+    assertEquals(recording.lines.get(0), "INFO Start");
+    for (int i = 1; i < 401; i += 100) {
+      String target = recording.lines.get(i).split(" ")[1];
+      for (int j = 0; j < 100; j++) {
+        assertEquals(recording.lines.get(i + j), "INFO " + target + " " + j);
+      }
+    }
+    assertEquals(recording.lines.get(401), "ERROR Done");
+    assertEquals(recording.lines.get(402), "INFO After close");
+    assertNotEquals(recording.threads.get(0), Thread.currentThread());
+    assertEquals(recording.threads.get(402), Thread.currentThread());
+  }
+
+  @Test
+  public void debug() throws Exception {
+    RecordingOutput recording = new RecordingOutput();
+    BufferedOutput output = new BufferedOutput(recording);
+    output.info("Buffered");
+    output.enableDebug();
+    assertEquals(recording.lines, asList("INFO Buffered"));
+
+    // Debugging writes everything directly, even in blocks
+    output.startBlock();
+    output.debug("Direct");
+    output.info("Also direct");
+    output.endBlock();
+    assertEquals(recording.lines, asList("INFO Buffered", "DEBUG Direct", "INFO Also direct"));
+    assertTrue(recording.debug);
+    output.close();
+  }
+
+  @Test
+  public void flushBlock() throws Exception {
+    RecordingOutput recording = new RecordingOutput();
+    BufferedOutput output = new BufferedOutput(recording);
+    output.startBlock();
+    output.info(":[compile]:");
+    output.flushBlock();
+
+    // The header has been written when flushBlock returns, but the rest of the block waits for the end of the block
+    assertEquals(recording.lines, asList("INFO :[compile]:"));
+    output.info("Compiling");
+    output.flush();
+    assertEquals(recording.lines, asList("INFO :[compile]:"));
+    output.endBlock();
+    output.close();
+    assertEquals(recording.lines, asList("INFO :[compile]:", "INFO Compiling"));
+  }
+
+  @Test
+  public void largeBlock() throws Exception {
+    RecordingOutput recording = new RecordingOutput();
+    BufferedOutput output = new BufferedOutput(recording);
+    output.startBlock();
+    for (int i = 0; i < BufferedOutput.MAX_BLOCK_LINES; i++) {
+      output.info("Line %d", i);
+    }
+
+    // The full block is written without waiting for the end of the block
+    output.flush();
+    assertEquals(recording.lines.size(), BufferedOutput.MAX_BLOCK_LINES);
+    output.info("Last");
+    output.endBlock();
+    output.close();
+    assertEquals(recording.lines.size(), BufferedOutput.MAX_BLOCK_LINES + 1);
+  }
+
+  private static class RecordingOutput implements Output {
+    public final List<String> lines = new ArrayList<>();
+
+    public final List<Thread> threads = new ArrayList<>();
+
+    public boolean debug;
+
+    @Override
+    public void debug(String message, Object... values) {
+      record("DEBUG", message, values);
+    }
+
+    @Override
+    public void debug(Throwable t) {
+      record("DEBUG", t.toString());
+    }
+
+    @Override
+    public void disableDebug() {
+      debug = false;
+    }
+
+    @Override
+    public void enableDebug() {
+      debug = true;
+    }
+
+    @Override
+    public void error(String message, Object... values) {
+      record("ERROR", message, values);
+    }
+
+    @Override
+    public void info(String message, Object... values) {
+      record("INFO", message, values);
+    }
+
+    @Override
+    public void warning(String message, Object... values) {
+      record("WARNING", message, values);
+    }
+
+    private void record(String level, String message, Object... values) {
+      lines.add(level + " " + String.format(message, values));
+      threads.add(Thread.currentThread());
+    }
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.runtime;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.savantbuild.BaseUnitTest;
+import org.savantbuild.dep.PathTools;
+import org.savantbuild.domain.Project;
+import org.savantbuild.domain.Target;
+import org.savantbuild.parser.DefaultTargetGraphBuilder;
+import org.testng.annotations.Test;
+
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests the build profiler.
+ *
+ * @author Brian Pontarelli
+ */
+public class BuildProfilerTest extends BaseUnitTest {
+  @Test
+  public void notProfiled() {
+    Project project = new Project(null, output);
+    assertNull(project.profile("target", "compile"));
+  }
+
+  @Test
+  public void profileTargets() throws Exception {
+    Path directory = projectDir.resolve("build/test/profile");
+    PathTools.prune(directory);
+
+    Project project = new Project(directory, output);
+    project.profiler = new BuildProfiler();
+    project.targets.put("compile", new Target("compile", "Compiles \"everything\"", () -> {
+      StringBuilder build = new StringBuilder();
+      for (int i = 0; i < 1000; i++) {
+        build.append(i);
+      }
+    }));
+    project.targets.put("test", new Target("test", "Tests", () -> {
+    }, "compile"));
+    project.targetGraph = new DefaultTargetGraphBuilder().build(project);
+
+    new DefaultProjectRunner(output).run(project, asList("test"));
+
+    List<BuildProfiler.Span> spans = project.profiler.spans();
+    assertEquals(spans.size(), 2);
+    assertEquals(spans.get(0).category, "target");
+    assertEquals(spans.get(0).name, "compile");
+    assertEquals(spans.get(1).name, "test");
+    assertTrue(spans.get(0).wallNanos > 0);
+    assertTrue(spans.get(0).startNanos <= spans.get(1).startNanos);
+
+    project.profiler.writeReports(directory.resolve(BuildProfiler.REPORT_DIRECTORY));
+    String profile = new String(Files.readAllBytes(directory.resolve(BuildProfiler.REPORT_DIRECTORY + "/profile.json")), "UTF-8");
+    assertTrue(profile.contains("\"name\": \"compile\""));
+    assertTrue(profile.contains("\"allocatedBytes\": "));
+    String trace = new String(Files.readAllBytes(directory.resolve(BuildProfiler.REPORT_DIRECTORY + "/trace.json")), "UTF-8");
+    assertTrue(trace.startsWith("{\"traceEvents\": ["));
+    assertTrue(trace.contains("\"ph\": \"X\""));
+    assertTrue(trace.contains("\"name\": \"test\""));
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.runtime;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.savantbuild.BaseUnitTest;
+import org.savantbuild.dep.PathTools;
+import org.savantbuild.domain.Project;
+import org.savantbuild.domain.Target;
+import org.savantbuild.parser.DefaultTargetGraphBuilder;
+import org.testng.annotations.Test;
+
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Tests the build watcher.
+ *
+ * @author Brian Pontarelli
+ */
+public class BuildWatcherTest extends BaseUnitTest {
+  @Test
+  public void watch() throws Exception {
+    Path directory = projectDir.resolve("build/test/watch").toAbsolutePath();
+    PathTools.prune(directory);
+    Files.createDirectories(directory.resolve("src/main/java/org/example"));
+    Files.createDirectories(directory.resolve("src/test/java"));
+
+    List<String> calledTargets = Collections.synchronizedList(new ArrayList<>());
+    Project project = new Project(directory, output);
+    project.targets.put("compile", makeTarget("compile", calledTargets, directory.resolve("src/main/java")));
+    project.targets.put("test", makeTarget("test", calledTargets, directory.resolve("src/test/java"), "compile"));
+    project.targets.get("test").inputs.add(directory.resolve("build/generated"));
+    project.targets.get("compile").invocation = () -> {
+      calledTargets.add("compile");
+      try {
+        Files.createDirectories(directory.resolve("build/generated"));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    };
+    project.targets.put("doc", makeTarget("doc", calledTargets, null, "compile"));
+    project.targetGraph = new DefaultTargetGraphBuilder().build(project);
+
+    List<String> builds = Collections.synchronizedList(new ArrayList<>());
+    ProjectRunner projectRunner = new DefaultProjectRunner(output);
+    Thread thread = new Thread(() -> new BuildWatcher(output).watch(project, asList("test"), (filter) -> {
+      builds.add("build");
+      projectRunner.run(project, asList("test"), filter);
+    }));
+    thread.start();
+    try {
+      waitFor(calledTargets, asList("compile", "test"));
+
+      // A test change only runs the test target
+      Files.write(directory.resolve("src/test/java/FooTest.java"), "class FooTest {}".getBytes());
+      waitFor(calledTargets, asList("compile", "test", "test"));
+
+      // A compile change runs compile and test (but not doc, which wasn't requested)
+      Files.createDirectories(directory.resolve("src/main/java/org/example/sub"));
+      waitFor(calledTargets, asList("compile", "test", "test", "compile", "test"));
+
+      // New directories are watched
+      Files.write(directory.resolve("src/main/java/org/example/sub/Foo.java"), "class Foo {}".getBytes());
+      waitFor(calledTargets, asList("compile", "test", "test", "compile", "test", "compile", "test"));
+
+      // Every run is a separate build
+      assertEquals(builds.size(), 4);
+
+      // The generated directory didn't exist when the watch started, but compile created it
+      Files.write(directory.resolve("build/generated/Generated.java"), "class Generated {}".getBytes());
+      waitFor(calledTargets, asList("compile", "test", "test", "compile", "test", "compile", "test", "test"));
+    } finally {
+      thread.interrupt();
+      thread.join(10000);
+    }
+  }
+
+  private Target makeTarget(String name, List<String> calledTargets, Path input, String... dependencies) {
+    Target target = new Target(name, name, () -> calledTargets.add(name), dependencies);
+    if (input != null) {
+      target.inputs.add(input);
+    }
+
+    return target;
+  }
+
+  private void waitFor(List<String> calledTargets, List<String> expected) throws InterruptedException {
+    // Linux is fast, but polling watch services (i.e. Mac) can take up to 10 seconds
+    for (int i = 0; i < 300 && calledTargets.size() < expected.size(); i++) {
+      Thread.sleep(100);
+    }
+
+    // Make sure nothing else runs
+    Thread.sleep(BuildWatcher.QUIET_PERIOD_MILLIS * 2);
+    assertEquals(new ArrayList<>(calledTargets), expected);
+  }
+}
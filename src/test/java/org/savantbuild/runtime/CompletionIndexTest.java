@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2001-2010, Inversoft, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.runtime;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.savantbuild.BaseUnitTest;
+import org.savantbuild.dep.PathTools;
+import org.savantbuild.domain.Project;
+import org.savantbuild.domain.Target;
+import org.testng.annotations.Test;
+
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests the completion index.
+ *
+ * @author Brian Pontarelli
+ */
+public class CompletionIndexTest extends BaseUnitTest {
+  @Test
+  public void writeAndComplete() throws Exception {
+    Path directory = projectDir.resolve("build/test/completion").toAbsolutePath();
+    PathTools.prune(directory);
+    Files.createDirectories(directory);
+    Path buildFile = directory.resolve("build.savant");
+    Files.write(buildFile, "target(name: \"test\") {\n  if (!switches.has(\"skipTests\")) {\n  }\n}\n".getBytes(StandardCharsets.UTF_8));
+    Files.setLastModifiedTime(buildFile, FileTime.fromMillis(System.currentTimeMillis() - 60000));
+
+    Project project = new Project(directory, output);
+    project.buildFile = buildFile;
+    project.targets.put("test", new Target("test", "Test", () -> {}));
+    project.targets.put("compile", new Target("compile", "Compile", () -> {}));
+    project.targets.put("clean", new Target("clean", "Clean", () -> {}));
+
+    Switches switches = new Switches();
+    switches.values("testClass");
+
+    CompletionIndex index = new CompletionIndex(output, directory.resolve(CompletionIndex.INDEX_FILE));
+    assertTrue(index.isStale(buildFile));
+    assertEquals(index.complete("c"), asList());
+
+    index.write(project, switches);
+    assertFalse(index.isStale(buildFile));
+    assertEquals(index.complete("c"), asList("clean", "compile"));
+    assertEquals(index.complete("--t"), asList("--testClass", "--threads="));
+    assertEquals(index.complete("--s"), asList("--skipTests"));
+    assertTrue(index.complete("").containsAll(DefaultRuntimeConfigurationParser.FIXED_ARGUMENTS));
+
+    // Switches from earlier builds are kept
+    project.targets.remove("clean");
+    index.write(project, new Switches());
+    assertEquals(index.complete("c"), asList("compile"));
+    assertEquals(index.complete("--testC"), asList("--testClass"));
+
+    // Changing the build file makes the index stale
+    Files.setLastModifiedTime(buildFile, FileTime.fromMillis(System.currentTimeMillis() + 60000));
+    assertTrue(index.isStale(buildFile));
+  }
+
+  @Test
+  public void workspaceBuildFiles() throws Exception {
+    Path directory = projectDir.resolve("build/test/completion-workspace").toAbsolutePath();
+    PathTools.prune(directory);
+    Files.createDirectories(directory.resolve("child"));
+    Path workspaceFile = directory.resolve("savant.workspace");
+    Path buildFile = directory.resolve("child/build.savant");
+    Files.write(workspaceFile, "workspace {\n}\n".getBytes(StandardCharsets.UTF_8));
+    Files.write(buildFile, "target(name: \"compile\") {\n}\n".getBytes(StandardCharsets.UTF_8));
+    Files.setLastModifiedTime(workspaceFile, FileTime.fromMillis(System.currentTimeMillis() - 60000));
+    Files.setLastModifiedTime(buildFile, FileTime.fromMillis(System.currentTimeMillis() - 60000));
+
+    Project child = new Project(directory.resolve("child"), output);
+    child.buildFile = buildFile;
+
+    Project project = new Project(directory, output);
+    project.buildFile = workspaceFile;
+    project.subProjects.add(child);
+    project.targets.put("compile", new Target("compile", "Compile", () -> {}));
+
+    CompletionIndex index = new CompletionIndex(output, directory.resolve(CompletionIndex.INDEX_FILE));
+    index.write(project, new Switches());
+    assertFalse(index.isStale(workspaceFile));
+    assertEquals(Files.readAllLines(directory.resolve(CompletionIndex.BUILD_FILES_FILE)), asList(buildFile.toString()));
+
+    // Changing the build file of a project makes the index stale even though the workspace file didn't change
+    Files.setLastModifiedTime(buildFile, FileTime.fromMillis(System.currentTimeMillis() + 60000));
+    assertTrue(index.isStale(workspaceFile));
+  }
+}
@@ -15,16 +15,29 @@
  */
 package org.savantbuild.runtime;
 
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.savantbuild.BaseUnitTest;
 import org.savantbuild.dep.PathTools;
+import org.savantbuild.domain.Project;
+import org.savantbuild.domain.Target;
+import org.savantbuild.event.BuildEvent;
+import org.savantbuild.event.ScriptCompiled;
+import org.savantbuild.parser.BuildFileParser;
 import org.savantbuild.parser.DefaultTargetGraphBuilder;
 import org.savantbuild.parser.groovy.GroovyBuildFileParser;
 import org.testng.annotations.Test;
 
+import static java.util.Arrays.asList;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 /**
  * Tests the build runner.
@@ -44,4 +57,118 @@ public class DefaultBuildRunnerTest extends BaseUnitTest {
     runner.run(projectDir.resolve("test-project/build.savant"), new RuntimeConfiguration(true, "delete"));
     assertFalse(Files.isDirectory(projectDir.resolve("test-project/build")));
   }
+
+  @Test
+  public void affectedBy() throws Exception {
+    Path directory = projectDir.resolve("build/test/affected-by").toAbsolutePath();
+    PathTools.prune(directory);
+    Files.createDirectories(directory);
+    Files.write(directory.resolve("changed.txt"), "src/test/java/FooTest.java\n\nREADME.md\n".getBytes(StandardCharsets.UTF_8));
+
+    List<String> calledTargets = new ArrayList<>();
+    BuildFileParser buildFileParser = (file, runtimeConfiguration) -> {
+      Project project = new Project(directory, output);
+      project.targets.put("compile", makeTarget("compile", calledTargets, directory.resolve("src/main/java")));
+      project.targets.put("test", makeTarget("test", calledTargets, directory.resolve("src/test/java"), "compile"));
+      project.targets.put("doc", makeTarget("doc", calledTargets, directory.resolve("src/main/java"), "compile"));
+      project.targetGraph = new DefaultTargetGraphBuilder().build(project);
+      return project;
+    };
+
+    RuntimeConfiguration runtimeConfiguration = new RuntimeConfiguration(false, "test", "doc");
+    runtimeConfiguration.affectedBy = Paths.get("changed.txt");
+    BuildRunner runner = new DefaultBuildRunner(output, buildFileParser, new DefaultProjectRunner(output));
+    runner.run(directory.resolve("build.savant"), runtimeConfiguration);
+    assertEquals(calledTargets, asList("compile", "test"));
+
+    // Targets are required
+    calledTargets.clear();
+    Files.write(directory.resolve("changed.txt"), "src/main/java/Foo.java\n".getBytes(StandardCharsets.UTF_8));
+    runtimeConfiguration.targets.clear();
+    try {
+      runner.run(directory.resolve("build.savant"), runtimeConfiguration);
+      fail("Should have failed");
+    } catch (BuildRunException e) {
+      assertTrue(e.getMessage().contains("--affected-by"));
+    }
+    assertEquals(calledTargets, asList());
+
+    // Nothing runs if no targets are affected
+    calledTargets.clear();
+    Files.write(directory.resolve("changed.txt"), "README.md\n".getBytes(StandardCharsets.UTF_8));
+    runtimeConfiguration.targets.add("test");
+    runner.run(directory.resolve("build.savant"), runtimeConfiguration);
+    assertEquals(calledTargets, asList());
+  }
+
+  @Test
+  public void complete() throws Exception {
+    Path directory = projectDir.resolve("build/test/complete").toAbsolutePath();
+    PathTools.prune(directory);
+    Files.createDirectories(directory);
+    Files.write(directory.resolve("build.savant"), "".getBytes(StandardCharsets.UTF_8));
+
+    List<RuntimeConfiguration> parses = new ArrayList<>();
+    BuildFileParser buildFileParser = (file, runtimeConfiguration) -> {
+      parses.add(runtimeConfiguration);
+      Project project = new Project(directory, output);
+      project.buildFile = file;
+      project.targets.put("compile", new Target("compile", "Compile", () -> {}));
+      project.targetGraph = new DefaultTargetGraphBuilder().build(project);
+      return project;
+    };
+
+    // The first completion parses the build file for its targets only
+    BuildRunner runner = new DefaultBuildRunner(output, buildFileParser, new DefaultProjectRunner(output));
+    runner.run(directory.resolve("build.savant"), new DefaultRuntimeConfigurationParser().parse("--complete", "comp"));
+    assertEquals(parses.size(), 1);
+    assertTrue(parses.get(0).listTargets);
+    assertEquals(new CompletionIndex(output, directory.resolve(CompletionIndex.INDEX_FILE)).complete("comp"), asList("compile"));
+
+    // After that, completion uses the index
+    runner.run(directory.resolve("build.savant"), new DefaultRuntimeConfigurationParser().parse("--complete", "--"));
+    assertEquals(parses.size(), 1);
+  }
+
+  @Test
+  public void dryRun() throws Exception {
+    Path directory = projectDir.resolve("build/test/dry-run").toAbsolutePath();
+    PathTools.prune(directory);
+    Files.createDirectories(directory);
+    Files.write(directory.resolve("changed.txt"), "src/test/java/FooTest.java\n".getBytes(StandardCharsets.UTF_8));
+
+    List<String> calledTargets = new ArrayList<>();
+    List<Project> projects = new ArrayList<>();
+    List<BuildEvent> events = new ArrayList<>();
+    BuildFileParser buildFileParser = (file, runtimeConfiguration) -> {
+      Project project = new Project(directory, output);
+      project.targets.put("compile", makeTarget("compile", calledTargets, directory.resolve("src/main/java")));
+      project.targets.put("test", makeTarget("test", calledTargets, directory.resolve("src/test/java"), "compile"));
+      project.targetGraph = new DefaultTargetGraphBuilder().build(project);
+      project.events.subscribe(events::add);
+      project.events.publish(new ScriptCompiled(file, 1));
+      projects.add(project);
+      return project;
+    };
+
+    BuildRunner runner = new DefaultBuildRunner(output, buildFileParser, new DefaultProjectRunner(output));
+    RuntimeConfiguration runtimeConfiguration = new DefaultRuntimeConfigurationParser().parse("--dry-run", "test");
+    runner.run(directory.resolve("build.savant"), runtimeConfiguration);
+    assertEquals(calledTargets, asList());
+    assertEquals(projects.get(0).executionPlan(asList("test")).toString(), "compile -> test");
+
+    // The events that were published while the build file was parsed are delivered even though no targets were run
+    assertEquals(events.size(), 1);
+    assertTrue(events.get(0) instanceof ScriptCompiled);
+
+    runtimeConfiguration.affectedBy = Paths.get("changed.txt");
+    runner.run(directory.resolve("build.savant"), runtimeConfiguration);
+    assertEquals(calledTargets, asList());
+  }
+
+  private Target makeTarget(String name, List<String> calledTargets, Path input, String... dependencies) {
+    Target target = new Target(name, name, () -> calledTargets.add(name), dependencies);
+    target.inputs.add(input);
+    return target;
+  }
 }
@@ -15,10 +15,15 @@
  */
 package org.savantbuild.runtime;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 
 import org.savantbuild.BaseUnitTest;
+import org.savantbuild.cache.BuildCache;
+import org.savantbuild.dep.PathTools;
 import org.savantbuild.domain.Project;
 import org.savantbuild.domain.Target;
 import org.savantbuild.parser.DefaultTargetGraphBuilder;
@@ -125,6 +130,103 @@ public class DefaultProjectRunnerTest extends BaseUnitTest {
     verify(cleanRunner);
   }
 
+  @Test
+  public void runFromBuildCache() throws Exception {
+    Path directory = projectDir.resolve("build/test/build-cache-project");
+    Path cacheDirectory = projectDir.resolve("build/test/build-cache");
+    PathTools.prune(directory);
+    PathTools.prune(cacheDirectory);
+    Files.createDirectories(directory.resolve("src"));
+    Files.write(directory.resolve("src/Input.java"), "class Input {}".getBytes());
+
+    Project project = new Project(directory, output);
+    project.buildCache = new BuildCache(output, cacheDirectory);
+    Target target = new Target("compile", "Compiles the project", () -> {
+      try {
+        calledTargets.add("compile");
+        Files.createDirectories(directory.resolve("build/classes"));
+        Files.write(directory.resolve("build/classes/Input.class"), Files.readAllBytes(directory.resolve("src/Input.java")));
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    });
+    target.inputs = asList(directory.resolve("src"));
+    target.outputs = asList(directory.resolve("build/classes"));
+    project.targets.put("compile", target);
+    project.targetGraph = targetGraphBuilder.build(project);
+
+    calledTargets.clear();
+    ProjectRunner runner = new DefaultProjectRunner(output);
+    runner.run(project, asList("compile"));
+    assertEquals(calledTargets, asList("compile"));
+
+    // Cleaning the project restores the outputs from the cache
+    PathTools.prune(directory.resolve("build"));
+    runner.run(project, asList("compile"));
+    assertEquals(calledTargets, asList("compile"));
+    assertEquals(new String(Files.readAllBytes(directory.resolve("build/classes/Input.class"))), "class Input {}");
+
+    // Changing an input is a cache miss
+    Files.write(directory.resolve("src/Input.java"), "class Input { int i; }".getBytes());
+    runner.run(project, asList("compile"));
+    assertEquals(calledTargets, asList("compile", "compile"));
+
+    // Going back to the original input is a cache hit
+    Files.write(directory.resolve("src/Input.java"), "class Input {}".getBytes());
+    runner.run(project, asList("compile"));
+    assertEquals(calledTargets, asList("compile", "compile"));
+    assertEquals(new String(Files.readAllBytes(directory.resolve("build/classes/Input.class"))), "class Input {}");
+  }
+
+  @Test
+  public void runUpToDate() throws Exception {
+    Path directory = projectDir.resolve("build/test/up-to-date");
+    PathTools.prune(directory);
+    Files.createDirectories(directory.resolve("src"));
+    Files.write(directory.resolve("src/Input.java"), "class Input {}".getBytes());
+    Files.write(directory.resolve("build.savant"), "target(name: \"compile\") {}".getBytes());
+
+    Project project = new Project(directory, output);
+    project.buildFile = directory.resolve("build.savant");
+    Target target = new Target("compile", "Compiles the project", () -> {
+      try {
+        calledTargets.add("compile");
+        Files.createDirectories(directory.resolve("build/classes"));
+        Files.write(directory.resolve("build/classes/Input.class"), Files.readAllBytes(directory.resolve("src/Input.java")));
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    });
+    target.inputs = asList(directory.resolve("src"));
+    target.outputs = asList(directory.resolve("build/classes"));
+    project.targets.put("compile", target);
+    project.targetGraph = targetGraphBuilder.build(project);
+
+    calledTargets.clear();
+    ProjectRunner runner = new DefaultProjectRunner(output);
+    runner.run(project, asList("compile"));
+    runner.run(project, asList("compile"));
+    assertEquals(calledTargets, asList("compile"));
+
+    // Changing an input runs the target again
+    Files.write(directory.resolve("src/Input.java"), "class Input { int i; }".getBytes());
+    runner.run(project, asList("compile"));
+    runner.run(project, asList("compile"));
+    assertEquals(calledTargets, asList("compile", "compile"));
+
+    // Deleting an output runs the target again
+    Files.delete(directory.resolve("build/classes/Input.class"));
+    runner.run(project, asList("compile"));
+    assertEquals(calledTargets, asList("compile", "compile", "compile"));
+    assertTrue(Files.isRegularFile(directory.resolve("build/classes/Input.class")));
+
+    // Changing the build file runs the target again
+    Files.write(directory.resolve("build.savant"), "target(name: \"compile\") { println \"changed\" }".getBytes());
+    runner.run(project, asList("compile"));
+    runner.run(project, asList("compile"));
+    assertEquals(calledTargets, asList("compile", "compile", "compile", "compile"));
+  }
+
   private Runnable makeRunnerMock(String targetName) {
     Runnable runner = createStrictMock(Runnable.class);
     runner.run();
@@ -15,6 +15,7 @@
  */
 package org.savantbuild.runtime;
 
+import java.nio.file.Paths;
 import java.util.HashSet;
 
 import org.savantbuild.BaseUnitTest;
@@ -23,7 +24,9 @@ import org.testng.annotations.Test;
 import static java.util.Arrays.asList;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 /**
  * Tests the default runtime configuration parser.
@@ -55,5 +58,78 @@ public class DefaultRuntimeConfigurationParserTest extends BaseUnitTest {
     assertEquals(config.targets, asList("foo", "bar"));
     assertEquals(config.switches.booleanSwitches, new HashSet<>(asList("booleanSwitch")));
     assertEquals(config.switches.valueSwitches.get("test"), asList("SomeTest"));
+    assertEquals(config.threads, 1);
+
+    config = parser.parse("foo", "--threads=8");
+    assertEquals(config.threads, 8);
+    assertEquals(config.targets, asList("foo"));
+    assertFalse(config.switches.has("threads"));
+    assertFalse(config.profile);
+
+    config = parser.parse("foo", "--profile");
+    assertTrue(config.profile);
+    assertEquals(config.targets, asList("foo"));
+    assertFalse(config.switches.has("profile"));
+    assertFalse(config.watch);
+
+    config = parser.parse("--watch", "test");
+    assertTrue(config.watch);
+    assertEquals(config.targets, asList("test"));
+    assertFalse(config.switches.has("watch"));
+    assertNull(config.affectedBy);
+
+    config = parser.parse("--affected-by=build/changed-files.txt", "test");
+    assertEquals(config.affectedBy, Paths.get("build/changed-files.txt"));
+    assertEquals(config.targets, asList("test"));
+    assertFalse(config.switches.has("affected-by"));
+    assertNull(config.complete);
+
+    config = parser.parse("--complete", "--thr");
+    assertEquals(config.complete, "--thr");
+    assertEquals(config.targets, asList());
+    assertFalse(config.switches.has("thr"));
+
+    config = parser.parse("--complete");
+    assertEquals(config.complete, "");
+    assertFalse(config.dryRun);
+
+    config = parser.parse("clean", "--dry-run", "jar");
+    assertTrue(config.dryRun);
+    assertEquals(config.targets, asList("clean", "jar"));
+    assertFalse(config.switches.has("dry-run"));
+    assertFalse(config.writeLock);
+
+    config = parser.parse("--write-lock");
+    assertTrue(config.writeLock);
+    assertEquals(config.targets, asList());
+    assertFalse(config.switches.has("write-lock"));
+  }
+
+  @Test
+  public void parseBadThreads() throws Exception {
+    DefaultRuntimeConfigurationParser parser = new DefaultRuntimeConfigurationParser();
+    try {
+      parser.parse("foo", "--threads=zero");
+      fail("Should have failed");
+    } catch (BuildRunException e) {
+      assertTrue(e.getMessage().contains("zero"));
+    }
+
+    try {
+      parser.parse("foo", "--threads=0");
+      fail("Should have failed");
+    } catch (BuildRunException e) {
+      // Expected
+    }
+  }
+
+  @Test
+  public void parseBadAffectedBy() throws Exception {
+    try {
+      new DefaultRuntimeConfigurationParser().parse("test", "--affected-by=");
+      fail("Should have failed");
+    } catch (BuildRunException e) {
+      assertTrue(e.getMessage().contains("--affected-by"));
+    }
   }
 }
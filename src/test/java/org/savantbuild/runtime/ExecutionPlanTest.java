@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2001-2010, Inversoft, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.runtime;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.savantbuild.BaseUnitTest;
+import org.savantbuild.domain.Project;
+import org.savantbuild.domain.Target;
+import org.testng.annotations.Test;
+
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.fail;
+
+/**
+ * Tests the execution plan.
+ *
+ * @author Brian Pontarelli
+ */
+public class ExecutionPlanTest extends BaseUnitTest {
+  @Test
+  public void build() {
+    Project project = makeProject();
+    ExecutionPlan plan = ExecutionPlan.build(project.compactTargetGraph(), asList("clean", "jar", "compile", "test"));
+    assertEquals(names(plan.targets()), asList("clean", "compile", "jar", "resources", "test"));
+    assertEquals(plan.toString(), "clean -> compile -> jar -> resources -> test");
+
+    // compile was already run for jar, so it doesn't add any steps
+    assertEquals(plan.ends, new int[]{1, 3, 3, 5});
+    assertEquals(plan.requested[2], project.compactTargetGraph().id("compile"));
+
+    assertEquals(names(ExecutionPlan.build(project.compactTargetGraph(), asList()).targets()), asList());
+  }
+
+  @Test
+  public void buildInvalidTarget() {
+    Project project = makeProject();
+    try {
+      ExecutionPlan.build(project.compactTargetGraph(), asList("clean", "clear"));
+      fail("Should have failed");
+    } catch (BuildRunException e) {
+      assertEquals(e.getMessage(), "Invalid target [clear]");
+    }
+  }
+
+  @Test
+  public void projectCache() {
+    Project project = makeProject();
+    ExecutionPlan plan = project.executionPlan(asList("clean", "jar"));
+    assertSame(project.executionPlan(asList("clean", "jar")), plan);
+
+    // A new target graph invalidates the plans
+    project.targets.put("doc", new Target("doc", "doc", () -> {}, "compile"));
+    project.compactTargetGraph = null;
+    ExecutionPlan rebuilt = project.executionPlan(asList("clean", "jar"));
+    assertEquals(names(rebuilt.targets()), names(plan.targets()));
+    assertSame(rebuilt.graph, project.compactTargetGraph());
+  }
+
+  private Project makeProject() {
+    Project project = new Project(null, output);
+    project.targets.put("clean", new Target("clean", "clean", () -> {}));
+    project.targets.put("compile", new Target("compile", "compile", () -> {}));
+    project.targets.put("resources", new Target("resources", "resources", () -> {}));
+    project.targets.put("jar", new Target("jar", "jar", () -> {}, "compile"));
+    project.targets.put("test", new Target("test", "test", () -> {}, "compile", "resources"));
+    return project;
+  }
+
+  private List<String> names(List<Target> targets) {
+    return targets.stream().map((target) -> target.name).collect(Collectors.toList());
+  }
+}
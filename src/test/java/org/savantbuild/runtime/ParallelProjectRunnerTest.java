@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.runtime;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.savantbuild.BaseUnitTest;
+import org.savantbuild.domain.Project;
+import org.savantbuild.domain.Target;
+import org.savantbuild.parser.DefaultTargetGraphBuilder;
+import org.savantbuild.parser.TargetGraphBuilder;
+import org.testng.annotations.Test;
+
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Tests the parallel project runner.
+ *
+ * @author Brian Pontarelli
+ */
+public class ParallelProjectRunnerTest extends BaseUnitTest {
+  public TargetGraphBuilder targetGraphBuilder = new DefaultTargetGraphBuilder();
+
+  private final List<String> calledTargets = Collections.synchronizedList(new ArrayList<>());
+
+  @Test
+  public void runDependencies() {
+    calledTargets.clear();
+
+    Project project = new Project(null, output);
+    project.targets.put("clean", new Target("clean", "Cleans the project", record("clean")));
+    project.targets.put("compile", new Target("compile", "Compiles the project", record("compile")));
+    project.targets.put("copyResources", new Target("copyResources", "Copies the resources to the build dir", record("copyResources")));
+    project.targets.put("test", new Target("test", "Tests the project", record("test"), "compile", "copyResources"));
+    project.targets.put("int", new Target("int", "Integrates the project", record("int"), "test"));
+    project.targetGraph = targetGraphBuilder.build(project);
+
+    ProjectRunner runner = new ParallelProjectRunner(output, 4);
+    runner.run(project, asList("int"));
+
+    assertEquals(calledTargets.size(), 4);
+    assertFalse(calledTargets.contains("clean"));
+    assertTrue(calledTargets.indexOf("compile") < calledTargets.indexOf("test"));
+    assertTrue(calledTargets.indexOf("copyResources") < calledTargets.indexOf("test"));
+    assertEquals(calledTargets.get(3), "int");
+  }
+
+  @Test
+  public void runFailure() {
+    calledTargets.clear();
+
+    Project project = new Project(null, output);
+    project.targets.put("compile", new Target("compile", "Compiles the project", () -> {
+      throw new BuildFailureException("Compile failed");
+    }));
+    project.targets.put("test", new Target("test", "Tests the project", record("test"), "compile"));
+    project.targetGraph = targetGraphBuilder.build(project);
+
+    ProjectRunner runner = new ParallelProjectRunner(output, 4);
+    try {
+      runner.run(project, asList("test"));
+      fail("Should have failed");
+    } catch (BuildFailureException e) {
+      assertEquals(e.getMessage(), "Compile failed");
+    }
+
+    assertTrue(calledTargets.isEmpty());
+  }
+
+  @Test
+  public void runIndependentTargetsInParallel() throws Exception {
+    calledTargets.clear();
+
+    // Both targets wait on each other, so this only completes if they run at the same time
+    CountDownLatch latch = new CountDownLatch(2);
+    Runnable waiter = () -> {
+      latch.countDown();
+      try {
+        assertTrue(latch.await(10, TimeUnit.SECONDS), "Targets were not run in parallel");
+      } catch (InterruptedException e) {
+        throw new BuildFailureException("Interrupted");
+      }
+    };
+
+    Project project = new Project(null, output);
+    project.targets.put("jar", new Target("jar", "JARs the project", record("jar")));
+    project.targets.put("doc", new Target("doc", "Documents the project", waiter, "jar"));
+    project.targets.put("test", new Target("test", "Tests the project", waiter, "jar"));
+    project.targets.put("release", new Target("release", "Releases the project", record("release"), "doc", "test"));
+    project.targetGraph = targetGraphBuilder.build(project);
+
+    ProjectRunner runner = new ParallelProjectRunner(output, 2);
+    runner.run(project, asList("release"));
+
+    assertEquals(calledTargets, asList("jar", "release"));
+  }
+
+  @Test
+  public void runRequestedTargetsInOrder() throws Exception {
+    calledTargets.clear();
+
+    // The jar only depends on the compile, but it must not run while the clean is deleting the classes
+    Project project = new Project(null, output);
+    project.targets.put("clean", new Target("clean", "Cleans the project", () -> {
+      try {
+        Thread.sleep(200);
+      } catch (InterruptedException e) {
+        throw new BuildFailureException("Interrupted");
+      }
+
+      calledTargets.add("clean");
+    }));
+    project.targets.put("compile", new Target("compile", "Compiles the project", record("compile")));
+    project.targets.put("jar", new Target("jar", "JARs the project", record("jar"), "compile"));
+    project.targetGraph = targetGraphBuilder.build(project);
+
+    ProjectRunner runner = new ParallelProjectRunner(output, 4);
+    runner.run(project, asList("compile", "clean", "jar"));
+
+    assertEquals(calledTargets, asList("compile", "clean", "jar"));
+  }
+
+  @Test
+  public void runMissingTarget() {
+    Project project = new Project(null, output);
+    project.targets.put("clean", new Target("clean", "Cleans the project", record("clean")));
+    project.targetGraph = targetGraphBuilder.build(project);
+
+    ProjectRunner runner = new ParallelProjectRunner(output, 2);
+    try {
+      runner.run(project, asList("clear")); // Simulates a user typo
+      fail("Should have failed");
+    } catch (BuildRunException e) {
+      // Expected
+      assertTrue(e.getMessage().contains("clear"));
+    }
+  }
+
+  @Test
+  public void runOrdered() {
+    calledTargets.clear();
+
+    Project project = new Project(null, output);
+    project.targets.put("clean", new Target("clean", "Cleans the project", record("clean")));
+    project.targets.put("compile", new Target("compile", "Compiles the project", record("compile")));
+    project.targets.put("jar", new Target("jar", "JARs the project", record("jar"), "compile"));
+    project.targetGraph = targetGraphBuilder.build(project);
+
+    ProjectRunner runner = new ParallelProjectRunner(output, 4);
+    runner.run(project, asList("clean", "jar", "compile"));
+
+    assertEquals(calledTargets, asList("clean", "compile", "jar"));
+  }
+
+  private Runnable record(String targetName) {
+    return () -> calledTargets.add(targetName);
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2014, Inversoft Inc., All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.runtime.daemon;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.savantbuild.BaseUnitTest;
+import org.savantbuild.dep.PathTools;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests the build daemon and the daemon client.
+ *
+ * @author Brian Pontarelli
+ */
+public class BuildDaemonTest extends BaseUnitTest {
+  @Test
+  public void buildAndStop() throws Exception {
+    Path directory = projectDir.resolve("build/test/daemon");
+    PathTools.prune(directory);
+    PathTools.prune(projectDir.resolve("test-project/build"));
+    Files.createDirectories(projectDir.resolve("test-project/build"));
+
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    Thread thread = new Thread(() -> {
+      try {
+        new BuildDaemon(output, directory, 60000).run();
+      } catch (Throwable t) {
+        failure.set(t);
+      }
+    });
+    thread.start();
+
+    while (DaemonProtocol.readDaemonFile(directory) == null) {
+      Thread.sleep(10);
+    }
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    DaemonClient client = new DaemonClient(directory, new PrintStream(out, true), new PrintStream(err, true));
+    assertEquals(client.run(projectDir.resolve("test-project"), "write"), 0);
+    assertEquals(new String(Files.readAllBytes(projectDir.resolve("test-project/build/test-file.txt")), "UTF-8"), "File contents");
+
+    assertEquals(client.run(projectDir.resolve("test-project"), "delete"), 0);
+    assertFalse(Files.isDirectory(projectDir.resolve("test-project/build")));
+
+    // Failures are reported using the exit code
+    assertEquals(client.run(projectDir.resolve("test-project"), "bad-target"), 1);
+
+    assertEquals(client.run(projectDir, "--stop"), 0);
+    thread.join(10000);
+    assertFalse(thread.isAlive());
+    assertNull(failure.get());
+    assertFalse(Files.isRegularFile(DaemonProtocol.daemonFile(directory)));
+    assertTrue(Files.isDirectory(directory));
+  }
+
+  @Test
+  public void sameEnvironment() {
+    Map<String, String> daemon = new HashMap<>();
+    daemon.put("HOME", "/home/savant");
+    daemon.put("_", "/usr/bin/java");
+
+    // Variables that change for every terminal are passed to the build
+    Map<String, String> client = new HashMap<>(daemon);
+    client.put("_", "/usr/local/bin/sb");
+    client.put("SHLVL", "2");
+    client.put("TERM_SESSION_ID", "w0t0p0");
+    assertTrue(DaemonProtocol.sameEnvironment(client, daemon));
+
+    client.put("JAVA_HOME", "/usr/lib/jvm/java-8");
+    assertFalse(DaemonProtocol.sameEnvironment(client, daemon));
+  }
+}
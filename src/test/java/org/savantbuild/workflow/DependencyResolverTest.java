@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2001-2010, Inversoft, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.workflow;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.savantbuild.BaseUnitTest;
+import org.savantbuild.dep.DependencyService;
+import org.savantbuild.dep.DependencyService.TraversalRules;
+import org.savantbuild.dep.DependencyService.TraversalRules.GroupTraversalRule;
+import org.savantbuild.dep.domain.Artifact;
+import org.savantbuild.dep.domain.Dependencies;
+import org.savantbuild.dep.domain.DependencyGroup;
+import org.savantbuild.dep.domain.ReifiedArtifact;
+import org.savantbuild.dep.domain.Version;
+import org.savantbuild.dep.graph.ArtifactGraph;
+import org.savantbuild.dep.graph.DependencyGraph;
+import org.savantbuild.dep.graph.ResolvedArtifactGraph;
+import org.savantbuild.dep.workflow.Workflow;
+import org.savantbuild.domain.Project;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.fail;
+
+/**
+ * Tests the dependency resolver.
+ *
+ * @author Brian Pontarelli
+ */
+public class DependencyResolverTest extends BaseUnitTest {
+  private final AtomicInteger buildGraphCalls = new AtomicInteger();
+
+  private final AtomicInteger reduceCalls = new AtomicInteger();
+
+  private final AtomicInteger resolveCalls = new AtomicInteger();
+
+  @Test
+  public void memoize() {
+    Project project = makeProject();
+    DependencyResolver resolver = new DependencyResolver(project, new CountingDependencyService(null));
+    TraversalRules compile = new TraversalRules().with("compile", new GroupTraversalRule(true, "compile"));
+    TraversalRules runtime = new TraversalRules().with("runtime", new GroupTraversalRule(true, "compile", "runtime"));
+
+    resolver.resolve(compile);
+    resolver.resolve(compile);
+    resolver.resolve(runtime);
+
+    // Equal rules share the resolution
+    resolver.resolve(new TraversalRules().with("compile", new GroupTraversalRule(true, "compile")));
+    resolver.dependencyGraph();
+    resolver.artifactGraph();
+    assertEquals(buildGraphCalls.get(), 1);
+    assertEquals(reduceCalls.get(), 1);
+    assertEquals(resolveCalls.get(), 2);
+
+    // Rules that only differ in the transitive flag don't
+    resolver.resolve(new TraversalRules().with("compile", new GroupTraversalRule(false, "compile")));
+    assertEquals(resolveCalls.get(), 3);
+
+    // Changing the dependencies resolves everything again
+    project.dependencies.groups.get("compile").dependencies.add(new Artifact("org.example:other:1.0.0", false));
+    resolver.resolve(compile);
+    assertEquals(buildGraphCalls.get(), 2);
+    assertEquals(reduceCalls.get(), 2);
+    assertEquals(resolveCalls.get(), 4);
+
+    project.dependencies = null;
+    assertNull(resolver.resolve(compile));
+    assertNull(resolver.classpath(compile));
+    assertEquals(resolveCalls.get(), 4);
+  }
+
+  @Test
+  public void concurrent() throws Exception {
+    Project project = makeProject();
+    CountDownLatch latch = new CountDownLatch(1);
+    DependencyResolver resolver = new DependencyResolver(project, new CountingDependencyService(latch));
+    TraversalRules compile = new TraversalRules().with("compile", new GroupTraversalRule(true, "compile"));
+
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        futures.add(pool.submit(() -> resolver.resolve(compile)));
+      }
+
+      latch.countDown();
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      pool.shutdown();
+    }
+
+    assertEquals(buildGraphCalls.get(), 1);
+    assertEquals(resolveCalls.get(), 1);
+  }
+
+  @Test
+  public void failure() {
+    Project project = makeProject();
+    DependencyResolver resolver = new DependencyResolver(project, new CountingDependencyService(null) {
+      @Override
+      public DependencyGraph buildGraph(ReifiedArtifact root, Dependencies dependencies, Workflow workflow) {
+        if (buildGraphCalls.incrementAndGet() == 1) {
+          throw new IllegalStateException("Network failure");
+        }
+
+        return null;
+      }
+    });
+
+    try {
+      resolver.dependencyGraph();
+      fail("Should have failed");
+    } catch (IllegalStateException e) {
+      assertEquals(e.getMessage(), "Network failure");
+    }
+
+    // Failures aren't remembered
+    resolver.dependencyGraph();
+    assertEquals(buildGraphCalls.get(), 2);
+  }
+
+  private Project makeProject() {
+    buildGraphCalls.set(0);
+    reduceCalls.set(0);
+    resolveCalls.set(0);
+
+    Project project = new Project(null, output);
+    project.group = "org.example";
+    project.name = "project";
+    project.version = new Version("1.0.0");
+    project.workflow = workflow;
+    project.dependencies = new Dependencies(new DependencyGroup("compile", true, new Artifact("org.example:dependency:1.0.0", false)));
+    return project;
+  }
+
+  private class CountingDependencyService implements DependencyService {
+    private final CountDownLatch latch;
+
+    CountingDependencyService(CountDownLatch latch) {
+      this.latch = latch;
+    }
+
+    @Override
+    public DependencyGraph buildGraph(ReifiedArtifact root, Dependencies dependencies, Workflow workflow) {
+      await();
+      buildGraphCalls.incrementAndGet();
+      return null;
+    }
+
+    @Override
+    public ArtifactGraph reduce(DependencyGraph graph) {
+      reduceCalls.incrementAndGet();
+      return null;
+    }
+
+    @Override
+    public ResolvedArtifactGraph resolve(ArtifactGraph graph, Workflow workflow, TraversalRules configuration) {
+      resolveCalls.incrementAndGet();
+      return null;
+    }
+
+    private void await() {
+      if (latch != null) {
+        try {
+          latch.await();
+        } catch (InterruptedException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    }
+  }
+}
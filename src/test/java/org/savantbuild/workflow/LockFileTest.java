@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2001-2010, Inversoft, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.workflow;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.savantbuild.BaseUnitTest;
+import org.savantbuild.dep.PathTools;
+import org.savantbuild.dep.domain.Artifact;
+import org.savantbuild.dep.domain.Dependencies;
+import org.savantbuild.dep.domain.DependencyGroup;
+import org.savantbuild.plugin.ResolvedPlugin;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests the lock file.
+ *
+ * @author Brian Pontarelli
+ */
+public class LockFileTest extends BaseUnitTest {
+  @Test
+  public void writeAndLoad() throws Exception {
+    Path directory = projectDir.resolve("build/test/lock-file").toAbsolutePath();
+    PathTools.prune(directory);
+    Files.createDirectories(directory);
+    Path pluginJar = Files.write(directory.resolve("plugin-0.1.0.jar"), "plugin".getBytes(StandardCharsets.UTF_8));
+    Path dependencyJar = Files.write(directory.resolve("dependency-1.0.0.jar"), "dependency".getBytes(StandardCharsets.UTF_8));
+    Dependencies dependencies = new Dependencies(new DependencyGroup("compile", true, new Artifact("org.example:dependency:1.0.0", false)));
+    Artifact pluginDependency = new Artifact("org.example:plugin:0.1.0", false);
+
+    ResolvedPlugin resolvedPlugin = new ResolvedPlugin("org.example.Plugin");
+    resolvedPlugin.classpath.add(new ResolvedPlugin.ClasspathEntry("org.example:plugin:plugin:jar", "0.1.0", pluginJar));
+    resolvedPlugin.classpath.add(new ResolvedPlugin.ClasspathEntry("org.example:dependency:dependency:jar", "1.0.0", dependencyJar));
+
+    LockFile lockFile = new LockFile(output, directory.resolve(LockFile.LOCK_FILE));
+    lockFile.plugins.put(pluginDependency.toString(), resolvedPlugin);
+    lockFile.write(dependencies);
+    String contents = new String(Files.readAllBytes(lockFile.file), StandardCharsets.ISO_8859_1);
+
+    // Writing the same resolutions again doesn't change the file
+    lockFile.write(dependencies);
+    assertEquals(new String(Files.readAllBytes(lockFile.file), StandardCharsets.ISO_8859_1), contents);
+
+    ResolvedPlugin locked = new LockFile(output, lockFile.file).plugin(pluginDependency, dependencies);
+    assertNotNull(locked);
+    assertEquals(locked.toString(), resolvedPlugin.toString());
+    assertEquals(locked.classpath.get(1).id, "org.example:dependency:dependency:jar");
+    assertEquals(locked.classpath.get(1).version, "1.0.0");
+    assertNull(new LockFile(output, lockFile.file).plugin(new Artifact("org.example:plugin:0.2.0", false), dependencies));
+
+    // Changed dependencies ignore the lock file
+    Dependencies changed = new Dependencies(new DependencyGroup("compile", true, new Artifact("org.example:dependency:1.1.0", false)));
+    assertNull(new LockFile(output, lockFile.file).plugin(pluginDependency, changed));
+
+    // The last modified times are local, so they are kept out of the lock file. Touched files are hashed and still match
+    assertFalse(contents.contains("modified"));
+    assertTrue(Files.isRegularFile(directory.resolve(LockFile.STATS_FILE)));
+    Files.setLastModifiedTime(dependencyJar, FileTime.fromMillis(System.currentTimeMillis() + 60000));
+    assertNotNull(new LockFile(output, lockFile.file).plugin(pluginDependency, dependencies));
+    String stats = new String(Files.readAllBytes(directory.resolve(LockFile.STATS_FILE)), StandardCharsets.ISO_8859_1);
+    assertTrue(stats.contains(" " + Files.getLastModifiedTime(dependencyJar).toMillis() + " "));
+
+    // Changed files ignore the lock of the plugin
+    Files.write(dependencyJar, "changed!!!".getBytes(StandardCharsets.UTF_8));
+    assertNull(new LockFile(output, lockFile.file).plugin(pluginDependency, dependencies));
+    assertTrue(contents.startsWith("#"));
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2001-2010, Inversoft, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+package org.savantbuild.workflow;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.savantbuild.BaseUnitTest;
+import org.savantbuild.cache.Hashes;
+import org.savantbuild.dep.PathTools;
+import org.savantbuild.dep.domain.License;
+import org.savantbuild.dep.domain.ReifiedArtifact;
+import org.savantbuild.dep.workflow.FetchWorkflow;
+import org.savantbuild.dep.workflow.PublishWorkflow;
+import org.savantbuild.dep.workflow.Workflow;
+import org.savantbuild.dep.workflow.process.CacheProcess;
+import org.savantbuild.dep.workflow.process.URLProcess;
+import org.savantbuild.util.MapBuilder;
+import org.testng.annotations.Test;
+
+import com.sun.net.httpserver.HttpServer;
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests the parallel fetcher.
+ *
+ * @author Brian Pontarelli
+ */
+public class ParallelFetcherTest extends BaseUnitTest {
+  @Test
+  public void fetch() throws Exception {
+    Path directory = projectDir.resolve("build/test/parallel-fetch");
+    PathTools.prune(directory);
+    Path repository = directory.resolve("repository");
+    Path cache = directory.resolve("cache");
+
+    publish(repository, "org/example/good/1.0.0/good-1.0.0.jar", "good", null);
+    publish(repository, "org/example/other/2.0.0/other-2.0.0.jar", "other", null);
+    publish(repository, "org/example/corrupt/1.0.0/corrupt-1.0.0.jar", "corrupt", "0123456789abcdef0123456789abcdef");
+    publish(cache, "org/example/cached/1.0.0/cached-1.0.0.jar", "cached", null);
+
+    Workflow workflow = new Workflow(
+        new FetchWorkflow(output, new CacheProcess(output, cache.toString()), new URLProcess(output, "http://localhost:7000/build/test/parallel-fetch/repository", "user", "password")),
+        new PublishWorkflow(new CacheProcess(output, cache.toString()))
+    );
+
+    List<ReifiedArtifact> artifacts = asList(artifact("good:1.0.0"), artifact("other:2.0.0"), artifact("corrupt:1.0.0"),
+        artifact("missing:1.0.0"), artifact("cached:1.0.0"));
+
+    ParallelFetcher fetcher = new ParallelFetcher(output, 4);
+    fetcher.credentials.put("http://localhost:7000/build/test/parallel-fetch/repository", new ParallelFetcher.Credentials("user", "password"));
+
+    HttpServer server = makeFileServer("user", "password");
+    try {
+      assertEquals(fetcher.fetch(artifacts, workflow), 2);
+    } finally {
+      server.stop(0);
+    }
+
+    assertEquals(new String(Files.readAllBytes(cache.resolve("org/example/good/1.0.0/good-1.0.0.jar")), StandardCharsets.UTF_8), "good");
+    assertTrue(Files.isRegularFile(cache.resolve("org/example/good/1.0.0/good-1.0.0.jar.md5")));
+    assertTrue(Files.isRegularFile(cache.resolve("org/example/other/2.0.0/other-2.0.0.jar")));
+    assertFalse(Files.exists(cache.resolve("org/example/corrupt/1.0.0/corrupt-1.0.0.jar")));
+    assertFalse(Files.exists(cache.resolve("org/example/missing/1.0.0/missing-1.0.0.jar")));
+
+    // The temporary file of the corrupt artifact is deleted
+    try (Stream<Path> files = Files.list(cache.resolve("org/example/corrupt/1.0.0"))) {
+      assertEquals(files.count(), 0);
+    }
+  }
+
+  private ReifiedArtifact artifact(String spec) {
+    return new ReifiedArtifact("org.example:" + spec, MapBuilder.simpleMap(License.ApacheV2_0, null));
+  }
+
+  private void publish(Path directory, String item, String contents, String md5) throws Exception {
+    Path file = directory.resolve(item);
+    Files.createDirectories(file.getParent());
+    Files.write(file, contents.getBytes(StandardCharsets.UTF_8));
+
+    if (md5 == null) {
+      md5 = Hashes.md5(file);
+    }
+
+    Files.write(file.resolveSibling(file.getFileName() + ".md5"), (md5 + "  " + file.getFileName() + "\n").getBytes(StandardCharsets.UTF_8));
+  }
+}